@@ -0,0 +1,204 @@
+package kajitiluna.utility.conditionlatch;
+
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A driver of fan-out which keeps a bounded number of tasks in flight, with backpressure driven by the latch.
+ *
+ * <p>
+ * The tasks are pulled from a task source lazily, and at most {@code maxInFlight} tasks are issued to the executor
+ * at the same time. The value returned from a task is submitted by {@link ConditionLatch#submit},
+ * and the exception thrown from a task is submitted by {@link ConditionLatch#submitForFail}.
+ * Whenever a task submits its result, the next task is pulled from the source and issued,
+ * and no more task is pulled after the latch is released.
+ * So the tasks queued in the executor are at most {@code maxInFlight}, not the number of all tasks.
+ * If the source is exhausted and all issued tasks finish before the latch is released,
+ * the latch is cancelled, so that {@link ConditionLatch#await} doesn't wait forever.
+ * </p>
+ *
+ * <p>
+ * The executor should run the tasks asynchronously,
+ * because the next task is issued in the thread of the finished task.
+ * </p>
+ *
+ * <pre>
+ * ConditionLatch&lt;Response, Throwable&gt; latch = new ConditionLatch&lt;Response, Throwable&gt;(60000, 100);
+ * new BoundedFanOut&lt;Response&gt;(latch, 64, executor).start(requests.iterator());
+ * List&lt;Response&gt; responses = latch.await();
+ * </pre>
+ *
+ * @author kajitiluna
+ *
+ * @param <SUCCESS_RESULT> Object type returned from succeeded tasks
+ */
+public class BoundedFanOut<SUCCESS_RESULT> {
+
+    /** Latch submitted the results of the tasks. */
+    private final ConditionLatch<SUCCESS_RESULT, Throwable> latch_;
+
+    /** Maximum number of tasks in flight. */
+    private final int maxInFlight_;
+
+    /** Executor running the tasks. */
+    private final Executor executor_;
+
+    /** Source of tasks, guarded by this driver. */
+    private Iterator<? extends Callable<? extends SUCCESS_RESULT>> source_;
+
+    /** Number of the tasks in flight, guarded by this driver. */
+    private int inFlightCount_;
+
+    /** Number of the tasks issued, guarded by this driver. */
+    private int issuedCount_;
+
+    /** Whether the source is exhausted, guarded by this driver. */
+    private boolean exhausted_;
+
+    /**
+     * Constructs a {@code BoundedFanOut}.
+     *
+     * @param latch latch submitted the results of the tasks
+     * @param maxInFlight the maximum number of tasks in flight
+     * @param executor executor running the tasks asynchronously
+     * @throws IllegalArgumentException if {@code maxInFlight} is not positive
+     */
+    public BoundedFanOut(ConditionLatch<SUCCESS_RESULT, Throwable> latch, int maxInFlight, Executor executor)
+            throws IllegalArgumentException {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight <= 0");
+        }
+
+        this.latch_ = latch;
+        this.maxInFlight_ = maxInFlight;
+        this.executor_ = executor;
+    }
+
+    /**
+     * Starts pulling the tasks from the source, and issues the first tasks up to {@code maxInFlight}.
+     * A {@code Stream} is available as the source by its {@code iterator()}.
+     *
+     * @param source source of the tasks, which is accessed by one thread at a time
+     * @return the latch submitted the results of the tasks
+     * @throws IllegalStateException if the driver has already been started
+     */
+    public ConditionLatch<SUCCESS_RESULT, Throwable> start(Iterator<? extends Callable<? extends SUCCESS_RESULT>> source)
+            throws IllegalStateException {
+        synchronized (this) {
+            if (this.source_ != null) {
+                throw new IllegalStateException("BoundedFanOut is already started.");
+            }
+            this.source_ = source;
+        }
+
+        this.issueTasks();
+        return this.latch_;
+    }
+
+    /**
+     * Returns the number of the tasks in flight.
+     *
+     * @return the number of the tasks in flight
+     */
+    public synchronized int getInFlightCount() {
+        return this.inFlightCount_;
+    }
+
+    /**
+     * Returns the number of the tasks pulled from the source and issued to the executor.
+     *
+     * @return the number of the tasks issued
+     */
+    public synchronized int getIssuedCount() {
+        return this.issuedCount_;
+    }
+
+    private void issueTasks() {
+        Callable<? extends SUCCESS_RESULT> task;
+        while ((task = this.pullTask()) != null) {
+            try {
+                this.executor_.execute(this.wrap(task));
+            } catch (RejectedExecutionException exc) {
+                // The slot is given back in this loop, since re-entering through finishTask overflows the stack.
+                this.latch_.submitForFail(exc);
+                synchronized (this) {
+                    this.inFlightCount_--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Pulls the next task from the source, if the tasks in flight are fewer than the maximum.
+     *
+     * @return the next task, or {@code null} if no task should be issued now
+     */
+    private Callable<? extends SUCCESS_RESULT> pullTask() {
+        boolean unreachable = false;
+        RuntimeException failure = null;
+        synchronized (this) {
+            if ((this.latch_.isReleased() == false) && (this.exhausted_ == false) && (this.inFlightCount_ < this.maxInFlight_)) {
+                try {
+                    if (this.source_.hasNext()) {
+                        Callable<? extends SUCCESS_RESULT> task = this.source_.next();
+                        if (task == null) {
+                            throw new NullPointerException("Task is null.");
+                        }
+
+                        this.inFlightCount_++;
+                        this.issuedCount_++;
+                        return task;
+                    }
+                } catch (RuntimeException exc) {
+                    failure = exc;
+                }
+
+                this.exhausted_ = true;
+            }
+
+            unreachable = this.exhausted_ && (this.inFlightCount_ == 0);
+        }
+
+        // The latch is cancelled outside the monitor, since the release listeners run in this thread.
+        if (failure != null) {
+            this.latch_.cancel();
+            throw failure;
+        }
+        if (unreachable) {
+            this.latch_.cancel();
+        }
+
+        return null;
+    }
+
+    private void finishTask() {
+        synchronized (this) {
+            this.inFlightCount_--;
+        }
+
+        this.issueTasks();
+    }
+
+    private Runnable wrap(final Callable<? extends SUCCESS_RESULT> task) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    SUCCESS_RESULT result;
+                    try {
+                        result = task.call();
+                    } catch (Throwable exc) {
+                        BoundedFanOut.this.latch_.submitForFail(exc);
+                        return;
+                    }
+
+                    BoundedFanOut.this.latch_.submit(result);
+                } finally {
+                    BoundedFanOut.this.finishTask();
+                }
+            }
+        };
+    }
+}
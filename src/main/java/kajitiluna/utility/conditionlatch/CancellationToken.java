@@ -0,0 +1,67 @@
+package kajitiluna.utility.conditionlatch;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * A token of cooperative cancellation, derived from the state of a {@code ConditionLatch}.
+ *
+ * <p>
+ * A long-running worker feeding the latch polls {@link #isDecided} in its loop,
+ * and stops computing as soon as the latch is released, because its result would be discarded anyway.
+ * {@link #isDecided} is a plain volatile read of the count state, without any lock or CAS,
+ * so that it can be invoked at every iteration.
+ * The hooks added by {@link #addHook} are run once by the thread which releases the latch,
+ * such as for interrupting a blocking I/O of the worker.
+ * </p>
+ *
+ * <pre>
+ * CancellationToken token = latch.getCancellationToken();
+ * while (hasNextChunk()) {
+ *     token.throwIfDecided();
+ *     computeChunk();
+ * }
+ * latch.submit(result);
+ * </pre>
+ *
+ * @author kajitiluna
+ *
+ */
+public final class CancellationToken {
+
+    /** Latch deciding the cancellation. */
+    private final ConditionLatch<?, ?> latch_;
+
+    CancellationToken(ConditionLatch<?, ?> latch) {
+        this.latch_ = latch;
+    }
+
+    /**
+     * Returns whether the latch has been released, either by success, by failure or by cancel.
+     *
+     * @return {@code true} if any more submission is discarded
+     */
+    public boolean isDecided() {
+        return this.latch_.isReleased();
+    }
+
+    /**
+     * Throws {@code CancellationException} if the latch has been released.
+     *
+     * @throws CancellationException if the latch has been released
+     */
+    public void throwIfDecided() throws CancellationException {
+        if (this.latch_.isReleased()) {
+            throw new CancellationException("ConditionLatch is already released.");
+        }
+    }
+
+    /**
+     * Adds a hook run once when the latch is released.
+     * If the latch has already been released, the hook is run immediately in the current thread.
+     *
+     * @param hook hook run by the thread which releases the latch, which should finish quickly without blocking
+     */
+    public void addHook(Runnable hook) {
+        this.latch_.addReleaseHook(hook);
+    }
+}
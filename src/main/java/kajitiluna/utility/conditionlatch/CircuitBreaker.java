@@ -0,0 +1,388 @@
+package kajitiluna.utility.conditionlatch;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A circuit breaker of three states: closed, open and half-open.
+ *
+ * <p>
+ * In the closed state, the outcomes are recorded in a sliding window of time.
+ * The breaker trips to the open state when the failures in the window reach the failure threshold,
+ * or when the ratio of failures reaches the failure ratio after the minimum number of calls.
+ * In the open state, no permission is acquired until the cooldown elapses.
+ * After the cooldown, the breaker becomes half-open, and permits the limited number of trial calls.
+ * Like a {@code ConditionLatch}, the half-open state counts down the successes and the failure of the trial calls:
+ * it becomes closed when all trial calls succeed, or becomes open again when one trial call fails.
+ * If the trial calls don't record their outcomes within the cooldown after all permits are taken,
+ * such as the calls dropped on an exception path, the permits expire and the breaker becomes open again,
+ * so that the next trial calls are permitted after the next cooldown.
+ * </p>
+ *
+ * <p>
+ * All states are updated with CAS without any lock, and recording an outcome allocates no object.
+ * The window consists of buckets in a {@code long} array,
+ * each of them packs the epoch of the bucket (upper 24 bits), the failures (middle 20 bits)
+ * and the successes (lower 20 bits). The counts of a bucket saturate at <code>0x000FFFFF</code>.
+ * </p>
+ *
+ * @author kajitiluna
+ *
+ */
+public class CircuitBreaker {
+
+    /**
+     * States of circuit breaker.
+     *
+     * @author kajitiluna
+     *
+     */
+    public enum State {
+        /** Closed state, permitting all calls. */
+        CLOSED,
+        /** Open state, permitting no call. */
+        OPEN,
+        /** Half-open state, permitting the limited number of trial calls. */
+        HALF_OPEN
+    }
+
+    /** Number of buckets in the window. */
+    private static final int BUCKET_COUNT = 16;
+
+    /** Mask of counts in a bucket. */
+    private static final long COUNT_MASK = 0x000FFFFFL;
+
+    /** Mask of epoch in a bucket. */
+    private static final long EPOCH_MASK = 0x00FFFFFFL;
+
+    /** Shift width of state in the state word. */
+    private static final int STATE_SHIFT = 62;
+
+    /** State word of the closed state. */
+    private static final long CLOSED_WORD = 0L;
+
+    /** Tag of the open state, whose payload is the time opened. */
+    private static final long OPEN_TAG = 1L << STATE_SHIFT;
+
+    /** Tag of the half-open state, whose payload packs the permits, the successes and the failure of trials. */
+    private static final long HALF_OPEN_TAG = 2L << STATE_SHIFT;
+
+    /** Mask of payload in the state word. */
+    private static final long PAYLOAD_MASK = (1L << STATE_SHIFT) - 1;
+
+    /** State word. */
+    private final AtomicLong stateWord_;
+
+    /** Buckets of the window. */
+    private final AtomicLongArray buckets_;
+
+    /** Failure threshold in the window. */
+    private final int failureThreshold_;
+
+    /** Failure ratio in the window. */
+    private final double failureRatio_;
+
+    /** Minimum number of calls in the window for the failure ratio. */
+    private final int minimumCalls_;
+
+    /** Duration of a bucket in nanoseconds. */
+    private final long bucketNanos_;
+
+    /** Cooldown in nanoseconds. */
+    private final long cooldownNanos_;
+
+    /** Number of trial calls in the half-open state. */
+    private final int trialCount_;
+
+    /** Base time of the breaker. */
+    private final long startTime_;
+
+    /** Time when the latest half-open state started, written before entering the state. */
+    private volatile long halfOpenTime_;
+
+    /**
+     * Constructs a {@code CircuitBreaker} with one trial call in the half-open state.
+     *
+     * @param failureThreshold the number of failures in the window tripping the breaker
+     * @param failureRatio the ratio of failures in the window tripping the breaker, more than 1 for disabled
+     * @param minimumCalls the minimum number of calls in the window for evaluating {@code failureRatio}
+     * @param windowDuration the duration of the sliding window
+     * @param cooldownDuration the duration from open to half-open
+     * @param timeUnit the time unit of the durations
+     * @throws IllegalArgumentException if any parameter is out of range
+     */
+    public CircuitBreaker(int failureThreshold, double failureRatio, int minimumCalls, long windowDuration,
+            long cooldownDuration, TimeUnit timeUnit) throws IllegalArgumentException {
+        this(failureThreshold, failureRatio, minimumCalls, windowDuration, cooldownDuration, timeUnit, 1);
+    }
+
+    /**
+     * Constructs a {@code CircuitBreaker}.
+     *
+     * @param failureThreshold the number of failures in the window tripping the breaker
+     * @param failureRatio the ratio of failures in the window tripping the breaker, more than 1 for disabled
+     * @param minimumCalls the minimum number of calls in the window for evaluating {@code failureRatio}
+     * @param windowDuration the duration of the sliding window
+     * @param cooldownDuration the duration from open to half-open
+     * @param timeUnit the time unit of the durations
+     * @param trialCount the number of trial calls in the half-open state
+     * @throws IllegalArgumentException if any parameter is out of range
+     */
+    public CircuitBreaker(int failureThreshold, double failureRatio, int minimumCalls, long windowDuration,
+            long cooldownDuration, TimeUnit timeUnit, int trialCount) throws IllegalArgumentException {
+        if (failureThreshold <= 0) {
+            throw new IllegalArgumentException("failureThreshold <= 0");
+        }
+        if ((failureRatio > 0) == false) {
+            throw new IllegalArgumentException("failureRatio <= 0");
+        }
+        if (minimumCalls < 0) {
+            throw new IllegalArgumentException("minimumCalls < 0");
+        }
+        if (timeUnit.toNanos(windowDuration) < BUCKET_COUNT) {
+            throw new IllegalArgumentException("windowDuration is too short");
+        }
+        if (cooldownDuration < 0) {
+            throw new IllegalArgumentException("cooldownDuration < 0");
+        }
+        UnionSynchronizer.checkParameter(trialCount, "trialCount");
+        if (trialCount == 0) {
+            throw new IllegalArgumentException("trialCount == 0");
+        }
+
+        this.failureThreshold_ = failureThreshold;
+        this.failureRatio_ = failureRatio;
+        this.minimumCalls_ = minimumCalls;
+        this.bucketNanos_ = timeUnit.toNanos(windowDuration) / BUCKET_COUNT;
+        this.cooldownNanos_ = timeUnit.toNanos(cooldownDuration);
+        this.trialCount_ = trialCount;
+
+        this.stateWord_ = new AtomicLong(CLOSED_WORD);
+        this.buckets_ = new AtomicLongArray(BUCKET_COUNT);
+        this.startTime_ = System.nanoTime();
+    }
+
+    /**
+     * Acquires a permission of a call.
+     * The caller should record the outcome of the permitted call by {@link #recordSuccess} or {@link #recordFailure}.
+     *
+     * @return {@code true} if the call is permitted
+     */
+    public boolean tryAcquirePermission() {
+        while (true) {
+            long nowWord = this.stateWord_.get();
+            long tag = nowWord & ~PAYLOAD_MASK;
+
+            if (tag == CLOSED_WORD) {
+                return true;
+            }
+
+            long nextWord;
+            if (tag == OPEN_TAG) {
+                long openedTime = nowWord & PAYLOAD_MASK;
+                if (this.now() - openedTime < this.cooldownNanos_) {
+                    return false;
+                }
+
+                // Takes the first permit of trials.
+                nextWord = HALF_OPEN_TAG | this.packTrial(this.trialCount_ - 1, this.trialCount_, 1);
+                this.halfOpenTime_ = this.now();
+            } else {
+                int permits = (int) ((nowWord >>> 32) & 0xFFFF);
+                if (permits <= 0) {
+                    this.expireTrials(nowWord);
+                    return false;
+                }
+
+                nextWord = nowWord - (1L << 32);
+            }
+
+            if (this.stateWord_.compareAndSet(nowWord, nextWord)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Records a succeeded call.
+     */
+    public void recordSuccess() {
+        while (true) {
+            long nowWord = this.stateWord_.get();
+            long tag = nowWord & ~PAYLOAD_MASK;
+
+            if (tag == CLOSED_WORD) {
+                this.increment(1);
+                return;
+            }
+
+            if (tag == OPEN_TAG) {
+                return;
+            }
+
+            int successCount = (int) (nowWord & 0xFFFF);
+            long nextWord = (successCount <= 1) ? CLOSED_WORD : (nowWord - 1);
+            if (this.stateWord_.compareAndSet(nowWord, nextWord)) {
+                if (nextWord == CLOSED_WORD) {
+                    this.clearWindow();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Records a failed call.
+     */
+    public void recordFailure() {
+        long firstTag = this.stateWord_.get() & ~PAYLOAD_MASK;
+        if (firstTag == OPEN_TAG) {
+            return;
+        }
+
+        // The failure is counted only once, and only the transition to open is retried.
+        if (firstTag == CLOSED_WORD) {
+            this.increment(1L << 20);
+        }
+
+        while (true) {
+            long nowWord = this.stateWord_.get();
+            long tag = nowWord & ~PAYLOAD_MASK;
+
+            if (tag == OPEN_TAG) {
+                return;
+            }
+
+            if ((tag == CLOSED_WORD) && (this.isTripping() == false)) {
+                return;
+            }
+
+            if (this.stateWord_.compareAndSet(nowWord, OPEN_TAG | this.now())) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the current state.
+     * The open state doesn't become half-open until {@link #tryAcquirePermission} is invoked after the cooldown.
+     * Likewise, the expired half-open state doesn't become open until {@link #tryAcquirePermission} is invoked.
+     *
+     * @return the current state
+     */
+    public State getState() {
+        long tag = this.stateWord_.get() & ~PAYLOAD_MASK;
+        if (tag == CLOSED_WORD) {
+            return State.CLOSED;
+        }
+
+        return (tag == OPEN_TAG) ? State.OPEN : State.HALF_OPEN;
+    }
+
+    /**
+     * Returns the number of failures in the current window.
+     *
+     * @return the number of failures
+     */
+    public int getFailureCount() {
+        return (int) (this.sumWindow() >>> 32);
+    }
+
+    /**
+     * Returns the number of successes in the current window.
+     *
+     * @return the number of successes
+     */
+    public int getSuccessCount() {
+        return (int) this.sumWindow();
+    }
+
+    /**
+     * Makes the half-open state open again, if the trial calls have not recorded their outcomes within the cooldown.
+     *
+     * @param nowWord the state word of the half-open state without permits
+     */
+    private void expireTrials(long nowWord) {
+        long now = this.now();
+        if (now - this.halfOpenTime_ >= this.cooldownNanos_) {
+            this.stateWord_.compareAndSet(nowWord, OPEN_TAG | now);
+        }
+    }
+
+    private long packTrial(int permits, int successCount, int failureCount) {
+        return (((long) permits) << 32) | (failureCount << 16) | successCount;
+    }
+
+    private long now() {
+        return System.nanoTime() - this.startTime_;
+    }
+
+    /**
+     * Increments the count in the bucket of now, resetting the bucket of the old epoch.
+     *
+     * @param delta 1 for success, or <code>1 &lt;&lt; 20</code> for failure
+     */
+    private void increment(long delta) {
+        long epoch = (this.now() / this.bucketNanos_) & EPOCH_MASK;
+        int index = (int) (epoch % BUCKET_COUNT);
+        long countMask = (delta == 1) ? COUNT_MASK : (COUNT_MASK << 20);
+
+        while (true) {
+            long nowBucket = this.buckets_.get(index);
+            long nextBucket;
+            if ((nowBucket >>> 40) != epoch) {
+                nextBucket = (epoch << 40) | delta;
+            } else if ((nowBucket & countMask) == countMask) {
+                return;
+            } else {
+                nextBucket = nowBucket + delta;
+            }
+
+            if (this.buckets_.compareAndSet(index, nowBucket, nextBucket)) {
+                return;
+            }
+        }
+    }
+
+    private boolean isTripping() {
+        long sum = this.sumWindow();
+        long failureCount = sum >>> 32;
+        long totalCount = failureCount + (sum & 0xFFFFFFFFL);
+
+        if (failureCount >= this.failureThreshold_) {
+            return true;
+        }
+
+        return (totalCount >= this.minimumCalls_) && (totalCount > 0)
+                && (((double) failureCount) / totalCount >= this.failureRatio_);
+    }
+
+    /**
+     * Sums the buckets in the current window.
+     *
+     * @return the failures (upper 32 bits) and the successes (lower 32 bits)
+     */
+    private long sumWindow() {
+        long epoch = (this.now() / this.bucketNanos_) & EPOCH_MASK;
+        long successCount = 0;
+        long failureCount = 0;
+
+        for (int index = 0; index < BUCKET_COUNT; index++) {
+            long bucket = this.buckets_.get(index);
+            long age = (epoch - (bucket >>> 40)) & EPOCH_MASK;
+            if (age < BUCKET_COUNT) {
+                successCount += bucket & COUNT_MASK;
+                failureCount += (bucket >>> 20) & COUNT_MASK;
+            }
+        }
+
+        return (failureCount << 32) | successCount;
+    }
+
+    private void clearWindow() {
+        for (int index = 0; index < BUCKET_COUNT; index++) {
+            this.buckets_.set(index, 0);
+        }
+    }
+}
@@ -1,13 +1,14 @@
 package kajitiluna.utility.conditionlatch;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Collection;
 import java.util.List;
+import java.util.Spliterator;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A synchronization aid that allows one or more threads to wait
@@ -38,20 +39,49 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  */
 public class ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT> {
 
-    /** Lock object of handling success list. */
-    private final ReadWriteLock successListLock_;
+    /** Marker of the listeners already fired. */
+    private static final ListenerNode<Object, Object> FIRED_LISTENERS = new ListenerNode<Object, Object>(null, null);
 
-    /** Lock object of handling failure list. */
-    private final ReadWriteLock failureListLock_;
+    /** Updater of the results shared by the awaiters. */
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<ConditionLatch, List> RELEASED_RESULTS_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(ConditionLatch.class, List.class, "releasedResults_");
 
-    /** List in submitting success procedure. */
-    private final List<SUCCESS_RESULT> successList_;
+    /** Store in submitting success procedure. */
+    private final SegmentedResultStore<SUCCESS_RESULT> successStore_;
 
-    /** List in submitting failure procedure. */
-    private final List<FAILURE_RESULT> failureList_;
+    /** Store in submitting failure procedure. */
+    private final SegmentedResultStore<FAILURE_RESULT> failureStore_;
 
     /** Synchronizer of count down status. */
-    private final UnionSynchronizer synchronizer_;
+    private final LatchSynchronizer synchronizer_;
+
+    /** Tracker of the progress of success count. */
+    private final ProgressTracker<SUCCESS_RESULT, FAILURE_RESULT> successProgress_;
+
+    /** Tracker of the progress of failure count. */
+    private final ProgressTracker<SUCCESS_RESULT, FAILURE_RESULT> failureProgress_;
+
+    /** Set of participants already submitted, created on demand. */
+    private volatile ParticipantSet participants_;
+
+    /** Recorder of submit latencies, enabled on demand. */
+    private volatile LatencyRecorder latencyRecorder_;
+
+    /** Aggregator of failures instead of {@code failureStore_}, enabled on demand. */
+    private volatile FailureAggregator<FAILURE_RESULT> failureAggregator_;
+
+    /** Collector of the best results instead of {@code successStore_}, enabled on demand. */
+    private volatile TopKCollector<SUCCESS_RESULT> topKCollector_;
+
+    /** Snapshot of the results shared by all awaiters after released, taken by the first awaiter. */
+    private volatile List<SUCCESS_RESULT> releasedResults_;
+
+    /** Stack of listeners not invoked yet, or {@code FIRED_LISTENERS} after released. */
+    private final AtomicReference<ListenerNode<SUCCESS_RESULT, FAILURE_RESULT>> releaseListeners_;
+
+    /** Token of cooperative cancellation. */
+    private final CancellationToken cancellationToken_;
 
     /**
      * Constructs a {@code ConditionLatch} initialized with one given success count.
@@ -76,42 +106,52 @@ public class ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT> {
      *   are negative or over <code>0x0000FFFF</code>.
      */
     public ConditionLatch(int succseccCount, int failureCount) throws IllegalArgumentException {
-        this.synchronizer_ = new UnionSynchronizer(succseccCount, failureCount);
-
-        this.successListLock_ = new ReentrantReadWriteLock();
-        this.successList_ = this.createList(succseccCount + 1);
-
-        this.failureListLock_ = new ReentrantReadWriteLock();
-        this.failureList_ = this.createList(failureCount + 1);
+        this(succseccCount, failureCount, SynchronizerType.QUEUED);
     }
 
     /**
-     * Creates a {@code List} in use of initializing of success and failure lists.
-     * By over-riding this method, customize the type of success and failure lists.
+     * Constructs a {@code ConditionLatch} initialized with two given success count and the type of synchronizer.
      *
-     * @param capacity the initial capacity of the list
-     * @return {@code List}
+     * @param succseccCount the number of times {@link #submit} must be invoked
+     *   before threads can pass through {@link #await}
+     * @param failureCount the number of times {@link #submitForFail} must be invoked
+     *   before threads can pass through {@link #await}
+     * @param synchronizerType the type of synchronizer blocking the threads in {@link #await}
+     * @throws IllegalArgumentException if either {@code succseccCount} or {@code failureCount}
+     *   are negative or over <code>0x0000FFFF</code>.
      */
-    protected <TYPE> List<TYPE> createList(int capacity) {
-        return new ArrayList<TYPE>(capacity);
+    public ConditionLatch(int succseccCount, int failureCount, SynchronizerType synchronizerType)
+            throws IllegalArgumentException {
+        this.synchronizer_ = synchronizerType.create(succseccCount, failureCount);
+
+        this.successStore_ = new SegmentedResultStore<SUCCESS_RESULT>();
+        this.failureStore_ = new SegmentedResultStore<FAILURE_RESULT>();
+
+        this.releaseListeners_ = new AtomicReference<ListenerNode<SUCCESS_RESULT, FAILURE_RESULT>>();
+        if (this.synchronizer_.isReleased()) {
+            // Released from the beginning, so the listeners added later are invoked immediately.
+            this.fireReleaseListeners();
+        }
+        this.cancellationToken_ = new CancellationToken(this);
+
+        this.successProgress_ = new ProgressTracker<SUCCESS_RESULT, FAILURE_RESULT>(succseccCount);
+        this.failureProgress_ = new ProgressTracker<SUCCESS_RESULT, FAILURE_RESULT>(failureCount);
     }
 
     /**
      * Decrements the success count with submitting success result.
      * If the success count reaches zero, all waiting threads are released.
      * The submitted results are available at the thread invocating {@link #await}.
+     * If the latch has already been released, the result is discarded immediately without being stored.
      *
      * @param result successful procedure's object available at the thread invocating {@link #await}
      */
     public void submit(SUCCESS_RESULT result) {
-        Lock lock = this.successListLock_.writeLock();
-        lock.lock();
-        try {
-            this.successList_.add(result);
-        } finally {
-            lock.unlock();
+        if (this.synchronizer_.isReleased()) {
+            return;
         }
 
+        this.addSuccess(result);
         this.submit();
     }
 
@@ -120,25 +160,28 @@ public class ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT> {
      *
      */
     public final void submit() {
-        this.synchronizer_.releaseShared(1);
+        boolean released = this.synchronizer_.releaseShared(1);
+        this.successProgress_.recordDecrement(this, 1);
+
+        if (released) {
+            this.fireReleaseListeners();
+        }
     }
 
     /**
      * Decrements the failure count with submitting failure result.
      * If the failure count reaches zero, all waiting threads are released.
      * The submitted results are available at the thread invocating {@link #await}.
+     * If the latch has already been released, the result is discarded immediately without being stored.
      *
      * @param resut ailed procedure's object available at the thread invocating {@link #await}
      */
     public void submitForFail(FAILURE_RESULT resut) {
-        Lock lock = this.failureListLock_.writeLock();
-        lock.lock();
-        try {
-            this.failureList_.add(resut);
-        } finally {
-            lock.unlock();
+        if (this.synchronizer_.isReleased()) {
+            return;
         }
 
+        this.addFailure(resut);
         this.submitForFail();
     }
 
@@ -147,7 +190,549 @@ public class ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT> {
      *
      */
     public final void submitForFail() {
-        this.synchronizer_.releaseShared(-1);
+        boolean released = this.synchronizer_.releaseShared(-1);
+        this.failureProgress_.recordDecrement(this, 1);
+
+        if (released) {
+            this.fireReleaseListeners();
+        }
+    }
+
+    /**
+     * Decrements the success count by the weight with submitting success result, in one atomic update.
+     * The success count saturates at zero, and all waiting threads are released when it reaches zero.
+     * The result is added once to the list regardless of the weight.
+     * It is named differently from {@link #submit(int, Object)}, whose first argument is a participant.
+     *
+     * @param result successful procedure's object available at the thread invocating {@link #await}
+     * @param weight the number of units to decrement, such as the vote weight of a replica
+     * @throws IllegalArgumentException if {@code weight} is not positive
+     */
+    public final void submitWithWeight(SUCCESS_RESULT result, int weight) throws IllegalArgumentException {
+        this.checkWeight(weight);
+        if (this.synchronizer_.isReleased()) {
+            return;
+        }
+
+        this.addSuccess(result);
+
+        boolean released = this.synchronizer_.releaseShared(weight);
+        this.successProgress_.recordDecrement(this, weight);
+
+        if (released) {
+            this.fireReleaseListeners();
+        }
+    }
+
+    /**
+     * Decrements the failure count by the weight with submitting failure result, in one atomic update.
+     * The failure count saturates at zero, and all waiting threads are released when it reaches zero.
+     * The result is added once to the list regardless of the weight.
+     *
+     * @param result failed procedure's object available at the thread invocating {@link #await}
+     * @param weight the number of units to decrement
+     * @throws IllegalArgumentException if {@code weight} is not positive
+     */
+    public final void submitForFailWithWeight(FAILURE_RESULT result, int weight) throws IllegalArgumentException {
+        this.checkWeight(weight);
+        if (this.synchronizer_.isReleased()) {
+            return;
+        }
+
+        this.addFailure(result);
+
+        boolean released = this.synchronizer_.releaseShared(-weight);
+        this.failureProgress_.recordDecrement(this, weight);
+
+        if (released) {
+            this.fireReleaseListeners();
+        }
+    }
+
+    /**
+     * Decrements the success count by the number of results with submitting all of them, in one atomic update.
+     *
+     * @param results successful procedure's objects
+     */
+    final void submitAll(Collection<? extends SUCCESS_RESULT> results) {
+        if (results.isEmpty() || this.synchronizer_.isReleased()) {
+            return;
+        }
+
+        TopKCollector<SUCCESS_RESULT> collector = this.topKCollector_;
+        if (collector != null) {
+            for (SUCCESS_RESULT result : results) {
+                collector.add(result);
+            }
+        } else {
+            this.successStore_.addAll(results);
+            collector = this.topKCollector_;
+            if (collector != null) {
+                // The collection was enabled concurrently without seeing the results stored above.
+                for (SUCCESS_RESULT result : results) {
+                    if (result != null) {
+                        collector.add(result);
+                    }
+                }
+            }
+        }
+
+        boolean released = this.synchronizer_.releaseShared(results.size());
+        this.successProgress_.recordDecrement(this, results.size());
+
+        if (released) {
+            this.fireReleaseListeners();
+        }
+    }
+
+    /**
+     * Decrements the failure count by the number of results with submitting all of them, in one atomic update.
+     *
+     * @param results failed procedure's objects
+     */
+    final void submitAllForFail(Collection<? extends FAILURE_RESULT> results) {
+        if (results.isEmpty() || this.synchronizer_.isReleased()) {
+            return;
+        }
+
+        FailureAggregator<FAILURE_RESULT> aggregator = this.failureAggregator_;
+        if (aggregator != null) {
+            for (FAILURE_RESULT result : results) {
+                aggregator.add(result);
+            }
+        } else {
+            this.failureStore_.addAll(results);
+        }
+
+        boolean released = this.synchronizer_.releaseShared(-results.size());
+        this.failureProgress_.recordDecrement(this, results.size());
+
+        if (released) {
+            this.fireReleaseListeners();
+        }
+    }
+
+    private void addSuccess(SUCCESS_RESULT result) {
+        TopKCollector<SUCCESS_RESULT> collector = this.topKCollector_;
+        if (collector != null) {
+            collector.add(result);
+            return;
+        }
+
+        this.successStore_.add(result);
+        collector = this.topKCollector_;
+        if ((collector != null) && (result != null)) {
+            // The collection was enabled concurrently without seeing the result stored above.
+            collector.add(result);
+        }
+    }
+
+    private void addFailure(FAILURE_RESULT result) {
+        FailureAggregator<FAILURE_RESULT> aggregator = this.failureAggregator_;
+        if (aggregator != null) {
+            aggregator.add(result);
+        } else {
+            this.failureStore_.add(result);
+        }
+    }
+
+    /**
+     * Enables the aggregation of failures, which keeps a count and a few exemplars for each group of failures
+     * instead of every failure, so that the memory stays bounded during a failure storm.
+     * After enabled, {@link #getFailureList} returns the exemplars of the groups.
+     * It should be enabled before any failure is submitted.
+     *
+     * @param aggregator aggregator of the failures
+     * @throws IllegalStateException if the aggregation has already been enabled, or if a failure is already submitted
+     */
+    public final void enableFailureAggregation(FailureAggregator<FAILURE_RESULT> aggregator)
+            throws IllegalStateException {
+        synchronized (this) {
+            if (this.failureAggregator_ != null) {
+                throw new IllegalStateException("Failure aggregation is already enabled.");
+            }
+            if (this.failureStore_.size() > 0) {
+                throw new IllegalStateException("Failure is already submitted.");
+            }
+            this.failureAggregator_ = aggregator;
+        }
+    }
+
+    /**
+     * Returns the aggregator of failures.
+     *
+     * @return the aggregator, or {@code null} if the aggregation is not enabled
+     */
+    public final FailureAggregator<FAILURE_RESULT> getFailureAggregator() {
+        return this.failureAggregator_;
+    }
+
+    /**
+     * Enables the collection of the K best results, which keeps only the results in the top K by the comparator
+     * instead of every result, so that the memory is O(K) however many results are submitted.
+     * After enabled, {@link #await}, {@link #getSuccessList} and {@link #resultSpliterator} return
+     * the K best results sorted the best first.
+     * It should be enabled before any result is submitted.
+     * A result submitted concurrently with this method is either seen here, which makes this method fail,
+     * or added to the collector by the submitting thread after it stores the result,
+     * so that no result is lost from the collector when this method succeeds.
+     *
+     * @param collector collector of the best results
+     * @throws IllegalStateException if the collection has already been enabled, or if a result is already submitted
+     */
+    public final void enableTopK(TopKCollector<SUCCESS_RESULT> collector) throws IllegalStateException {
+        synchronized (this) {
+            if (this.topKCollector_ != null) {
+                throw new IllegalStateException("Top-K collection is already enabled.");
+            }
+            if (this.successStore_.size() > 0) {
+                throw new IllegalStateException("Result is already submitted.");
+            }
+            this.topKCollector_ = collector;
+        }
+    }
+
+    /**
+     * Returns the collector of the best results.
+     *
+     * @return the collector, or {@code null} if the collection is not enabled
+     */
+    public final TopKCollector<SUCCESS_RESULT> getTopKCollector() {
+        return this.topKCollector_;
+    }
+
+    private void checkWeight(int weight) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("weight <= 0");
+        }
+    }
+
+    /**
+     * Decrements the success count with submitting success result, unless the participant has already submitted.
+     * Each participant is counted at most once in both {@code submit} and {@code submitForFail},
+     * so that retries of the same participant don't release the latch too early.
+     * The participants identified with dense {@code int} are tracked more compactly than the others.
+     *
+     * @param participantId identifier of the participant
+     * @param result successful procedure's object available at the thread invocating {@link #await}
+     * @return {@code true} if the submission is accepted, {@code false} if the participant has already submitted
+     */
+    public final boolean submit(int participantId, SUCCESS_RESULT result) {
+        if (this.participants().add(participantId) == false) {
+            return false;
+        }
+
+        this.recordLatency(participantId, true);
+        this.submit(result);
+        return true;
+    }
+
+    /**
+     * Decrements the success count with submitting success result, unless the participant has already submitted.
+     * Each participant is counted at most once in both {@code submit} and {@code submitForFail}.
+     * The latency is captured only for the participant identified with {@code Integer}, as same as the {@code int}.
+     *
+     * @param participantId identifier of the participant, compared with {@code equals}
+     * @param result successful procedure's object available at the thread invocating {@link #await}
+     * @return {@code true} if the submission is accepted, {@code false} if the participant has already submitted
+     */
+    public final boolean submit(Object participantId, SUCCESS_RESULT result) {
+        if (this.participants().add(participantId) == false) {
+            return false;
+        }
+
+        if (participantId instanceof Integer) {
+            this.recordLatency(((Integer) participantId).intValue(), true);
+        }
+        this.submit(result);
+        return true;
+    }
+
+    /**
+     * Decrements the failure count with submitting failure result, unless the participant has already submitted.
+     * Each participant is counted at most once in both {@code submit} and {@code submitForFail}.
+     *
+     * @param participantId identifier of the participant
+     * @param result failed procedure's object available at the thread invocating {@link #await}
+     * @return {@code true} if the submission is accepted, {@code false} if the participant has already submitted
+     */
+    public final boolean submitForFail(int participantId, FAILURE_RESULT result) {
+        if (this.participants().add(participantId) == false) {
+            return false;
+        }
+
+        this.recordLatency(participantId, false);
+        this.submitForFail(result);
+        return true;
+    }
+
+    /**
+     * Decrements the failure count with submitting failure result, unless the participant has already submitted.
+     * Each participant is counted at most once in both {@code submit} and {@code submitForFail}.
+     * The latency is captured only for the participant identified with {@code Integer}, as same as the {@code int}.
+     *
+     * @param participantId identifier of the participant, compared with {@code equals}
+     * @param result failed procedure's object available at the thread invocating {@link #await}
+     * @return {@code true} if the submission is accepted, {@code false} if the participant has already submitted
+     */
+    public final boolean submitForFail(Object participantId, FAILURE_RESULT result) {
+        if (this.participants().add(participantId) == false) {
+            return false;
+        }
+
+        if (participantId instanceof Integer) {
+            this.recordLatency(((Integer) participantId).intValue(), false);
+        }
+        this.submitForFail(result);
+        return true;
+    }
+
+    private ParticipantSet participants() {
+        ParticipantSet participants = this.participants_;
+        if (participants != null) {
+            return participants;
+        }
+
+        synchronized (this) {
+            if (this.participants_ == null) {
+                this.participants_ = new ParticipantSet();
+            }
+
+            return this.participants_;
+        }
+    }
+
+    /**
+     * Enables the capture of the submit latency of each participant, from now to its first submission.
+     * The participants are identified by dense {@code int} from 0 to {@code participantCount - 1},
+     * and must submit with {@link #submit(int, Object)} or {@link #submitForFail(int, Object)},
+     * or with the {@code Object} overloads passing {@code Integer}. The other identifiers are not captured.
+     * The straggler report at the release is available by {@link LatencyRecorder#getReleaseReport}.
+     * Unless enabled, the submission doesn't read the clock at all.
+     *
+     * @param participantCount the number of participants
+     * @return the recorder of the latencies
+     * @throws IllegalArgumentException if {@code participantCount} is not positive
+     * @throws IllegalStateException if the capture has already been enabled
+     */
+    public final LatencyRecorder enableLatencyCapture(int participantCount) throws IllegalArgumentException,
+            IllegalStateException {
+        final LatencyRecorder recorder = new LatencyRecorder(participantCount);
+        synchronized (this) {
+            if (this.latencyRecorder_ != null) {
+                throw new IllegalStateException("Latency capture is already enabled.");
+            }
+            this.latencyRecorder_ = recorder;
+        }
+
+        this.addReleaseListener(new ReleaseListener<SUCCESS_RESULT, FAILURE_RESULT>() {
+            @Override
+            public void released(ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT> latch) {
+                recorder.recordRelease();
+            }
+        });
+
+        return recorder;
+    }
+
+    private void recordLatency(int participantId, boolean success) {
+        LatencyRecorder recorder = this.latencyRecorder_;
+        if (recorder != null) {
+            recorder.record(participantId, success);
+        }
+    }
+
+    /**
+     * Increments the success count by the given number of parties,
+     * for the case where the number of procedures is not known at the construction.
+     *
+     * @param parties the number of times {@link #submit} must be additionally invoked
+     * @return {@code false} if the latch has already been released, {@code true} otherwise
+     * @throws IllegalArgumentException if {@code parties} is negative
+     * @throws IllegalStateException if the success count goes over <code>0x0000FFFF</code>
+     */
+    public final boolean register(int parties) throws IllegalArgumentException, IllegalStateException {
+        this.checkParties(parties);
+        return this.adjust(parties, 0);
+    }
+
+    /**
+     * Decrements the success count by the given number of parties without submitting any result,
+     * releasing all waiting threads if the success count reaches zero.
+     *
+     * @param parties the number of times {@link #submit} is no longer invoked
+     * @return {@code false} if the latch has already been released, {@code true} otherwise
+     * @throws IllegalArgumentException if {@code parties} is negative
+     * @throws IllegalStateException if {@code parties} is greater than the current success count
+     */
+    public final boolean deregister(int parties) throws IllegalArgumentException, IllegalStateException {
+        this.checkParties(parties);
+        return this.adjust(-parties, 0);
+    }
+
+    /**
+     * Increments the failure count by the given number of parties.
+     *
+     * @param parties the number of times {@link #submitForFail} must be additionally invoked
+     * @return {@code false} if the latch has already been released, {@code true} otherwise
+     * @throws IllegalArgumentException if {@code parties} is negative
+     * @throws IllegalStateException if the failure count goes over <code>0x0000FFFF</code>
+     */
+    public final boolean registerForFail(int parties) throws IllegalArgumentException, IllegalStateException {
+        this.checkParties(parties);
+        return this.adjust(0, parties);
+    }
+
+    /**
+     * Decrements the failure count by the given number of parties without submitting any result,
+     * releasing all waiting threads if the failure count reaches zero.
+     *
+     * @param parties the number of times {@link #submitForFail} is no longer invoked
+     * @return {@code false} if the latch has already been released, {@code true} otherwise
+     * @throws IllegalArgumentException if {@code parties} is negative
+     * @throws IllegalStateException if {@code parties} is greater than the current failure count
+     */
+    public final boolean deregisterForFail(int parties) throws IllegalArgumentException, IllegalStateException {
+        this.checkParties(parties);
+        return this.adjust(0, -parties);
+    }
+
+    /**
+     * Releases the latch as failed without submitting any result, unless the latch has already been released.
+     * The threads waiting on {@link #await} throw {@code SubmittedFailureResultException}.
+     *
+     * @return {@code true} if this invocation released the latch
+     */
+    public final boolean cancel() {
+        if (this.synchronizer_.tryCancel() == false) {
+            return false;
+        }
+
+        this.fireReleaseListeners();
+        return true;
+    }
+
+    /**
+     * Cancels the latch if it is not released within the timeout, with the shared {@code HashedTimerWheel}.
+     * The deadline is discarded when the latch is released.
+     *
+     * @param timeout the maximum time until the latch is released
+     * @param timeUnit the time unit of the {@code timeout} argument
+     * @see #cancel()
+     */
+    public final void cancelAfter(long timeout, TimeUnit timeUnit) {
+        this.cancelAfter(timeout, timeUnit, HashedTimerWheel.getShared());
+    }
+
+    /**
+     * Cancels the latch if it is not released within the timeout, with the given {@code HashedTimerWheel}.
+     * The deadline is discarded when the latch is released.
+     *
+     * @param timeout the maximum time until the latch is released
+     * @param timeUnit the time unit of the {@code timeout} argument
+     * @param timerWheel the timer wheel scheduling the deadline
+     * @see #cancel()
+     */
+    public final void cancelAfter(long timeout, TimeUnit timeUnit, HashedTimerWheel timerWheel) {
+        if (this.synchronizer_.isReleased()) {
+            return;
+        }
+
+        final HashedTimerWheel.Timeout deadline = timerWheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                ConditionLatch.this.cancel();
+            }
+        }, timeout, timeUnit);
+
+        this.addReleaseListener(new ReleaseListener<SUCCESS_RESULT, FAILURE_RESULT>() {
+            @Override
+            public void released(ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT> latch) {
+                deadline.cancel();
+            }
+        });
+    }
+
+    /**
+     * Attaches this latch to the parent latch as a child, building a hierarchy of fan-outs.
+     * When this latch is released, it submits itself to the parent directly from the releasing thread:
+     * {@link #submit} if the success count reaches zero, or {@link #submitForFail} otherwise.
+     * When the parent is released, this latch is cancelled unless already released,
+     * so that the cancellation propagates down the tree.
+     * After the parent is released, this latch no longer submits to the parent.
+     *
+     * @param parent the parent latch, whose results are its child latches
+     */
+    public final void attachTo(
+            final ConditionLatch<? super ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT>,
+                    ? super ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT>> parent) {
+        this.addReleaseListener(new ReleaseListener<SUCCESS_RESULT, FAILURE_RESULT>() {
+            @Override
+            public void released(ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT> child) {
+                if (parent.synchronizer_.isReleased()) {
+                    return;
+                }
+
+                if (child.synchronizer_.getSuccessCount() == 0) {
+                    parent.submit(child);
+                } else {
+                    parent.submitForFail(child);
+                }
+            }
+        });
+
+        cancelOnRelease(parent, this);
+    }
+
+    private static <PARENT_SUCCESS, PARENT_FAILURE> void cancelOnRelease(
+            ConditionLatch<PARENT_SUCCESS, PARENT_FAILURE> parent, final ConditionLatch<?, ?> child) {
+        parent.addReleaseListener(new ReleaseListener<PARENT_SUCCESS, PARENT_FAILURE>() {
+            @Override
+            public void released(ConditionLatch<PARENT_SUCCESS, PARENT_FAILURE> latch) {
+                child.cancel();
+            }
+        });
+    }
+
+    private boolean adjust(int successDelta, int failureDelta) {
+        // The expected counts are raised before and lowered after the counts, never to overestimate the progress.
+        this.adjustExpectedCounts(Math.max(successDelta, 0), Math.max(failureDelta, 0));
+        boolean adjusted = this.synchronizer_.tryAdjust(successDelta, failureDelta);
+        if (adjusted == false) {
+            this.adjustExpectedCounts(-Math.max(successDelta, 0), -Math.max(failureDelta, 0));
+            this.successProgress_.update(this);
+            this.failureProgress_.update(this);
+            return false;
+        }
+        this.adjustExpectedCounts(Math.min(successDelta, 0), Math.min(failureDelta, 0));
+
+        if (successDelta != 0) {
+            this.successProgress_.update(this);
+        }
+        if (failureDelta != 0) {
+            this.failureProgress_.update(this);
+        }
+
+        if (this.synchronizer_.isReleased()) {
+            this.fireReleaseListeners();
+        }
+
+        return true;
+    }
+
+    private void adjustExpectedCounts(int successDelta, int failureDelta) {
+        if (successDelta != 0) {
+            this.successProgress_.adjustExpectedCount(successDelta);
+        }
+        if (failureDelta != 0) {
+            this.failureProgress_.adjustExpectedCount(failureDelta);
+        }
+    }
+
+    private void checkParties(int parties) {
+        if (parties < 0) {
+            throw new IllegalArgumentException("parties < 0");
+        }
     }
 
     /**
@@ -168,6 +753,10 @@ public class ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT> {
      * </ul>
      * </p>
      * <p>
+     * In a worker thread of {@code ForkJoinPool}, the current thread waits through {@code ForkJoinPool#managedBlock},
+     * so that the pool can activate a spare thread for the other tasks, such as the tasks submitting to this latch.
+     * </p>
+     * <p>
      * <b>Warning:</b> The contents of the returned list are not guaranteed to be same as when latch is released,
      * but are guaranteed to contains all contents at the time of released.
      * </p>
@@ -177,7 +766,7 @@ public class ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT> {
      * @throws InterruptedException if the current thread is interrupted while waiting
      */
     public List<SUCCESS_RESULT> await() throws SubmittedFailureResultException, InterruptedException {
-        this.synchronizer_.acquireSharedInterruptibly(1);
+        LatchBlocker.acquire(this.synchronizer_);
 
         return this.returnResult();
     }
@@ -201,6 +790,10 @@ public class ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT> {
      * </ul>
      * </p>
      * <p>
+     * In a worker thread of {@code ForkJoinPool}, the current thread waits through {@code ForkJoinPool#managedBlock},
+     * so that the pool can activate a spare thread for the other tasks, such as the tasks submitting to this latch.
+     * </p>
+     * <p>
      * <b>Warning:</b> The contents of the returned list are not guaranteed to be same as when latch is released,
      * but are guaranteed to contains all contents at the time of released.
      * </p>
@@ -214,7 +807,7 @@ public class ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT> {
      */
     public List<SUCCESS_RESULT> await(long timeout, TimeUnit timeUnit) throws SubmittedFailureResultException,
             TimeoutException, InterruptedException {
-        boolean result = this.synchronizer_.tryAcquireSharedNanos(1, timeUnit.toNanos(timeout));
+        boolean result = LatchBlocker.tryAcquireNanos(this.synchronizer_, timeUnit.toNanos(timeout));
 
         if (result == false) {
             throw new TimeoutException("Time over for waiting in ConditionLatch.");
@@ -224,61 +817,268 @@ public class ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT> {
     }
 
     /**
-     * Returns list of succeed procedure's result.
+     * Causes the current thread to wait as {@link #await()}, and returns the parallel stream of the results.
+     * The stream reads the stored results directly without any copy,
+     * and its spliterator splits the results evenly for fork-join.
      *
-     * @return list of succeed procedure's result
-     * @throws SubmittedFailureResultException if the success count doesn't reach zero
+     * @return parallel stream of succeed procedure's result
+     * @throws SubmittedFailureResultException if the failure count reaches zero before success count does.
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     * @see #resultSpliterator()
      */
-    private List<SUCCESS_RESULT> returnResult() throws SubmittedFailureResultException {
-        int successCount = this.synchronizer_.getSuccessCount();
+    public final Stream<SUCCESS_RESULT> awaitStream() throws SubmittedFailureResultException, InterruptedException {
+        LatchBlocker.acquire(this.synchronizer_);
+        this.checkSucceeded();
 
-        if (successCount > 0) {
-            throw new SubmittedFailureResultException("Failed procedure.");
+        return StreamSupport.stream(this.resultSpliterator(), true);
+    }
+
+    /**
+     * Causes the current thread to wait as {@link #await(long, TimeUnit)}, and returns the parallel stream of the results.
+     * The stream reads the stored results directly without any copy,
+     * and its spliterator splits the results evenly for fork-join.
+     *
+     * @param timeout the maximum time to wait
+     * @param timeUnit the time unit of the {@code timeout} argument
+     * @return parallel stream of succeed procedure's result
+     * @throws SubmittedFailureResultException if the failure count reaches zero before success count does
+     * @throws TimeoutException if the waiting time elapsed before the latch is released
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     * @see #resultSpliterator()
+     */
+    public final Stream<SUCCESS_RESULT> awaitStream(long timeout, TimeUnit timeUnit)
+            throws SubmittedFailureResultException, TimeoutException, InterruptedException {
+        if (LatchBlocker.tryAcquireNanos(this.synchronizer_, timeUnit.toNanos(timeout)) == false) {
+            throw new TimeoutException("Time over for waiting in ConditionLatch.");
         }
+        this.checkSucceeded();
 
-        List<SUCCESS_RESULT> successList = this.copyList(this.successList_, this.successListLock_);
+        return StreamSupport.stream(this.resultSpliterator(), true);
+    }
 
-        return successList;
+    /**
+     * Returns the spliterator of succeed procedure's results submitted until now.
+     * It reads the stored results directly without any copy,
+     * and has the characteristics of {@code ORDERED}, {@code SIZED}, {@code SUBSIZED} and {@code IMMUTABLE}.
+     *
+     * @return spliterator of succeed procedure's result
+     */
+    public final Spliterator<SUCCESS_RESULT> resultSpliterator() {
+        return this.successSnapshot().spliterator();
     }
 
     /**
-     * Copies list.
+     * Returns list of succeed procedure's result.
+     * The first awaiter after released takes the snapshot, and the others share the same list,
+     * so that the awaiters woken at once don't take their own snapshots.
      *
-     * @param srcList
-     * @param baseLock
-     * @return copyed list
+     * @return list of succeed procedure's result
+     * @throws SubmittedFailureResultException if the success count doesn't reach zero
      */
-    private <TYPE> List<TYPE> copyList(List<TYPE> srcList, ReadWriteLock baseLock) {
-        List<TYPE> copyList;
+    @SuppressWarnings("unchecked")
+    List<SUCCESS_RESULT> returnResult() throws SubmittedFailureResultException {
+        this.checkSucceeded();
 
-        Lock lock = baseLock.readLock();
-        lock.lock();
-        try {
-            List<TYPE> tempList = this.createList(1);
-            tempList.addAll(srcList);
-            copyList = Collections.unmodifiableList(tempList);
-        } finally {
-            lock.unlock();
+        List<SUCCESS_RESULT> successList = this.releasedResults_;
+        if (successList != null) {
+            return successList;
         }
 
-        return copyList;
+        RELEASED_RESULTS_UPDATER.compareAndSet(this, null, this.successSnapshot());
+        return this.releasedResults_;
+    }
+
+    private void checkSucceeded() throws SubmittedFailureResultException {
+        int successCount = this.synchronizer_.getSuccessCount();
+
+        if (successCount > 0) {
+            throw new SubmittedFailureResultException("Failed procedure.");
+        }
     }
 
     /**
      * Returns list of succeed procedure's result.
+     * The list is an immutable snapshot created in O(1) without any copy and any lock,
+     * except that the written results are copied while a result is being stored by a concurrent submission.
+     * If the collection of the K best results is enabled, the list consists of them sorted the best first,
+     * which is not O(1) but merges the kept results of every stripe of the collector and sorts them,
+     * in O(S * K * log(S * K)) time and O(S * K) memory for S stripes on each invocation.
      *
      * @return list of succeed procedure's result
      */
     public final List<SUCCESS_RESULT> getSuccessList() {
-        return this.copyList(this.successList_, this.successListLock_);
+        return this.successSnapshot();
+    }
+
+    private List<SUCCESS_RESULT> successSnapshot() {
+        TopKCollector<SUCCESS_RESULT> collector = this.topKCollector_;
+        if (collector != null) {
+            return collector.getResults();
+        }
+
+        return this.successStore_.snapshot();
     }
 
     /**
      * Returns list of failed procedure's result.
+     * The list is an immutable snapshot created in O(1) without any copy and any lock,
+     * except that the written results are copied while a result is being stored by a concurrent submission.
+     * If the aggregation of failures is enabled, the list consists of the exemplars of the groups.
      *
      * @return list of failed procedure's result
      */
     public final List<FAILURE_RESULT> getFailureList() {
-        return this.copyList(this.failureList_, this.failureListLock_);
+        FailureAggregator<FAILURE_RESULT> aggregator = this.failureAggregator_;
+        if (aggregator != null) {
+            return aggregator.getExemplars();
+        }
+
+        return this.failureStore_.snapshot();
+    }
+
+    /**
+     * Returns the current success count in O(1) without any lock.
+     *
+     * @return the number of times {@link #submit} must be still invoked before the latch is released
+     */
+    public final int getSuccessCount() {
+        return this.synchronizer_.getSuccessCount();
+    }
+
+    /**
+     * Returns the current failure count in O(1) without any lock.
+     *
+     * @return the number of times {@link #submitForFail} must be still invoked before the latch is released
+     */
+    public final int getFailureCount() {
+        return this.synchronizer_.getFailureCount();
+    }
+
+    /**
+     * Adds a listener notified when the progress of the success count crosses each of the given fractions.
+     * The progress is the ratio of the decremented count to the initial count adjusted by {@link #register}.
+     * The fractions already crossed are notified immediately in the current thread.
+     *
+     * @param listener listener invoked by the submitting thread
+     * @param fractions the fractions of progress in the range of (0, 1], such as 0.25, 0.5 and 0.75
+     * @throws IllegalArgumentException if any fraction is out of the range
+     */
+    public final void addProgressListener(ProgressListener<SUCCESS_RESULT, FAILURE_RESULT> listener,
+            double... fractions) throws IllegalArgumentException {
+        this.successProgress_.addListener(listener, fractions);
+        this.successProgress_.update(this);
+    }
+
+    /**
+     * Adds a listener notified when the progress of the failure count crosses each of the given fractions.
+     * The progress is the ratio of the decremented count to the initial count adjusted by {@link #registerForFail}.
+     * The fractions already crossed are notified immediately in the current thread.
+     *
+     * @param listener listener invoked by the submitting thread
+     * @param fractions the fractions of progress in the range of (0, 1]
+     * @throws IllegalArgumentException if any fraction is out of the range
+     */
+    public final void addFailureProgressListener(ProgressListener<SUCCESS_RESULT, FAILURE_RESULT> listener,
+            double... fractions) throws IllegalArgumentException {
+        this.failureProgress_.addListener(listener, fractions);
+        this.failureProgress_.update(this);
+    }
+
+    /**
+     * Returns the token of cooperative cancellation, which tells the workers that the latch has been released.
+     *
+     * @return token of cooperative cancellation
+     */
+    public final CancellationToken getCancellationToken() {
+        return this.cancellationToken_;
+    }
+
+    final boolean isReleased() {
+        return this.synchronizer_.isReleased();
+    }
+
+    final void addReleaseHook(final Runnable hook) {
+        this.addReleaseListener(new ReleaseListener<SUCCESS_RESULT, FAILURE_RESULT>() {
+            @Override
+            public void released(ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT> latch) {
+                hook.run();
+            }
+        });
+    }
+
+    /**
+     * Adds a listener invoked once when the latch is released.
+     * If the latch has already been released, the listener is invoked immediately in the current thread.
+     *
+     * @param listener listener invoked by the thread which releases the latch
+     */
+    public final void addReleaseListener(ReleaseListener<SUCCESS_RESULT, FAILURE_RESULT> listener) {
+        while (true) {
+            ListenerNode<SUCCESS_RESULT, FAILURE_RESULT> nowHead = this.releaseListeners_.get();
+            if (nowHead == FIRED_LISTENERS) {
+                listener.released(this);
+                return;
+            }
+
+            ListenerNode<SUCCESS_RESULT, FAILURE_RESULT> nextHead =
+                    new ListenerNode<SUCCESS_RESULT, FAILURE_RESULT>(listener, nowHead);
+            if (this.releaseListeners_.compareAndSet(nowHead, nextHead)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Invokes the listeners in the order of registration.
+     * Only the first invocation after released fires the listeners.
+     */
+    @SuppressWarnings("unchecked")
+    private void fireReleaseListeners() {
+        ListenerNode<SUCCESS_RESULT, FAILURE_RESULT> head =
+                this.releaseListeners_.getAndSet((ListenerNode<SUCCESS_RESULT, FAILURE_RESULT>) FIRED_LISTENERS);
+        if (head == FIRED_LISTENERS) {
+            return;
+        }
+
+        ListenerNode<SUCCESS_RESULT, FAILURE_RESULT> reversed = null;
+        for (ListenerNode<SUCCESS_RESULT, FAILURE_RESULT> node = head; node != null; node = node.next_) {
+            reversed = new ListenerNode<SUCCESS_RESULT, FAILURE_RESULT>(node.listener_, reversed);
+        }
+
+        RuntimeException thrown = null;
+        for (ListenerNode<SUCCESS_RESULT, FAILURE_RESULT> node = reversed; node != null; node = node.next_) {
+            try {
+                node.listener_.released(this);
+            } catch (RuntimeException exc) {
+                if (thrown == null) {
+                    thrown = exc;
+                }
+            }
+        }
+
+        if (thrown != null) {
+            throw thrown;
+        }
+    }
+
+    /**
+     * Node of the stack of listeners.
+     *
+     * @param <SUCCESS_RESULT> Object type submitted in success procedure
+     * @param <FAILURE_RESULT> Object type submitted in failed procedure
+     */
+    private static final class ListenerNode<SUCCESS_RESULT, FAILURE_RESULT> {
+
+        /** Listener. */
+        private final ReleaseListener<SUCCESS_RESULT, FAILURE_RESULT> listener_;
+
+        /** Next node. */
+        private final ListenerNode<SUCCESS_RESULT, FAILURE_RESULT> next_;
+
+        ListenerNode(ReleaseListener<SUCCESS_RESULT, FAILURE_RESULT> listener,
+                ListenerNode<SUCCESS_RESULT, FAILURE_RESULT> next) {
+            this.listener_ = listener;
+            this.next_ = next;
+        }
     }
 }
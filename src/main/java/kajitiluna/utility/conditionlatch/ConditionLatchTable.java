@@ -0,0 +1,465 @@
+package kajitiluna.utility.conditionlatch;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A table of many lightweight latches, each of them behaves like a {@code ConditionLatch} without results.
+ *
+ * <p>
+ * A {@code ConditionLatch} owns a synchronizer, two result stores and its listeners and trackers,
+ * which cost hundreds of bytes per latch.
+ * A {@code ConditionLatchTable} keeps the packed success and failure counts of each latch
+ * in one element of a shared {@code long} array, so one latch costs only a dozen bytes.
+ * Each latch is addressed by a handle returned from {@link #allocate}, and its slot is reclaimed only by {@link #free}.
+ * A slot is not reclaimed on release, since the owner still reads the outcome of the released latch;
+ * the owner frees the handle once neither it nor any waiter uses it.
+ * A freed handle becomes stale, and any subsequent use of it throws {@code IllegalStateException}.
+ * </p>
+ *
+ * <p>
+ * The layout of a slot is as follows.
+ * <ul>
+ * <li>bit 0 - 15 : success count (same as {@code UnionSynchronizer})
+ * <li>bit 16 - 31 : failure count (same as {@code UnionSynchronizer})
+ * <li>bit 32 : flag of waiting threads existence
+ * <li>bit 33 : flag of allocated slot
+ * <li>bit 34 - 63 : generation of slot, which is incremented on each {@link #free}
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * The waiting threads are parked on one of striped monitors.
+ * A submission wakes up the monitor only when a thread is waiting on the released latch,
+ * and {@link #submitAll} wakes up each monitor at most once for many released latches.
+ * </p>
+ *
+ * @author kajitiluna
+ *
+ */
+public class ConditionLatchTable {
+
+    /** Flag of waiting threads existence. */
+    private static final long WAITING_FLAG = 1L << 32;
+
+    /** Flag of allocated slot. */
+    private static final long ALLOCATED_FLAG = 1L << 33;
+
+    /** Shift width of generation. */
+    private static final int GENERATION_SHIFT = 34;
+
+    /** Mask of generation after shifted. */
+    private static final long GENERATION_MASK = (1L << (64 - GENERATION_SHIFT)) - 1;
+
+    /** States of latches. */
+    private final AtomicLongArray states_;
+
+    /** Next indexes of free slots, in 1-origin. 0 means the end of free slots. */
+    private final int[] nextFreeIndexes_;
+
+    /** Head of free slots, which is packed the modification tag (upper) and the 1-origin index (lower). */
+    private final AtomicLong freeHead_;
+
+    /** Monitors of waiting threads. */
+    private final Object[] monitors_;
+
+    /**
+     * Constructs a {@code ConditionLatchTable} with the given capacity.
+     *
+     * @param capacity the maximum number of latches allocated at the same time
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    public ConditionLatchTable(int capacity) throws IllegalArgumentException {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity <= 0");
+        }
+
+        this.states_ = new AtomicLongArray(capacity);
+
+        this.nextFreeIndexes_ = new int[capacity];
+        for (int index = 0; index < capacity - 1; index++) {
+            this.nextFreeIndexes_[index] = index + 2;
+        }
+        this.freeHead_ = new AtomicLong(1);
+
+        int monitorCount = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 8 - 1) << 1;
+        this.monitors_ = new Object[monitorCount];
+        for (int index = 0; index < monitorCount; index++) {
+            this.monitors_[index] = new Object();
+        }
+    }
+
+    /**
+     * Allocates a latch initialized with the given counts.
+     *
+     * @param successCount the number of times {@link #submit} must be invoked
+     *   before threads can pass through {@link #await}
+     * @param failureCount the number of times {@link #submitForFail} must be invoked
+     *   before threads can pass through {@link #await}
+     * @return handle of the allocated latch
+     * @throws IllegalArgumentException if either {@code successCount} or {@code failureCount}
+     *   are negative or over <code>0x0000FFFF</code>.
+     * @throws IllegalStateException if all slots are already allocated
+     */
+    public long allocate(int successCount, int failureCount) throws IllegalArgumentException,
+            IllegalStateException {
+        UnionSynchronizer.checkParameter(successCount, "successCount");
+        UnionSynchronizer.checkParameter(failureCount, "failureCount");
+
+        int index = this.popFreeIndex();
+        long nowState = this.states_.get(index);
+        long generation = nowState >>> GENERATION_SHIFT;
+        long nextState = (generation << GENERATION_SHIFT) | ALLOCATED_FLAG | successCount
+                | (((long) failureCount) << 16);
+        this.states_.set(index, nextState);
+
+        return (generation << 32) | index;
+    }
+
+    /**
+     * Reclaims the slot of the latch.
+     * The threads still waiting on the latch throw {@code IllegalStateException}.
+     *
+     * @param handle handle of the latch
+     * @throws IllegalStateException if the handle is already freed
+     */
+    public void free(long handle) throws IllegalStateException {
+        int index = this.toIndex(handle);
+
+        while (true) {
+            long nowState = this.states_.get(index);
+            this.checkHandle(handle, nowState);
+
+            long nextGeneration = ((nowState >>> GENERATION_SHIFT) + 1) & GENERATION_MASK;
+            if (this.states_.compareAndSet(index, nowState, nextGeneration << GENERATION_SHIFT) == false) {
+                continue;
+            }
+
+            if ((nowState & WAITING_FLAG) != 0) {
+                this.wakeUp(index);
+            }
+            this.pushFreeIndex(index);
+
+            return;
+        }
+    }
+
+    private int popFreeIndex() {
+        while (true) {
+            long nowHead = this.freeHead_.get();
+            int headIndex = (int) nowHead;
+            if (headIndex == 0) {
+                throw new IllegalStateException("ConditionLatchTable is full.");
+            }
+
+            long nextTag = (nowHead >>> 32) + 1;
+            long nextHead = (nextTag << 32) | (this.nextFreeIndexes_[headIndex - 1] & 0xFFFFFFFFL);
+            if (this.freeHead_.compareAndSet(nowHead, nextHead)) {
+                return headIndex - 1;
+            }
+        }
+    }
+
+    private void pushFreeIndex(int index) {
+        while (true) {
+            long nowHead = this.freeHead_.get();
+            this.nextFreeIndexes_[index] = (int) nowHead;
+
+            long nextTag = (nowHead >>> 32) + 1;
+            long nextHead = (nextTag << 32) | (index + 1);
+            if (this.freeHead_.compareAndSet(nowHead, nextHead)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Decrements the success count of the latch.
+     * If the success count reaches zero, all threads waiting on the latch are released.
+     *
+     * @param handle handle of the latch
+     * @return {@code true} if this invocation released the latch
+     * @throws IllegalStateException if the handle is already freed
+     */
+    public boolean submit(long handle) throws IllegalStateException {
+        long releasedState = this.countDown(handle, 1);
+        if ((releasedState & WAITING_FLAG) != 0) {
+            this.wakeUp(this.toIndex(handle));
+        }
+
+        return (releasedState != 0);
+    }
+
+    /**
+     * Decrements the failure count of the latch.
+     * If the failure count reaches zero, all threads waiting on the latch are released.
+     *
+     * @param handle handle of the latch
+     * @return {@code true} if this invocation released the latch
+     * @throws IllegalStateException if the handle is already freed
+     */
+    public boolean submitForFail(long handle) throws IllegalStateException {
+        long releasedState = this.countDown(handle, -1);
+        if ((releasedState & WAITING_FLAG) != 0) {
+            this.wakeUp(this.toIndex(handle));
+        }
+
+        return (releasedState != 0);
+    }
+
+    /**
+     * Decrements the success count of each latch, and the failure count of each latch of {@code failedHandles}.
+     * The waiting threads are woken up in one batch, each monitor is notified at most once.
+     *
+     * @param succeededHandles handles of the latches decremented the success count
+     * @param failedHandles handles of the latches decremented the failure count
+     * @return the number of latches released by this invocation
+     * @throws IllegalStateException if any handle is already freed
+     */
+    public int submitAll(long[] succeededHandles, long[] failedHandles) throws IllegalStateException {
+        boolean[] wakingMonitors = new boolean[this.monitors_.length];
+        int releasedCount = 0;
+
+        try {
+            releasedCount += this.countDownAll(succeededHandles, 1, wakingMonitors);
+            releasedCount += this.countDownAll(failedHandles, -1, wakingMonitors);
+        } finally {
+            for (int index = 0; index < wakingMonitors.length; index++) {
+                if (wakingMonitors[index]) {
+                    this.wakeUpMonitor(this.monitors_[index]);
+                }
+            }
+        }
+
+        return releasedCount;
+    }
+
+    private int countDownAll(long[] handles, int releases, boolean[] wakingMonitors) {
+        int releasedCount = 0;
+        for (long handle : handles) {
+            long releasedState = this.countDown(handle, releases);
+            if (releasedState == 0) {
+                continue;
+            }
+
+            releasedCount++;
+            if ((releasedState & WAITING_FLAG) != 0) {
+                wakingMonitors[this.toIndex(handle) & (this.monitors_.length - 1)] = true;
+            }
+        }
+
+        return releasedCount;
+    }
+
+    /**
+     * Decrements the count of the latch with CAS.
+     *
+     * @param handle handle of the latch
+     * @param releases positive value for the success count, negative value for the failure count
+     * @return the state before released if this invocation released the latch, otherwise 0
+     */
+    private long countDown(long handle, int releases) {
+        int index = this.toIndex(handle);
+
+        while (true) {
+            long nowState = this.states_.get(index);
+            this.checkHandle(handle, nowState);
+
+            int successCount = (int) (nowState & 0x0000FFFF);
+            int failureCount = (int) ((nowState & 0xFFFF0000L) >>> 16);
+            if ((successCount <= 0) || (failureCount <= 0)) {
+                return 0;
+            }
+
+            long nextState;
+            int nextCount;
+            if (releases >= 0) {
+                nextCount = successCount - 1;
+                nextState = nowState - 1;
+            } else {
+                nextCount = failureCount - 1;
+                nextState = nowState - (1L << 16);
+            }
+
+            if (this.states_.compareAndSet(index, nowState, nextState) == false) {
+                continue;
+            }
+
+            return (nextCount == 0) ? nowState : 0;
+        }
+    }
+
+    private void wakeUp(int index) {
+        this.wakeUpMonitor(this.monitors_[index & (this.monitors_.length - 1)]);
+    }
+
+    private void wakeUpMonitor(Object monitor) {
+        synchronized (monitor) {
+            monitor.notifyAll();
+        }
+    }
+
+    /**
+     * Causes the current thread to wait until the latch has counted down to zero
+     * unless the thread is {@linkplain Thread#interrupt interrupted}.
+     *
+     * @param handle handle of the latch
+     * @throws SubmittedFailureResultException if the failure count reaches zero before success count does
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     * @throws IllegalStateException if the handle is already freed
+     * @see ConditionLatch#await()
+     */
+    public void await(long handle) throws SubmittedFailureResultException, InterruptedException,
+            IllegalStateException {
+        int index = this.toIndex(handle);
+
+        long nowState = this.prepareWaiting(handle, index);
+        if (this.isReleasedState(nowState) == false) {
+            Object monitor = this.monitors_[index & (this.monitors_.length - 1)];
+            synchronized (monitor) {
+                nowState = this.states_.get(index);
+                this.checkHandle(handle, nowState);
+                while (this.isReleasedState(nowState) == false) {
+                    monitor.wait();
+                    nowState = this.states_.get(index);
+                    this.checkHandle(handle, nowState);
+                }
+            }
+        }
+
+        this.returnResult(nowState);
+    }
+
+    /**
+     * Causes the current thread to wait until the latch has counted down to zero
+     * unless the thread is {@linkplain Thread#interrupt interrupted}, or the specified waiting time elapses.
+     *
+     * @param handle handle of the latch
+     * @param timeout the maximum time to wait
+     * @param timeUnit the time unit of the {@code timeout} argument
+     * @throws SubmittedFailureResultException if the failure count reaches zero before success count does
+     * @throws TimeoutException if the waiting time elapsed before the either counts reached zero
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     * @throws IllegalStateException if the handle is already freed
+     * @see ConditionLatch#await(long, TimeUnit)
+     */
+    public void await(long handle, long timeout, TimeUnit timeUnit) throws SubmittedFailureResultException,
+            TimeoutException, InterruptedException, IllegalStateException {
+        int index = this.toIndex(handle);
+        long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
+
+        long nowState = this.prepareWaiting(handle, index);
+        if (this.isReleasedState(nowState) == false) {
+            Object monitor = this.monitors_[index & (this.monitors_.length - 1)];
+            synchronized (monitor) {
+                nowState = this.states_.get(index);
+                this.checkHandle(handle, nowState);
+                while (this.isReleasedState(nowState) == false) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw new TimeoutException("Time over for waiting in ConditionLatchTable.");
+                    }
+
+                    TimeUnit.NANOSECONDS.timedWait(monitor, remaining);
+                    nowState = this.states_.get(index);
+                    this.checkHandle(handle, nowState);
+                }
+            }
+        }
+
+        this.returnResult(nowState);
+    }
+
+    /**
+     * Sets the flag of waiting threads existence, unless the latch is already released.
+     *
+     * @return the latest state
+     */
+    private long prepareWaiting(long handle, int index) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+
+        while (true) {
+            long nowState = this.states_.get(index);
+            this.checkHandle(handle, nowState);
+
+            if (this.isReleasedState(nowState) || ((nowState & WAITING_FLAG) != 0)) {
+                return nowState;
+            }
+
+            if (this.states_.compareAndSet(index, nowState, nowState | WAITING_FLAG)) {
+                return nowState | WAITING_FLAG;
+            }
+        }
+    }
+
+    private void returnResult(long nowState) throws SubmittedFailureResultException {
+        if ((nowState & 0x0000FFFF) > 0) {
+            throw new SubmittedFailureResultException("Failed procedure.");
+        }
+    }
+
+    private boolean isReleasedState(long nowState) {
+        return ((nowState & 0x0000FFFF) == 0) || ((nowState & 0xFFFF0000L) == 0);
+    }
+
+    /**
+     * Returns whether the latch is released.
+     *
+     * @param handle handle of the latch
+     * @return {@code true} if either the success count or the failure count reached zero
+     * @throws IllegalStateException if the handle is already freed
+     */
+    public boolean isReleased(long handle) throws IllegalStateException {
+        long nowState = this.states_.get(this.toIndex(handle));
+        this.checkHandle(handle, nowState);
+
+        return this.isReleasedState(nowState);
+    }
+
+    /**
+     * Returns the current success count of the latch.
+     *
+     * @param handle handle of the latch
+     * @return the current success count
+     * @throws IllegalStateException if the handle is already freed
+     */
+    public int getSuccessCount(long handle) throws IllegalStateException {
+        long nowState = this.states_.get(this.toIndex(handle));
+        this.checkHandle(handle, nowState);
+
+        return (int) (nowState & 0x0000FFFF);
+    }
+
+    /**
+     * Returns the current failure count of the latch.
+     *
+     * @param handle handle of the latch
+     * @return the current failure count
+     * @throws IllegalStateException if the handle is already freed
+     */
+    public int getFailureCount(long handle) throws IllegalStateException {
+        long nowState = this.states_.get(this.toIndex(handle));
+        this.checkHandle(handle, nowState);
+
+        return (int) ((nowState & 0xFFFF0000L) >>> 16);
+    }
+
+    private int toIndex(long handle) {
+        int index = (int) handle;
+        if ((index < 0) || (index >= this.states_.length())) {
+            throw new IllegalStateException("Illegal handle : " + handle);
+        }
+
+        return index;
+    }
+
+    private void checkHandle(long handle, long nowState) {
+        if (((nowState & ALLOCATED_FLAG) == 0) || ((nowState >>> GENERATION_SHIFT) != (handle >>> 32))) {
+            throw new IllegalStateException("Already freed handle : " + handle);
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package kajitiluna.utility.conditionlatch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An aggregator of failures, which groups them by a key and keeps a count and a few exemplars for each group.
+ *
+ * <p>
+ * During a failure storm, thousands of near-identical failures are submitted.
+ * The aggregator keeps at most {@code maxGroups} groups and at most {@code maxExemplars} exemplars in each group,
+ * so the memory stays bounded no matter how many failures arrive.
+ * The failures of new keys after the groups reach {@code maxGroups} are counted in the other group,
+ * for which {@link FailureGroup#isOther} returns {@code true}, without allocating a group for each of them.
+ * Adding a failure takes no lock except the first one of each group, which is put in a concurrent map.
+ * </p>
+ *
+ * <p>
+ * By default, a {@code Throwable} is classified by its class name and its message,
+ * and any other failure is classified by itself.
+ * </p>
+ *
+ * @author kajitiluna
+ *
+ * @param <FAILURE_RESULT> Object type submitted in failed procedure
+ */
+public class FailureAggregator<FAILURE_RESULT> {
+
+    /** Key of the group of the failures over {@code maxGroups}, never equal to any key of the classification. */
+    private static final Object OTHER_KEY = new SentinelKey("(other)");
+
+    /** Key of {@code null} failure in the default classification, never equal to any failure. */
+    private static final Object NULL_KEY = new SentinelKey("(null)");
+
+    /** Classifier of the failures, or {@code null} for the default. */
+    private final FailureClassifier<? super FAILURE_RESULT> classifier_;
+
+    /** Maximum number of groups. */
+    private final int maxGroups_;
+
+    /** Maximum number of exemplars in a group. */
+    private final int maxExemplars_;
+
+    /** Groups of failures. */
+    private final ConcurrentMap<Object, FailureGroup<FAILURE_RESULT>> groups_;
+
+    /** Number of groups reserved, not over {@code maxGroups}. */
+    private final AtomicInteger groupCount_;
+
+    /** Total number of failures. */
+    private final AtomicLong totalCount_;
+
+    /**
+     * Constructs a {@code FailureAggregator} with the default classification.
+     *
+     * @param maxGroups the maximum number of groups
+     * @param maxExemplars the maximum number of exemplars kept in each group
+     * @throws IllegalArgumentException if either {@code maxGroups} or {@code maxExemplars} is not positive
+     */
+    public FailureAggregator(int maxGroups, int maxExemplars) throws IllegalArgumentException {
+        this(null, maxGroups, maxExemplars);
+    }
+
+    /**
+     * Constructs a {@code FailureAggregator} with the classifier.
+     *
+     * @param classifier classifier of the failures, or {@code null} for the default classification
+     * @param maxGroups the maximum number of groups
+     * @param maxExemplars the maximum number of exemplars kept in each group
+     * @throws IllegalArgumentException if either {@code maxGroups} or {@code maxExemplars} is not positive
+     */
+    public FailureAggregator(FailureClassifier<? super FAILURE_RESULT> classifier, int maxGroups, int maxExemplars)
+            throws IllegalArgumentException {
+        if (maxGroups <= 0) {
+            throw new IllegalArgumentException("maxGroups <= 0");
+        }
+        if (maxExemplars <= 0) {
+            throw new IllegalArgumentException("maxExemplars <= 0");
+        }
+
+        this.classifier_ = classifier;
+        this.maxGroups_ = maxGroups;
+        this.maxExemplars_ = maxExemplars;
+        this.groups_ = new ConcurrentHashMap<Object, FailureGroup<FAILURE_RESULT>>();
+        this.groupCount_ = new AtomicInteger();
+        this.totalCount_ = new AtomicLong();
+    }
+
+    /**
+     * Adds the failure to its group.
+     *
+     * @param failure the failure
+     */
+    public void add(FAILURE_RESULT failure) {
+        this.totalCount_.incrementAndGet();
+        this.group(this.classify(failure)).add(failure);
+    }
+
+    /**
+     * Returns the total number of failures added.
+     *
+     * @return the total number of failures
+     */
+    public long getTotalCount() {
+        return this.totalCount_.get();
+    }
+
+    /**
+     * Returns the groups in descending order of count.
+     *
+     * @return list of the groups
+     */
+    public List<FailureGroup<FAILURE_RESULT>> getGroups() {
+        List<FailureGroup<FAILURE_RESULT>> groups = new ArrayList<FailureGroup<FAILURE_RESULT>>(this.groups_.values());
+        Collections.sort(groups, new Comparator<FailureGroup<FAILURE_RESULT>>() {
+            @Override
+            public int compare(FailureGroup<FAILURE_RESULT> group1, FailureGroup<FAILURE_RESULT> group2) {
+                return Long.compare(group2.getCount(), group1.getCount());
+            }
+        });
+
+        return Collections.unmodifiableList(groups);
+    }
+
+    /**
+     * Returns the exemplars of all groups, in descending order of the count of the group.
+     *
+     * @return list of the exemplars
+     */
+    public List<FAILURE_RESULT> getExemplars() {
+        List<FAILURE_RESULT> exemplars = new ArrayList<FAILURE_RESULT>();
+        for (FailureGroup<FAILURE_RESULT> group : this.getGroups()) {
+            exemplars.addAll(group.getExemplars());
+        }
+
+        return Collections.unmodifiableList(exemplars);
+    }
+
+    private Object classify(FAILURE_RESULT failure) {
+        if (this.classifier_ != null) {
+            return this.classifier_.classify(failure);
+        }
+
+        if (failure == null) {
+            return NULL_KEY;
+        }
+        if (failure instanceof Throwable) {
+            return failure.getClass().getName() + ": " + ((Throwable) failure).getMessage();
+        }
+        return failure;
+    }
+
+    private FailureGroup<FAILURE_RESULT> group(Object key) {
+        FailureGroup<FAILURE_RESULT> group = this.groups_.get(key);
+        if (group != null) {
+            return group;
+        }
+
+        if (this.reserveGroup() == false) {
+            return this.otherGroup();
+        }
+
+        FailureGroup<FAILURE_RESULT> newGroup = new FailureGroup<FAILURE_RESULT>(key, this.maxExemplars_);
+        group = this.groups_.putIfAbsent(key, newGroup);
+        if (group == null) {
+            return newGroup;
+        }
+
+        this.groupCount_.decrementAndGet();
+        return group;
+    }
+
+    /**
+     * Reserves a group, unless the groups have reached {@code maxGroups}.
+     *
+     * @return {@code true} if reserved
+     */
+    private boolean reserveGroup() {
+        while (true) {
+            int groupCount = this.groupCount_.get();
+            if (groupCount >= this.maxGroups_) {
+                return false;
+            }
+            if (this.groupCount_.compareAndSet(groupCount, groupCount + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private FailureGroup<FAILURE_RESULT> otherGroup() {
+        FailureGroup<FAILURE_RESULT> group = this.groups_.get(OTHER_KEY);
+        if (group != null) {
+            return group;
+        }
+
+        FailureGroup<FAILURE_RESULT> newGroup = new FailureGroup<FAILURE_RESULT>(OTHER_KEY, this.maxExemplars_);
+        group = this.groups_.putIfAbsent(OTHER_KEY, newGroup);
+        return (group == null) ? newGroup : group;
+    }
+
+    /**
+     * Key distinguished by the identity, whose name is only for {@code toString}.
+     */
+    private static final class SentinelKey {
+
+        /** Name of the key. */
+        private final String name_;
+
+        SentinelKey(String name) {
+            this.name_ = name;
+        }
+
+        @Override
+        public String toString() {
+            return this.name_;
+        }
+    }
+
+    /**
+     * Group of failures of the same key.
+     *
+     * @author kajitiluna
+     *
+     * @param <FAILURE_RESULT> Object type submitted in failed procedure
+     */
+    public static final class FailureGroup<FAILURE_RESULT> {
+
+        /** Marker of {@code null} exemplar, since {@code null} slot means not written yet. */
+        private static final Object NULL_EXEMPLAR = new Object();
+
+        /** Key of the group. */
+        private final Object key_;
+
+        /** Number of failures in the group. */
+        private final AtomicLong count_;
+
+        /** Exemplars, the first failures of the group. */
+        private final AtomicReferenceArray<Object> exemplars_;
+
+        FailureGroup(Object key, int maxExemplars) {
+            this.key_ = key;
+            this.count_ = new AtomicLong();
+            this.exemplars_ = new AtomicReferenceArray<Object>(maxExemplars);
+        }
+
+        void add(FAILURE_RESULT failure) {
+            long index = this.count_.getAndIncrement();
+            if (index < this.exemplars_.length()) {
+                this.exemplars_.set((int) index, (failure == null) ? NULL_EXEMPLAR : failure);
+            }
+        }
+
+        /**
+         * Returns the key of the group.
+         *
+         * @return the key
+         */
+        public Object getKey() {
+            return this.key_;
+        }
+
+        /**
+         * Returns whether the group counts the failures of new keys after the groups reached {@code maxGroups}.
+         *
+         * @return {@code true} if the group is the other group
+         */
+        public boolean isOther() {
+            return this.key_ == OTHER_KEY;
+        }
+
+        /**
+         * Returns the number of failures in the group.
+         *
+         * @return the number of failures
+         */
+        public long getCount() {
+            return this.count_.get();
+        }
+
+        /**
+         * Returns the exemplars of the group, which are the first failures of the group.
+         *
+         * @return list of the exemplars
+         */
+        @SuppressWarnings("unchecked")
+        public List<FAILURE_RESULT> getExemplars() {
+            List<FAILURE_RESULT> exemplars = new ArrayList<FAILURE_RESULT>(this.exemplars_.length());
+            for (int index = 0; index < this.exemplars_.length(); index++) {
+                Object exemplar = this.exemplars_.get(index);
+                if (exemplar != null) {
+                    exemplars.add((exemplar == NULL_EXEMPLAR) ? null : (FAILURE_RESULT) exemplar);
+                }
+            }
+
+            return Collections.unmodifiableList(exemplars);
+        }
+
+        @Override
+        public String toString() {
+            return "FailureGroup [key=" + this.key_ + ", count=" + this.count_.get() + "]";
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package kajitiluna.utility.conditionlatch;
+
+/**
+ * A classifier of the failures aggregated by {@link FailureAggregator}.
+ *
+ * @author kajitiluna
+ *
+ * @param <FAILURE_RESULT> Object type submitted in failed procedure
+ */
+public interface FailureClassifier<FAILURE_RESULT> {
+
+    /**
+     * Returns the key of the group of the failure.
+     * The failures of equal keys are aggregated into the same group.
+     *
+     * @param failure the failure, may be {@code null}
+     * @return the key of the group, not {@code null}
+     */
+    Object classify(FAILURE_RESULT failure);
+}
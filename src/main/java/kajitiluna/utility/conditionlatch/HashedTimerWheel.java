@@ -0,0 +1,304 @@
+package kajitiluna.utility.conditionlatch;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A hashed timer wheel shared by the deadlines of many latches.
+ *
+ * <p>
+ * The wheel is an array of buckets, and a deadline is hashed into the bucket of its tick.
+ * One ticker thread advances the wheel at every tick, and fires all expired deadlines of the bucket in a batch.
+ * Scheduling a deadline is O(1), which only enqueues it to a lock-free queue drained by the ticker thread,
+ * and cancelling a deadline is O(1), which only marks it and leaves the removal to the ticker thread.
+ * On the other, a {@code ScheduledThreadPoolExecutor} keeps a heap of O(log n) insertion and removal,
+ * which is heavy for hundreds of thousands of deadlines in flight.
+ * </p>
+ *
+ * <p>
+ * The deadlines are fired in the ticker thread, so the task of a deadline should finish quickly without blocking.
+ * The accuracy of a deadline is the tick duration.
+ * </p>
+ *
+ * @author kajitiluna
+ *
+ */
+public class HashedTimerWheel {
+
+    /** Buckets of deadlines. Only the ticker thread accesses them. */
+    private final Timeout[] buckets_;
+
+    /** Tick duration in nanoseconds. */
+    private final long tickNanos_;
+
+    /** Deadlines scheduled and not hashed into the buckets yet. */
+    private final Queue<Timeout> pendingTimeouts_;
+
+    /** Start time of the wheel. */
+    private final long startTime_;
+
+    /** Ticker thread. */
+    private final Thread ticker_;
+
+    /** Whether the wheel is stopped. */
+    private volatile boolean stopped_;
+
+    /** Whether the wheel is the shared one, which is never stopped. */
+    private final boolean shared_;
+
+    /**
+     * Constructs a {@code HashedTimerWheel} and starts its ticker thread.
+     *
+     * @param tickDuration the duration of a tick
+     * @param timeUnit the time unit of the {@code tickDuration} argument
+     * @param wheelSize the number of buckets, rounded up to a power of two
+     * @throws IllegalArgumentException if either {@code tickDuration} or {@code wheelSize} is not positive
+     */
+    public HashedTimerWheel(long tickDuration, TimeUnit timeUnit, int wheelSize) throws IllegalArgumentException {
+        this(tickDuration, timeUnit, wheelSize, false);
+    }
+
+    private HashedTimerWheel(long tickDuration, TimeUnit timeUnit, int wheelSize, boolean shared) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration <= 0");
+        }
+        if (wheelSize <= 0) {
+            throw new IllegalArgumentException("wheelSize <= 0");
+        }
+
+        int bucketCount = (wheelSize == 1) ? 1 : Integer.highestOneBit(wheelSize - 1) << 1;
+        this.buckets_ = new Timeout[bucketCount];
+        this.tickNanos_ = timeUnit.toNanos(tickDuration);
+        this.pendingTimeouts_ = new ConcurrentLinkedQueue<Timeout>();
+        this.startTime_ = System.nanoTime();
+        this.shared_ = shared;
+
+        this.ticker_ = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                HashedTimerWheel.this.runTicker();
+            }
+        }, "HashedTimerWheel-ticker");
+        this.ticker_.setDaemon(true);
+        this.ticker_.start();
+    }
+
+    /**
+     * Returns the wheel shared in the process, with 10 milliseconds of tick and 512 buckets.
+     * The shared wheel can't be stopped, since the deadlines of other users are scheduled on it.
+     *
+     * @return the shared wheel
+     */
+    public static HashedTimerWheel getShared() {
+        return SharedHolder.SHARED;
+    }
+
+    /**
+     * Schedules the task to run once after the delay.
+     *
+     * @param task task to run in the ticker thread
+     * @param delay the delay from now
+     * @param timeUnit the time unit of the {@code delay} argument
+     * @return the handle of the deadline, which cancels the task
+     * @throws IllegalStateException if the wheel is already stopped
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit timeUnit) throws IllegalStateException {
+        if (this.stopped_) {
+            throw new IllegalStateException("HashedTimerWheel is already stopped.");
+        }
+
+        long deadline = System.nanoTime() - this.startTime_ + timeUnit.toNanos(Math.max(delay, 0));
+        Timeout timeout = new Timeout(task, deadline);
+        this.pendingTimeouts_.add(timeout);
+
+        return timeout;
+    }
+
+    /**
+     * Stops the ticker thread. The deadlines not fired yet are never fired.
+     *
+     * @throws IllegalStateException if the wheel is the shared one
+     */
+    public void stop() throws IllegalStateException {
+        if (this.shared_) {
+            throw new IllegalStateException("Shared HashedTimerWheel can't be stopped.");
+        }
+
+        this.stopped_ = true;
+        this.ticker_.interrupt();
+    }
+
+    private void runTicker() {
+        long tick = 0;
+        while (this.stopped_ == false) {
+            long tickDeadline = this.tickNanos_ * (tick + 1);
+            long sleepNanos = tickDeadline - (System.nanoTime() - this.startTime_);
+            if (sleepNanos > 0) {
+                LockSupport.parkNanos(this, sleepNanos);
+                continue;
+            }
+
+            this.transferPendingTimeouts(tick);
+            this.expireTimeouts((int) (tick & (this.buckets_.length - 1)), tickDeadline);
+            tick++;
+        }
+    }
+
+    /**
+     * Hashes the pending deadlines into the buckets.
+     *
+     * @param currentTick the tick processed now
+     */
+    private void transferPendingTimeouts(long currentTick) {
+        Timeout timeout;
+        while ((timeout = this.pendingTimeouts_.poll()) != null) {
+            if (timeout.isCancelled()) {
+                continue;
+            }
+
+            long targetTick = Math.max(timeout.deadline_ / this.tickNanos_, currentTick);
+            timeout.remainingRounds_ = (targetTick - currentTick) / this.buckets_.length;
+
+            int bucketIndex = (int) (targetTick & (this.buckets_.length - 1));
+            timeout.next_ = this.buckets_[bucketIndex];
+            this.buckets_[bucketIndex] = timeout;
+        }
+    }
+
+    /**
+     * Fires the expired deadlines in the bucket, and removes the cancelled deadlines.
+     *
+     * @param bucketIndex the index of the bucket
+     * @param tickDeadline the end of the current tick
+     */
+    private void expireTimeouts(int bucketIndex, long tickDeadline) {
+        Timeout previous = null;
+        Timeout timeout = this.buckets_[bucketIndex];
+        while (timeout != null) {
+            Timeout next = timeout.next_;
+
+            boolean removing = timeout.isCancelled();
+            if ((removing == false) && (timeout.remainingRounds_ <= 0) && (timeout.deadline_ <= tickDeadline)) {
+                timeout.expire();
+                removing = true;
+            } else if (removing == false) {
+                timeout.remainingRounds_--;
+            }
+
+            if (removing) {
+                if (previous == null) {
+                    this.buckets_[bucketIndex] = next;
+                } else {
+                    previous.next_ = next;
+                }
+                timeout.next_ = null;
+            } else {
+                previous = timeout;
+            }
+
+            timeout = next;
+        }
+    }
+
+    /**
+     * Holder of the shared wheel, created on demand.
+     *
+     * @author kajitiluna
+     *
+     */
+    private static final class SharedHolder {
+
+        /** Shared wheel. */
+        static final HashedTimerWheel SHARED = new HashedTimerWheel(10, TimeUnit.MILLISECONDS, 512, true);
+
+        private SharedHolder() {
+            // Do nothing.
+        }
+    }
+
+    /**
+     * Handle of a deadline scheduled in {@code HashedTimerWheel}.
+     *
+     * @author kajitiluna
+     *
+     */
+    public static final class Timeout {
+
+        /** State in waiting. */
+        private static final int WAITING = 0;
+
+        /** State after cancelled. */
+        private static final int CANCELLED = 1;
+
+        /** State after expired. */
+        private static final int EXPIRED = 2;
+
+        /** Updater of state. */
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state_");
+
+        /** Task run on expired. */
+        private final Runnable task_;
+
+        /** Deadline in nanoseconds from the start of the wheel. */
+        private final long deadline_;
+
+        /** State of the deadline. */
+        private volatile int state_;
+
+        /** Remaining rounds of the wheel. Only the ticker thread accesses it. */
+        private long remainingRounds_;
+
+        /** Next deadline in the bucket. Only the ticker thread accesses it. */
+        private Timeout next_;
+
+        Timeout(Runnable task, long deadline) {
+            this.task_ = task;
+            this.deadline_ = deadline;
+        }
+
+        /**
+         * Cancels the deadline in O(1).
+         *
+         * @return {@code true} if cancelled, {@code false} if already expired or cancelled
+         */
+        public boolean cancel() {
+            return STATE_UPDATER.compareAndSet(this, WAITING, CANCELLED);
+        }
+
+        /**
+         * Returns whether the deadline is cancelled.
+         *
+         * @return {@code true} if cancelled
+         */
+        public boolean isCancelled() {
+            return this.state_ == CANCELLED;
+        }
+
+        /**
+         * Returns whether the deadline is expired and its task is run.
+         *
+         * @return {@code true} if expired
+         */
+        public boolean isExpired() {
+            return this.state_ == EXPIRED;
+        }
+
+        void expire() {
+            if (STATE_UPDATER.compareAndSet(this, WAITING, EXPIRED) == false) {
+                return;
+            }
+
+            try {
+                this.task_.run();
+            } catch (Throwable exc) {
+                // Keeps the shared ticker thread alive for the other deadlines, even if an error is thrown.
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, exc);
+            }
+        }
+    }
+}
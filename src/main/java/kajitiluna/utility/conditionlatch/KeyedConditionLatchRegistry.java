@@ -0,0 +1,204 @@
+package kajitiluna.utility.conditionlatch;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A registry of {@code ConditionLatch} per key, for coalescing concurrent requests of the same key.
+ *
+ * <p>
+ * The first thread invoking {@link #join} for a key becomes the <em>leader</em> of the key,
+ * and the subsequent threads become the <em>followers</em> sharing the same latch.
+ * The leader performs the procedure and submits its result to the latch,
+ * and the followers wait for the result with {@link ConditionLatch#await}.
+ * The entry of the key is removed exactly when the latch is released,
+ * thus the next {@link #join} for the key creates a new latch.
+ * </p>
+ *
+ * <p>
+ * The entries are distributed in the striped maps by the hash code of the key,
+ * so that the lookups of different keys don't contend.
+ * </p>
+ *
+ * @author kajitiluna
+ *
+ * @param <KEY> type of the key
+ * @param <SUCCESS_RESULT> Object type submitted in success procedure
+ * @param <FAILURE_RESULT> Object type submitted in failed procedure
+ */
+public class KeyedConditionLatchRegistry<KEY, SUCCESS_RESULT, FAILURE_RESULT> {
+
+    /** Striped maps of the latches in flight. */
+    private final ConcurrentMap<KEY, ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT>>[] stripes_;
+
+    /** Success count of the created latches. */
+    private final int successCount_;
+
+    /** Failure count of the created latches. */
+    private final int failureCount_;
+
+    /**
+     * Constructs a {@code KeyedConditionLatchRegistry} creating the latches with one success and one failure.
+     */
+    public KeyedConditionLatchRegistry() {
+        this(1, 1);
+    }
+
+    /**
+     * Constructs a {@code KeyedConditionLatchRegistry} creating the latches with the given counts.
+     *
+     * @param successCount the success count of the created latches
+     * @param failureCount the failure count of the created latches
+     * @throws IllegalArgumentException if either {@code successCount} or {@code failureCount}
+     *   are negative or over <code>0x0000FFFF</code>.
+     */
+    public KeyedConditionLatchRegistry(int successCount, int failureCount) throws IllegalArgumentException {
+        this(successCount, failureCount, Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    /**
+     * Constructs a {@code KeyedConditionLatchRegistry} creating the latches with the given counts.
+     *
+     * @param successCount the success count of the created latches
+     * @param failureCount the failure count of the created latches
+     * @param concurrencyLevel the estimated number of concurrently joining threads
+     * @throws IllegalArgumentException if either {@code successCount} or {@code failureCount}
+     *   are negative or over <code>0x0000FFFF</code>, or {@code concurrencyLevel} is not positive.
+     */
+    public KeyedConditionLatchRegistry(int successCount, int failureCount, int concurrencyLevel)
+            throws IllegalArgumentException {
+        UnionSynchronizer.checkParameter(successCount, "successCount");
+        UnionSynchronizer.checkParameter(failureCount, "failureCount");
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("concurrencyLevel <= 0");
+        }
+
+        this.successCount_ = successCount;
+        this.failureCount_ = failureCount;
+
+        int stripeCount = (concurrencyLevel == 1) ? 1 : Integer.highestOneBit(concurrencyLevel - 1) << 1;
+        @SuppressWarnings("unchecked")
+        ConcurrentMap<KEY, ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT>>[] stripes =
+                (ConcurrentMap<KEY, ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT>>[]) new ConcurrentMap<?, ?>[stripeCount];
+        for (int index = 0; index < stripeCount; index++) {
+            stripes[index] = new ConcurrentHashMap<KEY, ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT>>();
+        }
+        this.stripes_ = stripes;
+    }
+
+    /**
+     * Creates a {@code ConditionLatch} for a new key.
+     * By over-riding this method, customize the latches.
+     *
+     * @param successCount the success count of the latch
+     * @param failureCount the failure count of the latch
+     * @return {@code ConditionLatch}
+     */
+    protected ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT> createLatch(int successCount, int failureCount) {
+        return new ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT>(successCount, failureCount);
+    }
+
+    /**
+     * Joins the latch in flight for the key, or creates a new latch if no latch is in flight.
+     *
+     * @param key the key
+     * @return participation, which tells whether the current thread is the leader of the key
+     */
+    public Participation<SUCCESS_RESULT, FAILURE_RESULT> join(final KEY key) {
+        final ConcurrentMap<KEY, ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT>> stripe = this.stripeOf(key);
+
+        ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT> latch = stripe.get(key);
+        if (latch != null) {
+            return new Participation<SUCCESS_RESULT, FAILURE_RESULT>(latch, false);
+        }
+
+        final ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT> newLatch =
+                this.createLatch(this.successCount_, this.failureCount_);
+        latch = stripe.putIfAbsent(key, newLatch);
+        if (latch != null) {
+            return new Participation<SUCCESS_RESULT, FAILURE_RESULT>(latch, false);
+        }
+
+        newLatch.addReleaseListener(new ReleaseListener<SUCCESS_RESULT, FAILURE_RESULT>() {
+            @Override
+            public void released(ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT> releasedLatch) {
+                stripe.remove(key, newLatch);
+            }
+        });
+
+        return new Participation<SUCCESS_RESULT, FAILURE_RESULT>(newLatch, true);
+    }
+
+    /**
+     * Returns the latch in flight for the key.
+     *
+     * @param key the key
+     * @return the latch in flight, or {@code null} if no latch is in flight
+     */
+    public ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT> get(KEY key) {
+        return this.stripeOf(key).get(key);
+    }
+
+    /**
+     * Returns the number of the latches in flight.
+     *
+     * @return the number of the latches in flight
+     */
+    public int size() {
+        int size = 0;
+        for (ConcurrentMap<KEY, ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT>> stripe : this.stripes_) {
+            size += stripe.size();
+        }
+
+        return size;
+    }
+
+    private ConcurrentMap<KEY, ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT>> stripeOf(KEY key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        hash *= 0x85EBCA6B;
+        hash ^= (hash >>> 13);
+
+        return this.stripes_[hash & (this.stripes_.length - 1)];
+    }
+
+    /**
+     * Participation in the latch of a key.
+     *
+     * @author kajitiluna
+     *
+     * @param <SUCCESS_RESULT> Object type submitted in success procedure
+     * @param <FAILURE_RESULT> Object type submitted in failed procedure
+     */
+    public static final class Participation<SUCCESS_RESULT, FAILURE_RESULT> {
+
+        /** Shared latch of the key. */
+        private final ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT> latch_;
+
+        /** Whether the participant is the leader. */
+        private final boolean leader_;
+
+        Participation(ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT> latch, boolean leader) {
+            this.latch_ = latch;
+            this.leader_ = leader;
+        }
+
+        /**
+         * Returns the latch shared in the key.
+         *
+         * @return the latch shared in the key
+         */
+        public ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT> getLatch() {
+            return this.latch_;
+        }
+
+        /**
+         * Returns whether the participant created the latch, and is responsible for submitting the result.
+         *
+         * @return {@code true} if the participant is the leader
+         */
+        public boolean isLeader() {
+            return this.leader_;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package kajitiluna.utility.conditionlatch;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * A {@code ManagedBlocker} waiting for the release of {@code ConditionLatch} inside a {@code ForkJoinPool}.
+ *
+ * <p>
+ * A worker thread of a {@code ForkJoinPool} blocked in {@code await} is taken out of the pool without compensation,
+ * so the pool starves, and deadlocks when the submitting tasks are queued in the same pool.
+ * Waiting through {@link ForkJoinPool#managedBlock} lets the pool activate a spare thread while the worker is blocked.
+ * {@link #isReleasable} reads the count state of the synchronizer, and so the released latch never blocks.
+ * The other threads wait on the synchronizer directly.
+ * </p>
+ *
+ * @author kajitiluna
+ *
+ */
+final class LatchBlocker implements ForkJoinPool.ManagedBlocker {
+
+    /** Synchronizer of the latch. */
+    private final LatchSynchronizer synchronizer_;
+
+    /** Whether the waiting time is limited. */
+    private final boolean timed_;
+
+    /** Deadline in nanoseconds, if the waiting time is limited. */
+    private final long deadline_;
+
+    /** Whether the waiting time elapsed. */
+    private boolean timedOut_;
+
+    private LatchBlocker(LatchSynchronizer synchronizer, boolean timed, long deadline) {
+        this.synchronizer_ = synchronizer;
+        this.timed_ = timed;
+        this.deadline_ = deadline;
+    }
+
+    /**
+     * Waits until either count reaches zero, unless the current thread is interrupted.
+     *
+     * @param synchronizer synchronizer of the latch
+     * @throws InterruptedException if the current thread is interrupted
+     */
+    static void acquire(LatchSynchronizer synchronizer) throws InterruptedException {
+        if (synchronizer.isReleased()) {
+            return;
+        }
+
+        if ((Thread.currentThread() instanceof ForkJoinWorkerThread) == false) {
+            synchronizer.acquireSharedInterruptibly(1);
+            return;
+        }
+
+        ForkJoinPool.managedBlock(new LatchBlocker(synchronizer, false, 0));
+    }
+
+    /**
+     * Waits until either count reaches zero, unless the current thread is interrupted or the timeout elapses.
+     *
+     * @param synchronizer synchronizer of the latch
+     * @param nanosTimeout the maximum number of nanoseconds to wait
+     * @return {@code true} if either count reached zero, {@code false} if timed out
+     * @throws InterruptedException if the current thread is interrupted
+     */
+    static boolean tryAcquireNanos(LatchSynchronizer synchronizer, long nanosTimeout) throws InterruptedException {
+        if (synchronizer.isReleased()) {
+            return true;
+        }
+
+        if ((Thread.currentThread() instanceof ForkJoinWorkerThread) == false) {
+            return synchronizer.tryAcquireSharedNanos(1, nanosTimeout);
+        }
+        if (nanosTimeout <= 0) {
+            return false;
+        }
+
+        LatchBlocker blocker = new LatchBlocker(synchronizer, true, System.nanoTime() + nanosTimeout);
+        ForkJoinPool.managedBlock(blocker);
+        return blocker.timedOut_ == false;
+    }
+
+    @Override
+    public boolean block() throws InterruptedException {
+        if (this.timed_ == false) {
+            this.synchronizer_.acquireSharedInterruptibly(1);
+            return true;
+        }
+
+        long remainingNanos = this.deadline_ - System.nanoTime();
+        if ((remainingNanos <= 0) || (this.synchronizer_.tryAcquireSharedNanos(1, remainingNanos) == false)) {
+            this.timedOut_ = true;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isReleasable() {
+        return this.synchronizer_.isReleased();
+    }
+}
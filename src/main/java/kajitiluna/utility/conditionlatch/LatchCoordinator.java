@@ -0,0 +1,167 @@
+package kajitiluna.utility.conditionlatch;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A coordinator node owning the counters of distributed latches.
+ *
+ * <p>
+ * Each distributed latch is a {@code ConditionLatch} in the coordinator, identified by a {@code long} identifier.
+ * The remote submitters send the batches of results in {@code SUBMIT} frames through {@link LatchTransport},
+ * and the coordinator submits each run of the same outcome in the batch to the latch in one decrement of the count,
+ * in the order of submission until the latch is released.
+ * When the latch is released, the coordinator broadcasts a {@code RELEASED} frame
+ * to all remote nodes which subscribed to the latch.
+ * The threads in the coordinator use the latch returned by {@link #create} as usual.
+ * </p>
+ *
+ * @author kajitiluna
+ *
+ * @param <SUCCESS_RESULT> Object type submitted in success procedure
+ * @param <FAILURE_RESULT> Object type submitted in failed procedure
+ */
+public class LatchCoordinator<SUCCESS_RESULT, FAILURE_RESULT> implements LatchFrameHandler {
+
+    /** Identifier of the coordinator node. */
+    private final String nodeId_;
+
+    /** Transport between the nodes. */
+    private final LatchTransport transport_;
+
+    /** Latches owned by the coordinator. */
+    private final ConcurrentMap<Long, ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT>> latches_;
+
+    /** Remote nodes subscribing to each latch. */
+    private final ConcurrentMap<Long, Set<String>> subscribers_;
+
+    /**
+     * Constructs a {@code LatchCoordinator}, and binds it to the transport.
+     *
+     * @param nodeId identifier of the coordinator node
+     * @param transport transport between the nodes
+     */
+    public LatchCoordinator(String nodeId, LatchTransport transport) {
+        this.nodeId_ = nodeId;
+        this.transport_ = transport;
+        this.latches_ = new ConcurrentHashMap<Long, ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT>>();
+        this.subscribers_ = new ConcurrentHashMap<Long, Set<String>>();
+
+        transport.bind(nodeId, this);
+    }
+
+    /**
+     * Creates a distributed latch.
+     *
+     * @param latchId identifier of the latch, unique in the coordinator
+     * @param successCount the number of success results required for release
+     * @param failureCount the number of failure results required for release as failed
+     * @return the latch in the coordinator
+     * @throws IllegalArgumentException if either {@code successCount} or {@code failureCount}
+     *   are negative or over <code>0x0000FFFF</code>.
+     * @throws IllegalStateException if the latch of the identifier already exists
+     */
+    public ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT> create(final long latchId, int successCount,
+            int failureCount) throws IllegalArgumentException, IllegalStateException {
+        ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT> latch =
+                new ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT>(successCount, failureCount);
+        if (this.latches_.putIfAbsent(latchId, latch) != null) {
+            throw new IllegalStateException("Latch already exists : " + latchId);
+        }
+
+        latch.addReleaseListener(new ReleaseListener<SUCCESS_RESULT, FAILURE_RESULT>() {
+            @Override
+            public void released(ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT> latch) {
+                LatchCoordinator.this.broadcastRelease(latchId, latch);
+            }
+        });
+
+        return latch;
+    }
+
+    /**
+     * Returns the latch of the identifier.
+     *
+     * @param latchId identifier of the latch
+     * @return the latch, or {@code null} if not exists
+     */
+    public ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT> get(long latchId) {
+        return this.latches_.get(latchId);
+    }
+
+    /**
+     * Removes the latch of the identifier. The frames of the removed latch are ignored after that.
+     *
+     * @param latchId identifier of the latch
+     * @return the removed latch, or {@code null} if not exists
+     */
+    public ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT> remove(long latchId) {
+        this.subscribers_.remove(latchId);
+        return this.latches_.remove(latchId);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void received(String sourceNodeId, LatchFrame frame) {
+        ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT> latch = this.latches_.get(frame.getLatchId());
+
+        switch (frame.getType()) {
+        case SUBMIT:
+            if (latch == null) {
+                return;
+            }
+            // Each run of the frame is applied in one decrement, in the order of submission.
+            List<?> results = frame.getResults();
+            int[] runLengths = frame.getRunLengths();
+            int offset = 0;
+            for (int runIndex = 0; (runIndex < runLengths.length) && (latch.isReleased() == false); runIndex++) {
+                List<?> run = results.subList(offset, offset + runLengths[runIndex]);
+                if (runIndex % 2 == 0) {
+                    latch.submitAll((List<SUCCESS_RESULT>) run);
+                } else {
+                    latch.submitAllForFail((List<FAILURE_RESULT>) run);
+                }
+                offset += runLengths[runIndex];
+            }
+            return;
+
+        case SUBSCRIBE:
+            this.subscribers(frame.getLatchId()).add(sourceNodeId);
+            // The release may be broadcast before the subscription is added.
+            if ((latch != null) && latch.isReleased()) {
+                this.transport_.send(this.nodeId_, sourceNodeId,
+                        LatchFrame.released(frame.getLatchId(), latch.getSuccessCount() == 0));
+            }
+            return;
+
+        default:
+            return;
+        }
+    }
+
+    private Set<String> subscribers(long latchId) {
+        Set<String> subscribers = this.subscribers_.get(latchId);
+        if (subscribers != null) {
+            return subscribers;
+        }
+
+        Set<String> newSubscribers = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        subscribers = this.subscribers_.putIfAbsent(latchId, newSubscribers);
+        return (subscribers == null) ? newSubscribers : subscribers;
+    }
+
+    private void broadcastRelease(long latchId, ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT> latch) {
+        Set<String> subscribers = this.subscribers_.get(latchId);
+        if (subscribers == null) {
+            return;
+        }
+
+        LatchFrame frame = LatchFrame.released(latchId, latch.getSuccessCount() == 0);
+        for (String subscriber : subscribers) {
+            this.transport_.send(this.nodeId_, subscriber, frame);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package kajitiluna.utility.conditionlatch;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A frame exchanged between the nodes of distributed latches through {@link LatchTransport}.
+ *
+ * <p>
+ * A {@code SUBMIT} frame carries a batch of success and failure results for one latch in the order of submission,
+ * which decrements the counts of the latch by the number of results in the batch.
+ * The results are divided into runs of the same outcome, alternating from a run of success results,
+ * so that the coordinator applies each run in one decrement without reordering the outcomes.
+ * A {@code SUBSCRIBE} frame asks the coordinator to notify the release of the latch,
+ * and a {@code RELEASED} frame notifies the release with its outcome.
+ * The frame is immutable, and a transport crossing processes serializes its fields.
+ * </p>
+ *
+ * @author kajitiluna
+ *
+ */
+public final class LatchFrame {
+
+    /**
+     * Types of frame.
+     *
+     * @author kajitiluna
+     *
+     */
+    public enum Type {
+        /** Batch of results sent from a remote submitter to the coordinator. */
+        SUBMIT,
+        /** Subscription of the release sent from a remote awaiter to the coordinator. */
+        SUBSCRIBE,
+        /** Notification of the release broadcast from the coordinator. */
+        RELEASED
+    }
+
+    /** Type of the frame. */
+    private final Type type_;
+
+    /** Identifier of the latch. */
+    private final long latchId_;
+
+    /** Results in the batch, in the order of submission. */
+    private final List<?> results_;
+
+    /** Lengths of the runs, alternating from a run of success results. */
+    private final int[] runLengths_;
+
+    /** Whether the latch is released with success. */
+    private final boolean succeeded_;
+
+    private LatchFrame(Type type, long latchId, List<?> results, int[] runLengths, boolean succeeded) {
+        this.type_ = type;
+        this.latchId_ = latchId;
+        this.results_ = results;
+        this.runLengths_ = runLengths;
+        this.succeeded_ = succeeded;
+    }
+
+    /**
+     * Creates a {@code SUBMIT} frame.
+     *
+     * @param latchId identifier of the latch
+     * @param results results in the batch, in the order of submission
+     * @param runLengths lengths of the runs of the same outcome, alternating from a run of success results,
+     *   whose first element is 0 if the batch starts with a failure result
+     * @return the frame
+     * @throws IllegalArgumentException if a length is negative, or the total length differs from the results
+     */
+    public static LatchFrame submit(long latchId, List<?> results, int[] runLengths)
+            throws IllegalArgumentException {
+        long totalLength = 0;
+        for (int runLength : runLengths) {
+            if (runLength < 0) {
+                throw new IllegalArgumentException("runLength < 0");
+            }
+            totalLength += runLength;
+        }
+        if (totalLength != results.size()) {
+            throw new IllegalArgumentException("Total run length " + totalLength + " differs from results "
+                    + results.size());
+        }
+
+        return new LatchFrame(Type.SUBMIT, latchId, Collections.unmodifiableList(results), runLengths.clone(),
+                false);
+    }
+
+    /**
+     * Creates a {@code SUBSCRIBE} frame.
+     *
+     * @param latchId identifier of the latch
+     * @return the frame
+     */
+    public static LatchFrame subscribe(long latchId) {
+        return new LatchFrame(Type.SUBSCRIBE, latchId, Collections.emptyList(), new int[0], false);
+    }
+
+    /**
+     * Creates a {@code RELEASED} frame.
+     *
+     * @param latchId identifier of the latch
+     * @param succeeded whether the latch is released with success
+     * @return the frame
+     */
+    public static LatchFrame released(long latchId, boolean succeeded) {
+        return new LatchFrame(Type.RELEASED, latchId, Collections.emptyList(), new int[0], succeeded);
+    }
+
+    /**
+     * Returns the type of the frame.
+     *
+     * @return the type
+     */
+    public Type getType() {
+        return this.type_;
+    }
+
+    /**
+     * Returns the identifier of the latch.
+     *
+     * @return the identifier of the latch
+     */
+    public long getLatchId() {
+        return this.latchId_;
+    }
+
+    /**
+     * Returns the results in the batch of a {@code SUBMIT} frame, in the order of submission.
+     *
+     * @return the results
+     */
+    public List<?> getResults() {
+        return this.results_;
+    }
+
+    /**
+     * Returns the lengths of the runs in the batch of a {@code SUBMIT} frame.
+     * The runs of the even indexes are success results, and the runs of the odd indexes are failure results.
+     *
+     * @return copy of the lengths of the runs
+     */
+    public int[] getRunLengths() {
+        return this.runLengths_.clone();
+    }
+
+    /**
+     * Returns whether the latch is released with success, in a {@code RELEASED} frame.
+     *
+     * @return {@code true} if released with success
+     */
+    public boolean isSucceeded() {
+        return this.succeeded_;
+    }
+
+    @Override
+    public String toString() {
+        return "LatchFrame [type=" + this.type_ + ", latchId=" + this.latchId_ + ", results=" + this.results_.size()
+                + ", runs=" + this.runLengths_.length + ", succeeded=" + this.succeeded_ + "]";
+    }
+}
@@ -0,0 +1,18 @@
+package kajitiluna.utility.conditionlatch;
+
+/**
+ * A handler of the frames received by a node through {@link LatchTransport}.
+ *
+ * @author kajitiluna
+ *
+ */
+public interface LatchFrameHandler {
+
+    /**
+     * Invoked when a frame is received.
+     *
+     * @param sourceNodeId identifier of the node which sent the frame
+     * @param frame the received frame
+     */
+    void received(String sourceNodeId, LatchFrame frame);
+}
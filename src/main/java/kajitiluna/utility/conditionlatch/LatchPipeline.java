@@ -0,0 +1,430 @@
+package kajitiluna.utility.conditionlatch;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A scheduler of stages in a directed acyclic graph, each of them is a {@code ConditionLatch}.
+ *
+ * <p>
+ * A stage starts when all of its upstream stages reach their quorum.
+ * Its tasks are generated by {@link StageTaskGenerator}, which reads the results of the upstream stages,
+ * and run through {@link BoundedFanOut} with at most {@code maxInFlight} tasks in flight.
+ * When the failure count of a stage reaches zero, the stage fails and all of its downstream stages are aborted.
+ * The whole graph is driven from the release listeners of the latches, so no thread blocks for coordinating stages.
+ * The stages are added in the topological order, since the upstream stages must be added in advance.
+ * </p>
+ *
+ * <pre>
+ * LatchPipeline pipeline = new LatchPipeline(executor, 64);
+ * final LatchPipeline.Stage&lt;Shard&gt; fetch = pipeline.addStage("fetch", 0, 1, fetchGenerator);
+ * LatchPipeline.Stage&lt;Partition&gt; merge = pipeline.addStage("merge", 0, 1, new StageTaskGenerator&lt;Partition&gt;() {
+ *     public Collection&lt;Callable&lt;Partition&gt;&gt; generate() {
+ *         return createMergeTasks(fetch.getResults());
+ *     }
+ * }, fetch);
+ * pipeline.start();
+ * pipeline.await();
+ * </pre>
+ *
+ * @author kajitiluna
+ *
+ */
+public class LatchPipeline {
+
+    /**
+     * States of stage.
+     *
+     * @author kajitiluna
+     *
+     */
+    public enum StageState {
+        /** Waiting for the upstream stages. */
+        WAITING,
+        /** Running the tasks. */
+        RUNNING,
+        /** Reached the quorum. */
+        SUCCEEDED,
+        /** Reached the failure threshold, or cancelled. */
+        FAILED,
+        /** Aborted since an upstream stage failed. */
+        ABORTED
+    }
+
+    /** Executor running the tasks. */
+    private final Executor executor_;
+
+    /** Maximum number of tasks in flight for each stage. */
+    private final int maxInFlight_;
+
+    /** All stages in the topological order, guarded by this pipeline until started. */
+    private final List<Stage<?>> stages_;
+
+    /** Latch counting down the finished stages. */
+    private volatile ConditionLatch<Stage<?>, Stage<?>> completion_;
+
+    /** Whether the pipeline is cancelled. */
+    private volatile boolean cancelled_;
+
+    /**
+     * Constructs a {@code LatchPipeline}.
+     *
+     * @param executor executor running the tasks and generating the tasks of the stages asynchronously
+     * @param maxInFlight the maximum number of tasks in flight for each stage
+     * @throws IllegalArgumentException if {@code maxInFlight} is not positive
+     */
+    public LatchPipeline(Executor executor, int maxInFlight) throws IllegalArgumentException {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight <= 0");
+        }
+
+        this.executor_ = executor;
+        this.maxInFlight_ = maxInFlight;
+        this.stages_ = new ArrayList<Stage<?>>();
+    }
+
+    /**
+     * Adds a stage depending on the given upstream stages.
+     *
+     * @param name name of the stage
+     * @param successCount the number of succeeded tasks for the stage to succeed, or 0 for all generated tasks
+     * @param failureCount the number of failed tasks for the stage to fail
+     * @param generator generator of the tasks of the stage
+     * @param upstreams the stages which must succeed before the stage starts
+     * @param <SUCCESS_RESULT> Object type returned from succeeded tasks of the stage
+     * @return the added stage
+     * @throws IllegalArgumentException if either {@code successCount} or {@code failureCount} is out of range,
+     *   or if an upstream stage belongs to another pipeline
+     * @throws IllegalStateException if the pipeline has already been started
+     */
+    public synchronized <SUCCESS_RESULT> Stage<SUCCESS_RESULT> addStage(String name, int successCount,
+            int failureCount, StageTaskGenerator<SUCCESS_RESULT> generator, Stage<?>... upstreams)
+            throws IllegalArgumentException, IllegalStateException {
+        if (this.completion_ != null) {
+            throw new IllegalStateException("LatchPipeline is already started.");
+        }
+        UnionSynchronizer.checkParameter(successCount, "successCount");
+        UnionSynchronizer.checkParameter(failureCount, "failureCount");
+        if (failureCount == 0) {
+            throw new IllegalArgumentException("failureCount == 0");
+        }
+        for (Stage<?> upstream : upstreams) {
+            if (upstream.pipeline_ != this) {
+                throw new IllegalArgumentException("Upstream stage belongs to another pipeline : " + upstream.name_);
+            }
+        }
+
+        Stage<SUCCESS_RESULT> stage = new Stage<SUCCESS_RESULT>(this, name, successCount, failureCount, generator,
+                upstreams.length);
+        for (Stage<?> upstream : upstreams) {
+            upstream.downstreams_.add(stage);
+        }
+        this.stages_.add(stage);
+
+        return stage;
+    }
+
+    /**
+     * Starts the stages without any upstream stage.
+     *
+     * @throws IllegalStateException if the pipeline has already been started, or if no stage is added
+     */
+    public void start() throws IllegalStateException {
+        synchronized (this) {
+            if (this.completion_ != null) {
+                throw new IllegalStateException("LatchPipeline is already started.");
+            }
+            if (this.stages_.isEmpty()) {
+                throw new IllegalStateException("No stage is added.");
+            }
+
+            this.completion_ = new ConditionLatch<Stage<?>, Stage<?>>(this.stages_.size(), 1);
+        }
+
+        for (Stage<?> stage : this.stages_) {
+            if (stage.pendingUpstreamCount_.get() == 0) {
+                this.launch(stage);
+            }
+        }
+    }
+
+    /**
+     * Causes the current thread to wait until all stages succeed, or until any stage fails.
+     *
+     * @return list of the stages in the order of success
+     * @throws SubmittedFailureResultException if any stage failed
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     * @throws IllegalStateException if the pipeline is not started yet
+     */
+    public List<Stage<?>> await() throws SubmittedFailureResultException, InterruptedException,
+            IllegalStateException {
+        return this.completion().await();
+    }
+
+    /**
+     * Causes the current thread to wait until all stages succeed, or until any stage fails,
+     * or until the specified waiting time elapses.
+     *
+     * @param timeout the maximum time to wait
+     * @param timeUnit the time unit of the {@code timeout} argument
+     * @return list of the stages in the order of success
+     * @throws SubmittedFailureResultException if any stage failed
+     * @throws TimeoutException if the waiting time elapsed before all stages finished
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     * @throws IllegalStateException if the pipeline is not started yet
+     */
+    public List<Stage<?>> await(long timeout, TimeUnit timeUnit) throws SubmittedFailureResultException,
+            TimeoutException, InterruptedException, IllegalStateException {
+        return this.completion().await(timeout, timeUnit);
+    }
+
+    /**
+     * Cancels the pipeline. The running stages fail, and the waiting stages are aborted.
+     *
+     * @throws IllegalStateException if the pipeline is not started yet
+     */
+    public void cancel() throws IllegalStateException {
+        this.completion();
+        this.cancelled_ = true;
+        for (Stage<?> stage : this.stages_) {
+            ConditionLatch<?, Throwable> latch = stage.latch_;
+            if (latch != null) {
+                latch.cancel();
+            } else {
+                this.abort(stage);
+            }
+        }
+    }
+
+    /**
+     * Returns the stages which failed or were aborted.
+     *
+     * The completion latch discards the stages finished after released, so they are collected from the states.
+     *
+     * @return list of the failed stages in the topological order
+     */
+    public List<Stage<?>> getFailedStages() {
+        if (this.completion_ == null) {
+            return Collections.emptyList();
+        }
+
+        List<Stage<?>> failedStages = new ArrayList<Stage<?>>();
+        for (Stage<?> stage : this.stages_) {
+            StageState state = stage.getState();
+            if ((state == StageState.FAILED) || (state == StageState.ABORTED)) {
+                failedStages.add(stage);
+            }
+        }
+        return failedStages;
+    }
+
+    private ConditionLatch<Stage<?>, Stage<?>> completion() {
+        ConditionLatch<Stage<?>, Stage<?>> completion = this.completion_;
+        if (completion == null) {
+            throw new IllegalStateException("LatchPipeline is not started yet.");
+        }
+
+        return completion;
+    }
+
+    private void launch(final Stage<?> stage) {
+        if (stage.state_.compareAndSet(StageState.WAITING, StageState.RUNNING) == false) {
+            return;
+        }
+
+        this.executor_.execute(new Runnable() {
+            @Override
+            public void run() {
+                stage.run();
+            }
+        });
+    }
+
+    private void finish(Stage<?> stage, boolean succeeded) {
+        if (succeeded == false) {
+            stage.state_.set(StageState.FAILED);
+            // The downstream stages are aborted before the completion can be released by this failure.
+            for (Stage<?> downstream : stage.downstreams_) {
+                this.abort(downstream);
+            }
+            this.completion_.submitForFail(stage);
+            return;
+        }
+
+        stage.state_.set(StageState.SUCCEEDED);
+        this.completion_.submit(stage);
+        for (Stage<?> downstream : stage.downstreams_) {
+            if (downstream.pendingUpstreamCount_.decrementAndGet() == 0) {
+                this.launch(downstream);
+            }
+        }
+    }
+
+    private void abort(Stage<?> stage) {
+        if (stage.state_.compareAndSet(StageState.WAITING, StageState.ABORTED) == false) {
+            return;
+        }
+
+        this.completion_.submitForFail(stage);
+        for (Stage<?> downstream : stage.downstreams_) {
+            this.abort(downstream);
+        }
+    }
+
+    /**
+     * Stage of {@code LatchPipeline}.
+     *
+     * @author kajitiluna
+     *
+     * @param <SUCCESS_RESULT> Object type returned from succeeded tasks of the stage
+     */
+    public static final class Stage<SUCCESS_RESULT> {
+
+        /** Pipeline of the stage. */
+        private final LatchPipeline pipeline_;
+
+        /** Name of the stage. */
+        private final String name_;
+
+        /** Number of succeeded tasks for the stage to succeed, or 0 for all tasks. */
+        private final int successCount_;
+
+        /** Number of failed tasks for the stage to fail. */
+        private final int failureCount_;
+
+        /** Generator of the tasks. */
+        private final StageTaskGenerator<SUCCESS_RESULT> generator_;
+
+        /** Downstream stages, not modified after the pipeline started. */
+        private final List<Stage<?>> downstreams_;
+
+        /** Number of the upstream stages not succeeded yet. */
+        private final AtomicInteger pendingUpstreamCount_;
+
+        /** State of the stage. */
+        private final AtomicReference<StageState> state_;
+
+        /** Latch of the stage, created when the stage starts. */
+        private volatile ConditionLatch<SUCCESS_RESULT, Throwable> latch_;
+
+        Stage(LatchPipeline pipeline, String name, int successCount, int failureCount,
+                StageTaskGenerator<SUCCESS_RESULT> generator, int upstreamCount) {
+            this.pipeline_ = pipeline;
+            this.name_ = name;
+            this.successCount_ = successCount;
+            this.failureCount_ = failureCount;
+            this.generator_ = generator;
+            this.downstreams_ = new ArrayList<Stage<?>>();
+            this.pendingUpstreamCount_ = new AtomicInteger(upstreamCount);
+            this.state_ = new AtomicReference<StageState>(StageState.WAITING);
+        }
+
+        /**
+         * Returns the name of the stage.
+         *
+         * @return the name of the stage
+         */
+        public String getName() {
+            return this.name_;
+        }
+
+        /**
+         * Returns the current state of the stage.
+         *
+         * @return the current state
+         */
+        public StageState getState() {
+            return this.state_.get();
+        }
+
+        /**
+         * Returns the results of the succeeded tasks of the stage.
+         *
+         * @return list of the results, empty if the stage is not started yet
+         */
+        public List<SUCCESS_RESULT> getResults() {
+            ConditionLatch<SUCCESS_RESULT, Throwable> latch = this.latch_;
+            if (latch == null) {
+                return Collections.emptyList();
+            }
+
+            return latch.getSuccessList();
+        }
+
+        /**
+         * Returns the latch of the stage, for monitoring the progress.
+         *
+         * @return the latch, or {@code null} if the stage is not started yet
+         */
+        public ConditionLatch<SUCCESS_RESULT, Throwable> getLatch() {
+            return this.latch_;
+        }
+
+        @Override
+        public String toString() {
+            return "Stage [name=" + this.name_ + ", state=" + this.state_.get() + "]";
+        }
+
+        void run() {
+            Collection<? extends Callable<? extends SUCCESS_RESULT>> tasks;
+            int taskCount;
+            try {
+                tasks = this.generator_.generate();
+                if (tasks == null) {
+                    throw new NullPointerException("Generated tasks are null.");
+                }
+                taskCount = tasks.size();
+            } catch (Throwable exc) {
+                this.failGeneration(exc);
+                return;
+            }
+
+            int successCount = (this.successCount_ == 0) ? taskCount : this.successCount_;
+            if (successCount == 0) {
+                this.latch_ = new ConditionLatch<SUCCESS_RESULT, Throwable>(0, this.failureCount_);
+                this.pipeline_.finish(this, true);
+                return;
+            }
+
+            ConditionLatch<SUCCESS_RESULT, Throwable> latch =
+                    new ConditionLatch<SUCCESS_RESULT, Throwable>(successCount, this.failureCount_);
+            this.latch_ = latch;
+            latch.addReleaseListener(new ReleaseListener<SUCCESS_RESULT, Throwable>() {
+                @Override
+                public void released(ConditionLatch<SUCCESS_RESULT, Throwable> latch) {
+                    Stage.this.pipeline_.finish(Stage.this, latch.getSuccessCount() == 0);
+                }
+            });
+            if (this.pipeline_.cancelled_) {
+                latch.cancel();
+                return;
+            }
+
+            new BoundedFanOut<SUCCESS_RESULT>(latch, this.pipeline_.maxInFlight_, this.pipeline_.executor_)
+                    .start(tasks.iterator());
+        }
+
+        /**
+         * Finishes the stage as failed, whose generator threw or returned {@code null}.
+         *
+         * @param exc the failure of the generator
+         */
+        private void failGeneration(Throwable exc) {
+            ConditionLatch<SUCCESS_RESULT, Throwable> latch =
+                    new ConditionLatch<SUCCESS_RESULT, Throwable>(1, this.failureCount_);
+            latch.submitForFail(exc);
+            // No task will submit to the latch, which is not released by one failure if the failure count is above 1.
+            latch.cancel();
+            this.latch_ = latch;
+            this.pipeline_.finish(this, false);
+        }
+    }
+}
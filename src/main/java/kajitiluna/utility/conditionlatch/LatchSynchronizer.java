@@ -0,0 +1,80 @@
+package kajitiluna.utility.conditionlatch;
+
+/**
+ * A synchronization object for {@code ConditionLatch}, which keeps the success count and the failure count.
+ *
+ * <p>
+ * The methods follow the signatures of {@code AbstractQueuedSynchronizer} in shared mode,
+ * so that {@code UnionSynchronizer} implements them as they are.
+ * </p>
+ *
+ * @author kajitiluna
+ *
+ */
+interface LatchSynchronizer {
+
+    /**
+     * Decrements either count by the magnitude of {@code releases}, saturating at zero.
+     *
+     * @param releases positive value for the success count, negative value for the failure count,
+     *   and zero for only waking up the waiting threads
+     * @return {@code true} if this invocation released the waiting threads
+     */
+    boolean releaseShared(int releases);
+
+    /**
+     * Waits until either count reaches zero, unless the current thread is interrupted.
+     *
+     * @param acquires ignored
+     * @throws InterruptedException if the current thread is interrupted
+     */
+    void acquireSharedInterruptibly(int acquires) throws InterruptedException;
+
+    /**
+     * Waits until either count reaches zero, unless the current thread is interrupted or the timeout elapses.
+     *
+     * @param acquires ignored
+     * @param nanosTimeout the maximum number of nanoseconds to wait
+     * @return {@code true} if either count reached zero, {@code false} if timed out
+     * @throws InterruptedException if the current thread is interrupted
+     */
+    boolean tryAcquireSharedNanos(int acquires, long nanosTimeout) throws InterruptedException;
+
+    /**
+     * Adjusts the success and failure counts.
+     *
+     * @param successDelta the amount added to the success count
+     * @param failureDelta the amount added to the failure count
+     * @return {@code false} if either count had already reached zero, {@code true} otherwise
+     * @throws IllegalStateException if either adjusted count is negative or over <code>0x0000FFFF</code>
+     */
+    boolean tryAdjust(int successDelta, int failureDelta) throws IllegalStateException;
+
+    /**
+     * Makes the failure count zero.
+     *
+     * @return {@code true} if this invocation released, {@code false} if either count had already reached zero
+     */
+    boolean tryCancel();
+
+    /**
+     * Returns whether either count reached zero.
+     *
+     * @return {@code true} if released
+     */
+    boolean isReleased();
+
+    /**
+     * Returns the current success count.
+     *
+     * @return the current success count
+     */
+    int getSuccessCount();
+
+    /**
+     * Returns the current failure count.
+     *
+     * @return the current failure count
+     */
+    int getFailureCount();
+}
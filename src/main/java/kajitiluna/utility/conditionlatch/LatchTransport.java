@@ -0,0 +1,34 @@
+package kajitiluna.utility.conditionlatch;
+
+/**
+ * A service provider interface of the transport between the nodes of distributed latches.
+ *
+ * <p>
+ * The transport delivers the frames sent to a node to the handler bound to the node.
+ * The frames from one node to another node must be delivered in the order of sending,
+ * and the handler should be invoked in a thread of the transport, not in the thread of the sender.
+ * {@link LoopbackLatchTransport} is the implementation in a process.
+ * </p>
+ *
+ * @author kajitiluna
+ *
+ */
+public interface LatchTransport {
+
+    /**
+     * Binds the handler of the frames sent to the node.
+     *
+     * @param nodeId identifier of the node
+     * @param handler handler of the frames sent to the node
+     */
+    void bind(String nodeId, LatchFrameHandler handler);
+
+    /**
+     * Sends the frame to the node.
+     *
+     * @param sourceNodeId identifier of the sending node
+     * @param targetNodeId identifier of the receiving node
+     * @param frame the frame to send
+     */
+    void send(String sourceNodeId, String targetNodeId, LatchFrame frame);
+}
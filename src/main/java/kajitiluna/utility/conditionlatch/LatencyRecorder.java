@@ -0,0 +1,148 @@
+package kajitiluna.utility.conditionlatch;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A recorder of the submit latency of each participant in a {@code ConditionLatch}.
+ *
+ * <p>
+ * The participants are identified by dense {@code int} from 0 to {@code participantCount - 1},
+ * and submit with {@link ConditionLatch#submit(int, Object)} or {@link ConditionLatch#submitForFail(int, Object)}.
+ * The latency of a participant is the time from the start of capture to its first submission,
+ * which is stored in a primitive {@code long} array without allocation.
+ * The straggler report at the release of the latch is kept by {@link #getReleaseReport},
+ * and the report at any time such as a timeout is created by {@link #createStragglerReport}.
+ * </p>
+ *
+ * @author kajitiluna
+ *
+ */
+public class LatencyRecorder {
+
+    /** Number of the slowest participants in a report. */
+    private static final int SLOWEST_COUNT = 8;
+
+    /** Start time of capture. */
+    private final long startTime_;
+
+    /** Submit latency plus one of each participant, 0 for not submitted. */
+    private final AtomicLongArray latencies_;
+
+    /** Histogram of success latencies. */
+    private final LatencyHistogram successHistogram_;
+
+    /** Histogram of failure latencies. */
+    private final LatencyHistogram failureHistogram_;
+
+    /** Report at the release of the latch. */
+    private volatile StragglerReport releaseReport_;
+
+    LatencyRecorder(int participantCount) {
+        if (participantCount <= 0) {
+            throw new IllegalArgumentException("participantCount <= 0");
+        }
+
+        this.latencies_ = new AtomicLongArray(participantCount);
+        this.successHistogram_ = new LatencyHistogram();
+        this.failureHistogram_ = new LatencyHistogram();
+        this.startTime_ = System.nanoTime();
+    }
+
+    /**
+     * Records the submission of the participant. Only the first submission of each participant is recorded.
+     *
+     * @param participantId identifier of the participant, ignored if out of range
+     * @param success whether the submission is success
+     */
+    void record(int participantId, boolean success) {
+        if ((participantId < 0) || (participantId >= this.latencies_.length())) {
+            return;
+        }
+
+        long latency = System.nanoTime() - this.startTime_;
+        if (this.latencies_.compareAndSet(participantId, 0, latency + 1) == false) {
+            return;
+        }
+
+        if (success) {
+            this.successHistogram_.record(latency);
+        } else {
+            this.failureHistogram_.record(latency);
+        }
+    }
+
+    void recordRelease() {
+        this.releaseReport_ = this.createStragglerReport();
+    }
+
+    /**
+     * Returns the histogram of the latencies of the success submissions.
+     *
+     * @return histogram of the success latencies
+     */
+    public LatencyHistogram getSuccessHistogram() {
+        return this.successHistogram_;
+    }
+
+    /**
+     * Returns the histogram of the latencies of the failure submissions.
+     *
+     * @return histogram of the failure latencies
+     */
+    public LatencyHistogram getFailureHistogram() {
+        return this.failureHistogram_;
+    }
+
+    /**
+     * Returns the straggler report at the release of the latch.
+     *
+     * @return the report at the release, or {@code null} if the latch is not released yet
+     */
+    public StragglerReport getReleaseReport() {
+        return this.releaseReport_;
+    }
+
+    /**
+     * Creates the straggler report at now, for example after the timeout of {@link ConditionLatch#await}.
+     *
+     * @return the report at now
+     */
+    public StragglerReport createStragglerReport() {
+        long elapsed = System.nanoTime() - this.startTime_;
+
+        int participantCount = this.latencies_.length();
+        int[] missingParticipants = new int[participantCount];
+        int missingCount = 0;
+
+        int[] slowestParticipants = new int[SLOWEST_COUNT];
+        long[] slowestLatencies = new long[SLOWEST_COUNT];
+        int slowestCount = 0;
+
+        for (int participantId = 0; participantId < participantCount; participantId++) {
+            long latency = this.latencies_.get(participantId) - 1;
+            if (latency < 0) {
+                missingParticipants[missingCount++] = participantId;
+                continue;
+            }
+
+            // Insertion into the small array in descending order.
+            int position = slowestCount;
+            while ((position > 0) && (slowestLatencies[position - 1] < latency)) {
+                if (position < SLOWEST_COUNT) {
+                    slowestParticipants[position] = slowestParticipants[position - 1];
+                    slowestLatencies[position] = slowestLatencies[position - 1];
+                }
+                position--;
+            }
+            if (position < SLOWEST_COUNT) {
+                slowestParticipants[position] = participantId;
+                slowestLatencies[position] = latency;
+                slowestCount = Math.min(slowestCount + 1, SLOWEST_COUNT);
+            }
+        }
+
+        return new StragglerReport(elapsed, Arrays.copyOf(missingParticipants, missingCount),
+                Arrays.copyOf(slowestParticipants, slowestCount), Arrays.copyOf(slowestLatencies, slowestCount));
+    }
+}
@@ -0,0 +1,322 @@
+package kajitiluna.utility.conditionlatch;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A lightweight synchronization object for {@code ConditionLatch}, without {@code AbstractQueuedSynchronizer}.
+ *
+ * <p>
+ * The success count and the failure count are packed in one {@code int} state as same as {@code UnionSynchronizer},
+ * which is updated with CAS by a field updater.
+ * The waiting threads are pushed on a lock-free stack of small nodes,
+ * and the releasing thread takes the whole stack at once and unparks each thread directly.
+ * It avoids the queue of {@code AbstractQueuedSynchronizer} and its propagation in shared mode,
+ * which is heavy for the common case of a few waiting threads.
+ * </p>
+ *
+ * <p>
+ * A node of interrupted or timed out thread is unlinked from the stack by the thread itself,
+ * as the queue of {@code AbstractQueuedSynchronizer} unlinks its cancelled nodes,
+ * so that polling with timeout on a long-lived latch doesn't grow the stack.
+ * </p>
+ *
+ * @author kajitiluna
+ *
+ */
+class LightweightSynchronizer implements LatchSynchronizer {
+
+    /** Updater of state. */
+    private static final AtomicIntegerFieldUpdater<LightweightSynchronizer> STATE_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(LightweightSynchronizer.class, "state_");
+
+    /** Updater of waiters. */
+    private static final AtomicReferenceFieldUpdater<LightweightSynchronizer, WaiterNode> WAITERS_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(LightweightSynchronizer.class, WaiterNode.class, "waiters_");
+
+    /** Marker of the waiters already released. */
+    private static final WaiterNode RELEASED_WAITERS = new WaiterNode(null, null);
+
+    /** Packed state of the success count (lower) and the failure count (upper). */
+    private volatile int state_;
+
+    /** Stack of the waiting threads, or {@code RELEASED_WAITERS} after released. */
+    private volatile WaiterNode waiters_;
+
+    /**
+     * Constructor.
+     *
+     * @param successCount
+     * @param failureCount
+     */
+    public LightweightSynchronizer(int successCount, int failureCount) {
+        UnionSynchronizer.checkParameter(successCount, "successCount");
+        UnionSynchronizer.checkParameter(failureCount, "failureCount");
+
+        this.state_ = successCount | (failureCount << 16);
+        if ((successCount == 0) || (failureCount == 0)) {
+            this.waiters_ = RELEASED_WAITERS;
+        }
+    }
+
+    @Override
+    public boolean releaseShared(int releases) {
+        while (true) {
+            int nowState = this.state_;
+            int successCount = nowState & 0x0000FFFF;
+            int failureCount = (nowState & 0xFFFF0000) >>> 16;
+
+            if (releases == 0) {
+                if ((successCount == 0) || (failureCount == 0)) {
+                    this.wakeUpAll();
+                    return true;
+                }
+                return false;
+            }
+
+            if ((successCount <= 0) || (failureCount <= 0)) {
+                return false;
+            }
+
+            int nextCount;
+            int nextState;
+            if (releases > 0) {
+                nextCount = Math.max(successCount - releases, 0);
+                nextState = nowState - (successCount - nextCount);
+            } else {
+                nextCount = Math.max(failureCount + releases, 0);
+                nextState = nowState - ((failureCount - nextCount) << 16);
+            }
+
+            if (STATE_UPDATER.compareAndSet(this, nowState, nextState) == false) {
+                continue;
+            }
+
+            if (nextCount == 0) {
+                this.wakeUpAll();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public boolean tryAdjust(int successDelta, int failureDelta) throws IllegalStateException {
+        while (true) {
+            int nowState = this.state_;
+            int successCount = nowState & 0x0000FFFF;
+            int failureCount = (nowState & 0xFFFF0000) >>> 16;
+
+            if ((successCount <= 0) || (failureCount <= 0)) {
+                return false;
+            }
+
+            int nextSuccessCount = successCount + successDelta;
+            int nextFailureCount = failureCount + failureDelta;
+            UnionSynchronizer.checkAdjustedCount(nextSuccessCount, "successCount");
+            UnionSynchronizer.checkAdjustedCount(nextFailureCount, "failureCount");
+
+            int nextState = nextSuccessCount | (nextFailureCount << 16);
+            if (STATE_UPDATER.compareAndSet(this, nowState, nextState) == false) {
+                continue;
+            }
+
+            if ((nextSuccessCount == 0) || (nextFailureCount == 0)) {
+                this.wakeUpAll();
+            }
+
+            return true;
+        }
+    }
+
+    @Override
+    public boolean tryCancel() {
+        while (true) {
+            int nowState = this.state_;
+            int successCount = nowState & 0x0000FFFF;
+            int failureCount = (nowState & 0xFFFF0000) >>> 16;
+
+            if ((successCount <= 0) || (failureCount <= 0)) {
+                return false;
+            }
+
+            if (STATE_UPDATER.compareAndSet(this, nowState, successCount)) {
+                this.wakeUpAll();
+                return true;
+            }
+        }
+    }
+
+    private void wakeUpAll() {
+        WaiterNode node = WAITERS_UPDATER.getAndSet(this, RELEASED_WAITERS);
+        for (; (node != null) && (node != RELEASED_WAITERS); node = node.next_) {
+            Thread thread = node.thread_;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+
+    @Override
+    public void acquireSharedInterruptibly(int acquires) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+
+        if (this.isReleased()) {
+            return;
+        }
+
+        WaiterNode node = this.pushWaiter();
+        if (node == null) {
+            return;
+        }
+
+        while (this.waiters_ != RELEASED_WAITERS) {
+            LockSupport.park(this);
+
+            if (Thread.interrupted()) {
+                this.removeWaiter(node);
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    @Override
+    public boolean tryAcquireSharedNanos(int acquires, long nanosTimeout) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+
+        if (this.isReleased()) {
+            return true;
+        }
+        if (nanosTimeout <= 0) {
+            return false;
+        }
+
+        long deadline = System.nanoTime() + nanosTimeout;
+        WaiterNode node = this.pushWaiter();
+        if (node == null) {
+            return true;
+        }
+
+        while (this.waiters_ != RELEASED_WAITERS) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                this.removeWaiter(node);
+                return false;
+            }
+
+            LockSupport.parkNanos(this, remaining);
+
+            if (Thread.interrupted()) {
+                this.removeWaiter(node);
+                throw new InterruptedException();
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Pushes the current thread on the stack of waiters.
+     *
+     * @return the pushed node, or {@code null} if already released
+     */
+    private WaiterNode pushWaiter() {
+        WaiterNode node = new WaiterNode(Thread.currentThread(), null);
+        while (true) {
+            WaiterNode nowHead = this.waiters_;
+            if (nowHead == RELEASED_WAITERS) {
+                return null;
+            }
+
+            node.next_ = nowHead;
+            if (WAITERS_UPDATER.compareAndSet(this, nowHead, node)) {
+                return node;
+            }
+        }
+    }
+
+    /**
+     * Cancels the node, and unlinks all cancelled nodes from the stack.
+     * A node whose predecessor is cancelled concurrently is unlinked again by the retry.
+     *
+     * @param node the node of the current thread
+     */
+    private void removeWaiter(WaiterNode node) {
+        node.thread_ = null;
+
+        retry: while (true) {
+            WaiterNode previous = null;
+            WaiterNode current = this.waiters_;
+            while ((current != null) && (current != RELEASED_WAITERS)) {
+                WaiterNode next = current.next_;
+                if (current.thread_ != null) {
+                    previous = current;
+                } else if (previous != null) {
+                    previous.next_ = next;
+                    if (previous.thread_ == null) {
+                        continue retry;
+                    }
+                } else if (WAITERS_UPDATER.compareAndSet(this, current, next) == false) {
+                    continue retry;
+                }
+
+                current = next;
+            }
+            return;
+        }
+    }
+
+    /**
+     * Returns the number of nodes in the stack, including the cancelled nodes not unlinked yet.
+     *
+     * @return the number of nodes, or 0 after released
+     */
+    int getWaiterNodeCount() {
+        int count = 0;
+        for (WaiterNode node = this.waiters_; (node != null) && (node != RELEASED_WAITERS); node = node.next_) {
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public boolean isReleased() {
+        int nowState = this.state_;
+        return ((nowState & 0x0000FFFF) == 0) || ((nowState & 0xFFFF0000) == 0);
+    }
+
+    @Override
+    public int getSuccessCount() {
+        return this.state_ & 0x0000FFFF;
+    }
+
+    @Override
+    public int getFailureCount() {
+        return (this.state_ & 0xFFFF0000) >>> 16;
+    }
+
+    /**
+     * Node of the stack of waiters.
+     *
+     * @author kajitiluna
+     *
+     */
+    private static final class WaiterNode {
+
+        /** Waiting thread, or {@code null} after cancelled. */
+        private volatile Thread thread_;
+
+        /** Next node, which is relinked when the cancelled nodes are unlinked. */
+        private volatile WaiterNode next_;
+
+        WaiterNode(Thread thread, WaiterNode next) {
+            this.thread_ = thread;
+            this.next_ = next;
+        }
+    }
+}
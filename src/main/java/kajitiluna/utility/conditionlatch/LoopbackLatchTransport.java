@@ -0,0 +1,123 @@
+package kajitiluna.utility.conditionlatch;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A transport in a process, delivering the frames to the handlers of the nodes without serialization.
+ *
+ * <p>
+ * Each node has a single delivery thread, so the frames are delivered to the node in the order of sending,
+ * like a connection between the processes. The numbers of frames and results are counted
+ * for verifying the throughput and the batching behavior.
+ * </p>
+ *
+ * @author kajitiluna
+ *
+ */
+public class LoopbackLatchTransport implements LatchTransport, AutoCloseable {
+
+    /** Delivery threads of the nodes. */
+    private final ConcurrentMap<String, ExecutorService> deliveries_;
+
+    /** Handlers of the nodes. */
+    private final ConcurrentMap<String, LatchFrameHandler> handlers_;
+
+    /** Number of the frames sent. */
+    private final AtomicLong frameCount_;
+
+    /** Number of the results sent in the frames. */
+    private final AtomicLong resultCount_;
+
+    /**
+     * Constructs a {@code LoopbackLatchTransport}.
+     */
+    public LoopbackLatchTransport() {
+        this.deliveries_ = new ConcurrentHashMap<String, ExecutorService>();
+        this.handlers_ = new ConcurrentHashMap<String, LatchFrameHandler>();
+        this.frameCount_ = new AtomicLong();
+        this.resultCount_ = new AtomicLong();
+    }
+
+    /**
+     * Binds the handler of the frames sent to the node, with a delivery thread of the node.
+     *
+     * @param nodeId identifier of the node
+     * @param handler handler of the frames sent to the node
+     * @throws IllegalStateException if the node is already bound
+     */
+    @Override
+    public void bind(final String nodeId, LatchFrameHandler handler) throws IllegalStateException {
+        if (this.handlers_.putIfAbsent(nodeId, handler) != null) {
+            throw new IllegalStateException("Node is already bound : " + nodeId);
+        }
+
+        this.deliveries_.put(nodeId, Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "LoopbackLatchTransport-" + nodeId);
+                thread.setDaemon(true);
+                return thread;
+            }
+        }));
+    }
+
+    /**
+     * Sends the frame to the node, which is delivered in the delivery thread of the node.
+     *
+     * @param sourceNodeId identifier of the sending node
+     * @param targetNodeId identifier of the receiving node
+     * @param frame the frame to send
+     * @throws IllegalStateException if the receiving node is not bound
+     */
+    @Override
+    public void send(final String sourceNodeId, String targetNodeId, final LatchFrame frame)
+            throws IllegalStateException {
+        ExecutorService delivery = this.deliveries_.get(targetNodeId);
+        final LatchFrameHandler handler = this.handlers_.get(targetNodeId);
+        if ((delivery == null) || (handler == null)) {
+            throw new IllegalStateException("Node is not bound : " + targetNodeId);
+        }
+
+        this.frameCount_.incrementAndGet();
+        this.resultCount_.addAndGet(frame.getResults().size());
+        delivery.execute(new Runnable() {
+            @Override
+            public void run() {
+                handler.received(sourceNodeId, frame);
+            }
+        });
+    }
+
+    /**
+     * Returns the number of the frames sent.
+     *
+     * @return the number of the frames
+     */
+    public long getFrameCount() {
+        return this.frameCount_.get();
+    }
+
+    /**
+     * Returns the number of the results sent in the frames.
+     *
+     * @return the number of the results
+     */
+    public long getResultCount() {
+        return this.resultCount_.get();
+    }
+
+    /**
+     * Stops the delivery threads of all nodes.
+     */
+    @Override
+    public void close() {
+        for (ExecutorService delivery : this.deliveries_.values()) {
+            delivery.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package kajitiluna.utility.conditionlatch;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A concurrent set of participants which already submitted to {@code ConditionLatch}.
+ *
+ * <p>
+ * Dense {@code int} identifiers from 0 to {@code 0x000FFFFF} are kept in a bit set,
+ * which is divided into chunks allocated on demand.
+ * The other identifiers are kept in a concurrent hash set.
+ * </p>
+ *
+ * @author kajitiluna
+ *
+ */
+class ParticipantSet {
+
+    /** Bit width of identifiers in a chunk. */
+    private static final int CHUNK_BITS = 12;
+
+    /** Number of chunks. */
+    private static final int CHUNK_COUNT = 256;
+
+    /** Chunks of bit set. */
+    private final AtomicReferenceArray<AtomicLongArray> chunks_;
+
+    /** Set of other identifiers, created on demand. */
+    private volatile Set<Object> others_;
+
+    /**
+     * Constructor.
+     */
+    public ParticipantSet() {
+        this.chunks_ = new AtomicReferenceArray<AtomicLongArray>(CHUNK_COUNT);
+    }
+
+    /**
+     * Adds the participant.
+     *
+     * @param participantId identifier of the participant
+     * @return {@code true} if the participant is added for the first time
+     */
+    public boolean add(int participantId) {
+        int chunkIndex = participantId >>> CHUNK_BITS;
+        if (chunkIndex >= CHUNK_COUNT) {
+            return this.others().add(Integer.valueOf(participantId));
+        }
+
+        AtomicLongArray chunk = this.chunks_.get(chunkIndex);
+        if (chunk == null) {
+            this.chunks_.compareAndSet(chunkIndex, null, new AtomicLongArray(1 << (CHUNK_BITS - 6)));
+            chunk = this.chunks_.get(chunkIndex);
+        }
+
+        int wordIndex = (participantId & ((1 << CHUNK_BITS) - 1)) >>> 6;
+        long bit = 1L << participantId;
+        while (true) {
+            long nowWord = chunk.get(wordIndex);
+            if ((nowWord & bit) != 0) {
+                return false;
+            }
+
+            if (chunk.compareAndSet(wordIndex, nowWord, nowWord | bit)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Adds the participant.
+     *
+     * @param participantId identifier of the participant
+     * @return {@code true} if the participant is added for the first time
+     */
+    public boolean add(Object participantId) {
+        if (participantId instanceof Integer) {
+            return this.add(((Integer) participantId).intValue());
+        }
+
+        return this.others().add(participantId);
+    }
+
+    /**
+     * Returns whether the participant is already added.
+     *
+     * @param participantId identifier of the participant
+     * @return {@code true} if the participant is already added
+     */
+    public boolean contains(int participantId) {
+        int chunkIndex = participantId >>> CHUNK_BITS;
+        if (chunkIndex >= CHUNK_COUNT) {
+            Set<Object> others = this.others_;
+            return (others != null) && others.contains(Integer.valueOf(participantId));
+        }
+
+        AtomicLongArray chunk = this.chunks_.get(chunkIndex);
+        if (chunk == null) {
+            return false;
+        }
+
+        int wordIndex = (participantId & ((1 << CHUNK_BITS) - 1)) >>> 6;
+        return (chunk.get(wordIndex) & (1L << participantId)) != 0;
+    }
+
+    private Set<Object> others() {
+        Set<Object> others = this.others_;
+        if (others != null) {
+            return others;
+        }
+
+        synchronized (this) {
+            if (this.others_ == null) {
+                this.others_ = Collections.newSetFromMap(new ConcurrentHashMap<Object, Boolean>());
+            }
+
+            return this.others_;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package kajitiluna.utility.conditionlatch;
+
+/**
+ * A listener notified when the progress of a {@code ConditionLatch} crosses the configured fractions.
+ *
+ * <p>
+ * The listener is invoked once per fraction by the submitting thread which made the progress cross it,
+ * without any lock. Thus, the listener should finish quickly without blocking.
+ * The invocations for different fractions may be concurrent and out of order.
+ * </p>
+ *
+ * @author kajitiluna
+ *
+ * @param <SUCCESS_RESULT> Object type submitted in success procedure
+ * @param <FAILURE_RESULT> Object type submitted in failed procedure
+ */
+public interface ProgressListener<SUCCESS_RESULT, FAILURE_RESULT> {
+
+    /**
+     * Invoked when the progress reaches the fraction.
+     *
+     * @param latch the progressed latch
+     * @param fraction the configured fraction, which the progress reached
+     */
+    void progressed(ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT> latch, double fraction);
+}
@@ -0,0 +1,164 @@
+package kajitiluna.utility.conditionlatch;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A tracker of the progress of either the success count or the failure count in {@code ConditionLatch}.
+ *
+ * <p>
+ * Each listener has the sorted fractions and the index of the next fraction.
+ * The thread which advances the index with CAS invokes the listener, so each fraction is notified exactly once.
+ * </p>
+ *
+ * <p>
+ * The tracker counts the decrements by itself, packed with the expected count in one {@code long},
+ * so that the progress is computed from one consistent snapshot of both.
+ * The decrements are recorded after the count of the latch is decremented,
+ * and the expected count is raised before the count is raised and lowered after the count is lowered.
+ * Thus, the progress of the tracker never exceeds the real progress of the latch,
+ * and each operation re-evaluates the progress after its own change, so the last one sees the final progress.
+ * </p>
+ *
+ * @author kajitiluna
+ *
+ * @param <SUCCESS_RESULT> Object type submitted in success procedure
+ * @param <FAILURE_RESULT> Object type submitted in failed procedure
+ */
+class ProgressTracker<SUCCESS_RESULT, FAILURE_RESULT> {
+
+    /** Mask of the decremented count in the packed counts. */
+    private static final long DECREMENTED_MASK = 0x00000000FFFFFFFFL;
+
+    /**
+     * Packed counts, the expected count (upper), which is the initial count adjusted by the registrations,
+     * and the decremented count (lower), which saturates at {@code Integer.MAX_VALUE}.
+     */
+    private final AtomicLong counts_;
+
+    /** Entries of the listeners, replaced on each addition. */
+    private volatile Entry<SUCCESS_RESULT, FAILURE_RESULT>[] entries_;
+
+    /**
+     * Constructor.
+     *
+     * @param expectedCount the initial count
+     */
+    public ProgressTracker(int expectedCount) {
+        this.counts_ = new AtomicLong(((long) expectedCount) << 32);
+
+        @SuppressWarnings("unchecked")
+        Entry<SUCCESS_RESULT, FAILURE_RESULT>[] entries = (Entry<SUCCESS_RESULT, FAILURE_RESULT>[]) new Entry<?, ?>[0];
+        this.entries_ = entries;
+    }
+
+    /**
+     * Adjusts the expected count by the registrations.
+     *
+     * @param delta the number of registered parties, or negative number of deregistered parties
+     */
+    public void adjustExpectedCount(int delta) {
+        this.counts_.addAndGet(((long) delta) << 32);
+    }
+
+    /**
+     * Records the decrement of the count, and notifies the listeners whose next fractions are reached.
+     *
+     * @param latch the progressed latch
+     * @param decrement the number of units decremented
+     */
+    public void recordDecrement(ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT> latch, int decrement) {
+        while (true) {
+            long nowCounts = this.counts_.get();
+            long decremented = Math.min((nowCounts & DECREMENTED_MASK) + decrement, Integer.MAX_VALUE);
+            if (this.counts_.compareAndSet(nowCounts, (nowCounts & ~DECREMENTED_MASK) | decremented)) {
+                break;
+            }
+        }
+
+        this.update(latch);
+    }
+
+    /**
+     * Adds the listener.
+     *
+     * @param listener listener
+     * @param fractions the fractions of progress notified to the listener
+     * @throws IllegalArgumentException if any fraction is not in the range of (0, 1]
+     */
+    public synchronized void addListener(ProgressListener<SUCCESS_RESULT, FAILURE_RESULT> listener,
+            double[] fractions) throws IllegalArgumentException {
+        double[] sortedFractions = fractions.clone();
+        Arrays.sort(sortedFractions);
+        for (double fraction : sortedFractions) {
+            if ((fraction > 0) == false || (fraction <= 1) == false) {
+                throw new IllegalArgumentException("fraction is out of (0, 1] : " + fraction);
+            }
+        }
+
+        Entry<SUCCESS_RESULT, FAILURE_RESULT>[] nowEntries = this.entries_;
+        Entry<SUCCESS_RESULT, FAILURE_RESULT>[] nextEntries = Arrays.copyOf(nowEntries, nowEntries.length + 1);
+        nextEntries[nowEntries.length] = new Entry<SUCCESS_RESULT, FAILURE_RESULT>(listener, sortedFractions);
+        this.entries_ = nextEntries;
+    }
+
+    /**
+     * Notifies the listeners whose next fractions are reached.
+     *
+     * @param latch the progressed latch
+     */
+    public void update(ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT> latch) {
+        Entry<SUCCESS_RESULT, FAILURE_RESULT>[] entries = this.entries_;
+        if (entries.length == 0) {
+            return;
+        }
+
+        long counts = this.counts_.get();
+        int expectedCount = (int) (counts >> 32);
+        long decremented = counts & DECREMENTED_MASK;
+        // The decrements over the expected count are saturated in the latch.
+        double progress = (expectedCount <= decremented) ? 1 : ((double) decremented) / expectedCount;
+
+        for (Entry<SUCCESS_RESULT, FAILURE_RESULT> entry : entries) {
+            entry.advance(latch, progress);
+        }
+    }
+
+    /**
+     * Entry of a listener.
+     *
+     * @param <SUCCESS_RESULT> Object type submitted in success procedure
+     * @param <FAILURE_RESULT> Object type submitted in failed procedure
+     */
+    private static final class Entry<SUCCESS_RESULT, FAILURE_RESULT> {
+
+        /** Listener. */
+        private final ProgressListener<SUCCESS_RESULT, FAILURE_RESULT> listener_;
+
+        /** Sorted fractions. */
+        private final double[] fractions_;
+
+        /** Index of the next fraction. */
+        private final AtomicInteger nextIndex_;
+
+        Entry(ProgressListener<SUCCESS_RESULT, FAILURE_RESULT> listener, double[] fractions) {
+            this.listener_ = listener;
+            this.fractions_ = fractions;
+            this.nextIndex_ = new AtomicInteger();
+        }
+
+        void advance(ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT> latch, double progress) {
+            while (true) {
+                int nowIndex = this.nextIndex_.get();
+                if ((nowIndex >= this.fractions_.length) || (this.fractions_[nowIndex] > progress)) {
+                    return;
+                }
+
+                if (this.nextIndex_.compareAndSet(nowIndex, nowIndex + 1)) {
+                    this.listener_.progressed(latch, this.fractions_[nowIndex]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package kajitiluna.utility.conditionlatch;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A scope of subtasks whose lifetime is bounded by the scope, and whose shutdown policy is a quorum.
+ *
+ * <p>
+ * Subtasks are forked by {@link #fork} in the scope, and their results are submitted to a {@code ConditionLatch}.
+ * The value returned from a subtask is submitted by {@link ConditionLatch#submit},
+ * and the exception thrown from a subtask is submitted by {@link ConditionLatch#submitForFail}.
+ * When either the success count or the failure count reaches zero, the subtasks still running are interrupted.
+ * {@link #join} returns the results of the succeeded subtasks,
+ * or throws {@code SubmittedFailureResultException} if too many subtasks failed,
+ * or if all subtasks finished without reaching the quorum.
+ * {@link #close} cancels every subtask still running.
+ * </p>
+ *
+ * <pre>
+ * try (QuorumTaskScope&lt;Response&gt; scope = new QuorumTaskScope&lt;Response&gt;(2, 2, executor)) {
+ *     for (Replica replica : replicas) {
+ *         scope.fork(replica.readTask());
+ *     }
+ *     List&lt;Response&gt; responses = scope.join();
+ * }
+ * </pre>
+ *
+ * @author kajitiluna
+ *
+ * @param <SUCCESS_RESULT> Object type returned from succeeded subtasks
+ */
+public class QuorumTaskScope<SUCCESS_RESULT> implements AutoCloseable {
+
+    /** Latch of the quorum. */
+    private final ConditionLatch<SUCCESS_RESULT, Throwable> latch_;
+
+    /** Executor running the subtasks. */
+    private final Executor executor_;
+
+    /** Subtasks still running. */
+    private final Set<Subtask> subtasks_;
+
+    /** Number of the subtasks not finished yet. */
+    private final AtomicInteger unfinishedCount_;
+
+    /** Whether no more subtasks are forked. */
+    private volatile boolean joining_;
+
+    /**
+     * Constructs a {@code QuorumTaskScope} running each subtask in a new thread.
+     *
+     * @param successCount the number of succeeded subtasks required for {@link #join} to return
+     * @param failureCount the number of failed subtasks making {@link #join} throw
+     * @throws IllegalArgumentException if either {@code successCount} or {@code failureCount}
+     *   are negative or over <code>0x0000FFFF</code>.
+     */
+    public QuorumTaskScope(int successCount, int failureCount) throws IllegalArgumentException {
+        this(successCount, failureCount, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                Thread thread = new Thread(command, "QuorumTaskScope-subtask");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        });
+    }
+
+    /**
+     * Constructs a {@code QuorumTaskScope} running the subtasks in the given executor.
+     *
+     * @param successCount the number of succeeded subtasks required for {@link #join} to return
+     * @param failureCount the number of failed subtasks making {@link #join} throw
+     * @param executor executor running the subtasks
+     * @throws IllegalArgumentException if either {@code successCount} or {@code failureCount}
+     *   are negative or over <code>0x0000FFFF</code>.
+     */
+    public QuorumTaskScope(int successCount, int failureCount, Executor executor) throws IllegalArgumentException {
+        this.latch_ = new ConditionLatch<SUCCESS_RESULT, Throwable>(successCount, failureCount);
+        this.executor_ = executor;
+        this.subtasks_ = Collections.newSetFromMap(new ConcurrentHashMap<Subtask, Boolean>());
+        this.unfinishedCount_ = new AtomicInteger();
+
+        this.latch_.addReleaseListener(new ReleaseListener<SUCCESS_RESULT, Throwable>() {
+            @Override
+            public void released(ConditionLatch<SUCCESS_RESULT, Throwable> latch) {
+                QuorumTaskScope.this.cancelSubtasks();
+            }
+        });
+    }
+
+    /**
+     * Forks a subtask in the scope.
+     * If the quorum has already been decided, the subtask is cancelled without running.
+     *
+     * @param task subtask
+     * @return future of the subtask
+     * @throws IllegalStateException if the scope has already been joined or closed
+     * @throws RejectedExecutionException if the executor rejects the subtask, which is then cancelled
+     */
+    public Future<SUCCESS_RESULT> fork(Callable<? extends SUCCESS_RESULT> task) throws IllegalStateException,
+            RejectedExecutionException {
+        if (this.joining_) {
+            throw new IllegalStateException("QuorumTaskScope is already joined or closed.");
+        }
+
+        Subtask subtask = new Subtask(task);
+        this.unfinishedCount_.incrementAndGet();
+        this.subtasks_.add(subtask);
+
+        if (this.latch_.isReleased()) {
+            subtask.cancel(false);
+            return subtask;
+        }
+
+        try {
+            this.executor_.execute(subtask);
+        } catch (RejectedExecutionException exc) {
+            // Cancelling rolls back the unfinished count in done().
+            subtask.cancel(false);
+            throw exc;
+        }
+        return subtask;
+    }
+
+    /**
+     * Waits until the quorum is decided, and interrupts the subtasks still running.
+     *
+     * @return list of the results of the succeeded subtasks
+     * @throws SubmittedFailureResultException if the failure count reaches zero,
+     *   or if all subtasks finished before the success count reached zero
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    public List<SUCCESS_RESULT> join() throws SubmittedFailureResultException, InterruptedException {
+        this.startJoining();
+        try {
+            return this.latch_.await();
+        } catch (SubmittedFailureResultException exc) {
+            throw this.createFailure();
+        } finally {
+            this.cancelSubtasks();
+        }
+    }
+
+    /**
+     * Waits until the quorum is decided or the specified waiting time elapses,
+     * and interrupts the subtasks still running.
+     *
+     * @param timeout the maximum time to wait
+     * @param timeUnit the time unit of the {@code timeout} argument
+     * @return list of the results of the succeeded subtasks
+     * @throws SubmittedFailureResultException if the failure count reaches zero,
+     *   or if all subtasks finished before the success count reached zero
+     * @throws TimeoutException if the waiting time elapsed before the quorum was decided
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    public List<SUCCESS_RESULT> join(long timeout, TimeUnit timeUnit) throws SubmittedFailureResultException,
+            TimeoutException, InterruptedException {
+        this.startJoining();
+        try {
+            return this.latch_.await(timeout, timeUnit);
+        } catch (SubmittedFailureResultException exc) {
+            throw this.createFailure();
+        } finally {
+            this.cancelSubtasks();
+        }
+    }
+
+    /**
+     * Closes the scope, cancelling every subtask still running.
+     */
+    @Override
+    public void close() {
+        this.joining_ = true;
+        this.latch_.cancel();
+        this.cancelSubtasks();
+    }
+
+    /**
+     * Returns the latch of the quorum, for monitoring the progress.
+     *
+     * @return latch of the quorum
+     */
+    public ConditionLatch<SUCCESS_RESULT, Throwable> getLatch() {
+        return this.latch_;
+    }
+
+    private void startJoining() {
+        this.joining_ = true;
+        this.cancelIfUnreachable();
+    }
+
+    /**
+     * Fails the latch if the unfinished subtasks are too few to reach the quorum,
+     * so that {@link #join} doesn't wait forever.
+     */
+    private void cancelIfUnreachable() {
+        if (this.joining_ && (this.unfinishedCount_.get() < this.latch_.getSuccessCount())) {
+            this.latch_.cancel();
+        }
+    }
+
+    private void cancelSubtasks() {
+        for (Subtask subtask : this.subtasks_) {
+            subtask.cancel(true);
+        }
+    }
+
+    private SubmittedFailureResultException createFailure() {
+        List<Throwable> failureList = this.latch_.getFailureList();
+        if (failureList.isEmpty()) {
+            return new SubmittedFailureResultException("Quorum is not reached.");
+        }
+
+        return new SubmittedFailureResultException("Failed procedure.", failureList.get(0));
+    }
+
+    /**
+     * Subtask submitting its result to the latch.
+     *
+     * @author kajitiluna
+     *
+     */
+    private final class Subtask extends FutureTask<SUCCESS_RESULT> {
+
+        Subtask(final Callable<? extends SUCCESS_RESULT> task) {
+            super(new Callable<SUCCESS_RESULT>() {
+                @Override
+                public SUCCESS_RESULT call() throws Exception {
+                    SUCCESS_RESULT result;
+                    try {
+                        result = task.call();
+                    } catch (Throwable exc) {
+                        if (QuorumTaskScope.this.latch_.isReleased() == false) {
+                            QuorumTaskScope.this.latch_.submitForFail(exc);
+                        }
+                        throw exc;
+                    }
+
+                    QuorumTaskScope.this.latch_.submit(result);
+                    return result;
+                }
+            });
+        }
+
+        @Override
+        protected void done() {
+            QuorumTaskScope.this.subtasks_.remove(this);
+            QuorumTaskScope.this.unfinishedCount_.decrementAndGet();
+            QuorumTaskScope.this.cancelIfUnreachable();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package kajitiluna.utility.conditionlatch;
+
+import java.util.List;
+
+/**
+ * A continuation resumed with the outcome of a {@code ConditionLatch}, instead of a thread blocked in {@code await}.
+ *
+ * <p>
+ * The continuation is registered to a {@code ReleaseDispatcher}, and resumed once in the executor of the dispatcher.
+ * All continuations of a latch receive the same list, which must not be modified.
+ * </p>
+ *
+ * @author kajitiluna
+ *
+ * @param <SUCCESS_RESULT> Object type submitted in success procedure
+ * @param <FAILURE_RESULT> Object type submitted in failed procedure
+ */
+public interface ReleaseContinuation<SUCCESS_RESULT, FAILURE_RESULT> {
+
+    /**
+     * Resumed when the success count reached zero.
+     *
+     * @param successList list of succeed procedure's result shared by all continuations
+     */
+    void succeeded(List<SUCCESS_RESULT> successList);
+
+    /**
+     * Resumed when the failure count reached zero, or the latch was cancelled.
+     *
+     * @param failureList list of failed procedure's result shared by all continuations
+     */
+    void failed(List<FAILURE_RESULT> failureList);
+}
@@ -0,0 +1,227 @@
+package kajitiluna.utility.conditionlatch;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A dispatcher resuming many continuations on the release of a {@code ConditionLatch} in controlled batches.
+ *
+ * <p>
+ * When hundreds of threads block in {@link ConditionLatch#await}, the release wakes all of them in a cascade,
+ * and they contend for the processors at once.
+ * Instead, a {@link ReleaseContinuation} registered to this dispatcher holds no thread while waiting.
+ * On the release, the releasing thread splits the registered continuations into batches of {@code batchSize},
+ * and hands each batch to the executor as one task.
+ * Thus, the number of threads woken is bounded by the executor, not by the number of awaiters.
+ * The outcome is read once, and all continuations receive the same list.
+ * </p>
+ *
+ * <p>
+ * A continuation registered after the release is handed to the executor immediately.
+ * If the executor rejects a batch, the batch is resumed in the releasing thread.
+ * </p>
+ *
+ * @author kajitiluna
+ *
+ * @param <SUCCESS_RESULT> Object type submitted in success procedure
+ * @param <FAILURE_RESULT> Object type submitted in failed procedure
+ */
+public class ReleaseDispatcher<SUCCESS_RESULT, FAILURE_RESULT> {
+
+    /** Marker of the continuations already dispatched. */
+    private static final ContinuationNode<Object, Object> DISPATCHED = new ContinuationNode<Object, Object>(null, null);
+
+    /** Latch releasing the continuations. */
+    private final ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT> latch_;
+
+    /** Executor resuming the continuations. */
+    private final Executor executor_;
+
+    /** Maximum number of continuations resumed in one task. */
+    private final int batchSize_;
+
+    /** Stack of continuations not dispatched yet, or {@code DISPATCHED} after released. */
+    private final AtomicReference<ContinuationNode<SUCCESS_RESULT, FAILURE_RESULT>> continuations_;
+
+    /**
+     * Constructs a {@code ReleaseDispatcher}.
+     *
+     * @param latch latch releasing the continuations
+     * @param executor executor resuming the continuations
+     * @param batchSize the maximum number of continuations resumed in one task of the executor
+     * @throws IllegalArgumentException if {@code batchSize} is not positive
+     */
+    public ReleaseDispatcher(ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT> latch, Executor executor, int batchSize)
+            throws IllegalArgumentException {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize <= 0");
+        }
+
+        this.latch_ = latch;
+        this.executor_ = executor;
+        this.batchSize_ = batchSize;
+        this.continuations_ = new AtomicReference<ContinuationNode<SUCCESS_RESULT, FAILURE_RESULT>>();
+
+        this.latch_.addReleaseListener(new ReleaseListener<SUCCESS_RESULT, FAILURE_RESULT>() {
+            @Override
+            public void released(ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT> latch) {
+                ReleaseDispatcher.this.dispatchAll();
+            }
+        });
+    }
+
+    /**
+     * Registers a continuation resumed once when the latch is released.
+     *
+     * @param continuation continuation resumed in the executor
+     */
+    public void register(ReleaseContinuation<SUCCESS_RESULT, FAILURE_RESULT> continuation) {
+        while (true) {
+            ContinuationNode<SUCCESS_RESULT, FAILURE_RESULT> nowHead = this.continuations_.get();
+            if (nowHead == DISPATCHED) {
+                this.dispatch(new ContinuationNode<SUCCESS_RESULT, FAILURE_RESULT>(continuation, null), 1);
+                return;
+            }
+
+            ContinuationNode<SUCCESS_RESULT, FAILURE_RESULT> nextHead =
+                    new ContinuationNode<SUCCESS_RESULT, FAILURE_RESULT>(continuation, nowHead);
+            if (this.continuations_.compareAndSet(nowHead, nextHead)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the latch releasing the continuations.
+     *
+     * @return latch releasing the continuations
+     */
+    public ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT> getLatch() {
+        return this.latch_;
+    }
+
+    /**
+     * Dispatches the registered continuations in the order of registration.
+     * Only the first invocation after released dispatches them.
+     */
+    @SuppressWarnings("unchecked")
+    private void dispatchAll() {
+        ContinuationNode<SUCCESS_RESULT, FAILURE_RESULT> head = this.continuations_
+                .getAndSet((ContinuationNode<SUCCESS_RESULT, FAILURE_RESULT>) (ContinuationNode<?, ?>) DISPATCHED);
+        if ((head == null) || (head == DISPATCHED)) {
+            return;
+        }
+
+        int count = 0;
+        ContinuationNode<SUCCESS_RESULT, FAILURE_RESULT> reversed = null;
+        for (ContinuationNode<SUCCESS_RESULT, FAILURE_RESULT> node = head; node != null; node = node.next_) {
+            reversed = new ContinuationNode<SUCCESS_RESULT, FAILURE_RESULT>(node.continuation_, reversed);
+            count++;
+        }
+
+        this.dispatch(reversed, count);
+    }
+
+    /**
+     * Splits the chain of continuations into batches, and hands each batch to the executor.
+     *
+     * @param first the first node of the chain
+     * @param count the number of nodes in the chain
+     */
+    private void dispatch(ContinuationNode<SUCCESS_RESULT, FAILURE_RESULT> first, int count) {
+        final Outcome<SUCCESS_RESULT, FAILURE_RESULT> outcome = this.readOutcome();
+
+        ContinuationNode<SUCCESS_RESULT, FAILURE_RESULT> node = first;
+        for (int offset = 0; offset < count; offset += this.batchSize_) {
+            final ContinuationNode<SUCCESS_RESULT, FAILURE_RESULT> batchFirst = node;
+            final int batchCount = Math.min(this.batchSize_, count - offset);
+            for (int index = 0; index < batchCount; index++) {
+                node = node.next_;
+            }
+
+            Runnable batch = new Runnable() {
+                @Override
+                public void run() {
+                    ReleaseDispatcher.resume(batchFirst, batchCount, outcome);
+                }
+            };
+
+            try {
+                this.executor_.execute(batch);
+            } catch (RejectedExecutionException exc) {
+                batch.run();
+            }
+        }
+    }
+
+    private Outcome<SUCCESS_RESULT, FAILURE_RESULT> readOutcome() {
+        try {
+            return new Outcome<SUCCESS_RESULT, FAILURE_RESULT>(this.latch_.returnResult(), null);
+        } catch (SubmittedFailureResultException exc) {
+            return new Outcome<SUCCESS_RESULT, FAILURE_RESULT>(null, this.latch_.getFailureList());
+        }
+    }
+
+    private static <SUCCESS_RESULT, FAILURE_RESULT> void resume(ContinuationNode<SUCCESS_RESULT, FAILURE_RESULT> first,
+            int count, Outcome<SUCCESS_RESULT, FAILURE_RESULT> outcome) {
+        ContinuationNode<SUCCESS_RESULT, FAILURE_RESULT> node = first;
+        for (int index = 0; index < count; index++) {
+            try {
+                if (outcome.successList_ != null) {
+                    node.continuation_.succeeded(outcome.successList_);
+                } else {
+                    node.continuation_.failed(outcome.failureList_);
+                }
+            } catch (RuntimeException exc) {
+                // Keeps resuming the other continuations of the batch.
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, exc);
+            }
+
+            node = node.next_;
+        }
+    }
+
+    /**
+     * Outcome of the latch shared by all continuations.
+     *
+     * @param <SUCCESS_RESULT> Object type submitted in success procedure
+     * @param <FAILURE_RESULT> Object type submitted in failed procedure
+     */
+    private static final class Outcome<SUCCESS_RESULT, FAILURE_RESULT> {
+
+        /** List of succeed procedure's result, or {@code null} if failed. */
+        private final List<SUCCESS_RESULT> successList_;
+
+        /** List of failed procedure's result, or {@code null} if succeeded. */
+        private final List<FAILURE_RESULT> failureList_;
+
+        Outcome(List<SUCCESS_RESULT> successList, List<FAILURE_RESULT> failureList) {
+            this.successList_ = successList;
+            this.failureList_ = failureList;
+        }
+    }
+
+    /**
+     * Node of the stack of continuations.
+     *
+     * @param <SUCCESS_RESULT> Object type submitted in success procedure
+     * @param <FAILURE_RESULT> Object type submitted in failed procedure
+     */
+    private static final class ContinuationNode<SUCCESS_RESULT, FAILURE_RESULT> {
+
+        /** Continuation. */
+        private final ReleaseContinuation<SUCCESS_RESULT, FAILURE_RESULT> continuation_;
+
+        /** Next node. */
+        private final ContinuationNode<SUCCESS_RESULT, FAILURE_RESULT> next_;
+
+        ContinuationNode(ReleaseContinuation<SUCCESS_RESULT, FAILURE_RESULT> continuation,
+                ContinuationNode<SUCCESS_RESULT, FAILURE_RESULT> next) {
+            this.continuation_ = continuation;
+            this.next_ = next;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package kajitiluna.utility.conditionlatch;
+
+/**
+ * A listener notified when a {@code ConditionLatch} is released.
+ *
+ * <p>
+ * The listener is invoked once by the thread which released the latch,
+ * or by the thread which registered the listener if the latch has already been released.
+ * Thus, the listener should finish quickly without blocking.
+ * </p>
+ *
+ * @author kajitiluna
+ *
+ * @param <SUCCESS_RESULT> Object type submitted in success procedure
+ * @param <FAILURE_RESULT> Object type submitted in failed procedure
+ */
+public interface ReleaseListener<SUCCESS_RESULT, FAILURE_RESULT> {
+
+    /**
+     * Invoked when the latch is released.
+     *
+     * @param latch the released latch
+     */
+    void released(ConditionLatch<SUCCESS_RESULT, FAILURE_RESULT> latch);
+}
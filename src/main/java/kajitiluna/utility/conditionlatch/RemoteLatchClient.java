@@ -0,0 +1,325 @@
+package kajitiluna.utility.conditionlatch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A remote node submitting to and awaiting the distributed latches owned by {@link LatchCoordinator}.
+ *
+ * <p>
+ * The submitted results are not sent one by one, but batched for each latch in the order of submission,
+ * and sent in a {@code SUBMIT} frame when the batch reaches {@code maxBatchSize},
+ * when the linger time elapses after the first result of the batch, or when {@link #flush} is invoked.
+ * The awaiters in the node subscribe to the release of the latch,
+ * and are released by the {@code RELEASED} frame broadcast from the coordinator.
+ * The results are kept in the coordinator, and only the outcome is notified to the remote awaiters.
+ * </p>
+ *
+ * @author kajitiluna
+ *
+ * @param <SUCCESS_RESULT> Object type submitted in success procedure
+ * @param <FAILURE_RESULT> Object type submitted in failed procedure
+ */
+public class RemoteLatchClient<SUCCESS_RESULT, FAILURE_RESULT> implements LatchFrameHandler {
+
+    /** Identifier of the node. */
+    private final String nodeId_;
+
+    /** Identifier of the coordinator node. */
+    private final String coordinatorNodeId_;
+
+    /** Transport between the nodes. */
+    private final LatchTransport transport_;
+
+    /** Maximum number of results in a batch. */
+    private final int maxBatchSize_;
+
+    /** Linger time of a batch in nanoseconds, or 0 for no linger. */
+    private final long lingerNanos_;
+
+    /** Batches not sent yet for each latch. */
+    private final ConcurrentMap<Long, Batch> batches_;
+
+    /** Local mirrors of the release of each latch, awaited by the threads in the node. */
+    private final ConcurrentMap<Long, ConditionLatch<Void, Void>> mirrors_;
+
+    /**
+     * Constructs a {@code RemoteLatchClient}, and binds it to the transport.
+     *
+     * @param nodeId identifier of the node
+     * @param coordinatorNodeId identifier of the coordinator node
+     * @param transport transport between the nodes
+     * @param maxBatchSize the maximum number of results in a batch
+     * @param lingerTime the maximum time to keep a batch not full, or 0 for keeping until {@link #flush}
+     * @param timeUnit the time unit of the {@code lingerTime} argument
+     * @throws IllegalArgumentException if {@code maxBatchSize} is not positive or {@code lingerTime} is negative
+     */
+    public RemoteLatchClient(String nodeId, String coordinatorNodeId, LatchTransport transport, int maxBatchSize,
+            long lingerTime, TimeUnit timeUnit) throws IllegalArgumentException {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("maxBatchSize <= 0");
+        }
+        if (lingerTime < 0) {
+            throw new IllegalArgumentException("lingerTime < 0");
+        }
+
+        this.nodeId_ = nodeId;
+        this.coordinatorNodeId_ = coordinatorNodeId;
+        this.transport_ = transport;
+        this.maxBatchSize_ = maxBatchSize;
+        this.lingerNanos_ = timeUnit.toNanos(lingerTime);
+        this.batches_ = new ConcurrentHashMap<Long, Batch>();
+        this.mirrors_ = new ConcurrentHashMap<Long, ConditionLatch<Void, Void>>();
+
+        transport.bind(nodeId, this);
+    }
+
+    /**
+     * Submits the success result to the distributed latch.
+     *
+     * @param latchId identifier of the latch
+     * @param result successful procedure's object
+     */
+    public void submit(long latchId, SUCCESS_RESULT result) {
+        this.send(this.batch(latchId).add(result, true));
+    }
+
+    /**
+     * Submits the failure result to the distributed latch.
+     *
+     * @param latchId identifier of the latch
+     * @param result failed procedure's object
+     */
+    public void submitForFail(long latchId, FAILURE_RESULT result) {
+        this.send(this.batch(latchId).add(result, false));
+    }
+
+    /**
+     * Sends the batches of all latches not sent yet.
+     */
+    public void flush() {
+        for (Batch batch : this.batches_.values()) {
+            this.send(batch.drain());
+        }
+    }
+
+    /**
+     * Causes the current thread to wait until the distributed latch is released.
+     * The batches not sent yet are sent in advance.
+     *
+     * @param latchId identifier of the latch
+     * @throws SubmittedFailureResultException if the latch is released as failed
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    public void await(long latchId) throws SubmittedFailureResultException, InterruptedException {
+        this.subscribe(latchId).await();
+    }
+
+    /**
+     * Causes the current thread to wait until the distributed latch is released, or the specified waiting time elapses.
+     * The batches not sent yet are sent in advance.
+     *
+     * @param latchId identifier of the latch
+     * @param timeout the maximum time to wait
+     * @param timeUnit the time unit of the {@code timeout} argument
+     * @throws SubmittedFailureResultException if the latch is released as failed
+     * @throws TimeoutException if the waiting time elapsed before the latch is released
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    public void await(long latchId, long timeout, TimeUnit timeUnit) throws SubmittedFailureResultException,
+            TimeoutException, InterruptedException {
+        this.subscribe(latchId).await(timeout, timeUnit);
+    }
+
+    /**
+     * Sends the batch of the latch not sent yet, and discards the states of the latch in the node.
+     * Invoke it when the latch is no longer used in the node.
+     *
+     * @param latchId identifier of the latch
+     */
+    public void remove(long latchId) {
+        Batch batch = this.batches_.remove(latchId);
+        if (batch != null) {
+            this.send(batch.close());
+        }
+        this.mirrors_.remove(latchId);
+    }
+
+    @Override
+    public void received(String sourceNodeId, LatchFrame frame) {
+        if (frame.getType() != LatchFrame.Type.RELEASED) {
+            return;
+        }
+
+        ConditionLatch<Void, Void> mirror = this.mirrors_.get(frame.getLatchId());
+        if ((mirror == null) || mirror.isReleased()) {
+            return;
+        }
+
+        if (frame.isSucceeded()) {
+            mirror.submit();
+        } else {
+            mirror.submitForFail();
+        }
+    }
+
+    private ConditionLatch<Void, Void> subscribe(long latchId) {
+        this.flush();
+
+        ConditionLatch<Void, Void> mirror = this.mirrors_.get(latchId);
+        if (mirror != null) {
+            return mirror;
+        }
+
+        ConditionLatch<Void, Void> newMirror = new ConditionLatch<Void, Void>(1, 1);
+        mirror = this.mirrors_.putIfAbsent(latchId, newMirror);
+        if (mirror != null) {
+            return mirror;
+        }
+
+        this.transport_.send(this.nodeId_, this.coordinatorNodeId_, LatchFrame.subscribe(latchId));
+        return newMirror;
+    }
+
+    private Batch batch(long latchId) {
+        Batch batch = this.batches_.get(latchId);
+        if (batch != null) {
+            return batch;
+        }
+
+        Batch newBatch = new Batch(latchId);
+        batch = this.batches_.putIfAbsent(latchId, newBatch);
+        return (batch == null) ? newBatch : batch;
+    }
+
+    private void send(LatchFrame frame) {
+        if (frame != null) {
+            this.transport_.send(this.nodeId_, this.coordinatorNodeId_, frame);
+        }
+    }
+
+    /**
+     * Batch of results for a latch.
+     *
+     * @author kajitiluna
+     *
+     */
+    private final class Batch {
+
+        /** Identifier of the latch. */
+        private final long latchId_;
+
+        /** Results in the order of submission, guarded by this batch. */
+        private List<Object> results_;
+
+        /** Lengths of the runs, alternating from a run of success results, guarded by this batch. */
+        private int[] runLengths_;
+
+        /** Number of the runs, guarded by this batch. */
+        private int runCount_;
+
+        /** Whether the linger of the batch is scheduled, guarded by this batch. */
+        private boolean lingering_;
+
+        /** Whether the batch is removed from the client, guarded by this batch. */
+        private boolean closed_;
+
+        Batch(long latchId) {
+            this.latchId_ = latchId;
+            this.results_ = new ArrayList<Object>();
+            this.runLengths_ = new int[2];
+        }
+
+        /**
+         * Adds the result.
+         *
+         * @param result the result
+         * @param success whether the result is success
+         * @return the frame to send if the batch is full or closed, or {@code null}
+         */
+        LatchFrame add(Object result, boolean success) {
+            boolean scheduling = false;
+            LatchFrame frame = null;
+            synchronized (this) {
+                this.results_.add(result);
+                this.appendRun(success);
+
+                // The batch taken just before removed is no longer flushed, so the result is sent at once.
+                if (this.closed_ || (this.results_.size() >= RemoteLatchClient.this.maxBatchSize_)) {
+                    frame = this.drainLocked();
+                } else if ((this.lingering_ == false) && (RemoteLatchClient.this.lingerNanos_ > 0)) {
+                    this.lingering_ = true;
+                    scheduling = true;
+                }
+            }
+
+            if (scheduling) {
+                HashedTimerWheel.getShared().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        RemoteLatchClient.this.send(Batch.this.drain());
+                    }
+                }, RemoteLatchClient.this.lingerNanos_, TimeUnit.NANOSECONDS);
+            }
+
+            return frame;
+        }
+
+        /**
+         * Takes all results in the batch.
+         *
+         * @return the frame to send, or {@code null} if the batch is empty
+         */
+        synchronized LatchFrame drain() {
+            return this.drainLocked();
+        }
+
+        /**
+         * Takes all results in the batch, and makes the results added later sent at once.
+         *
+         * @return the frame to send, or {@code null} if the batch is empty
+         */
+        synchronized LatchFrame close() {
+            this.closed_ = true;
+            return this.drainLocked();
+        }
+
+        /**
+         * Extends the last run by the result, or starts a new run if the outcome differs from the last run.
+         *
+         * @param success whether the result is success
+         */
+        private void appendRun(boolean success) {
+            // The run of the even index is success, so an empty success run precedes the first failure.
+            int runIndex = (this.runCount_ == 0) ? (success ? 0 : 1) : this.runCount_ - 1;
+            if ((runIndex % 2 == 0) != success) {
+                runIndex++;
+            }
+
+            if (runIndex >= this.runLengths_.length) {
+                this.runLengths_ = Arrays.copyOf(this.runLengths_, this.runLengths_.length * 2);
+            }
+            this.runLengths_[runIndex]++;
+            this.runCount_ = runIndex + 1;
+        }
+
+        private LatchFrame drainLocked() {
+            this.lingering_ = false;
+            if (this.results_.isEmpty()) {
+                return null;
+            }
+
+            LatchFrame frame = LatchFrame.submit(this.latchId_, this.results_,
+                    Arrays.copyOf(this.runLengths_, this.runCount_));
+            this.results_ = new ArrayList<Object>();
+            Arrays.fill(this.runLengths_, 0);
+            this.runCount_ = 0;
+            return frame;
+        }
+    }
+}
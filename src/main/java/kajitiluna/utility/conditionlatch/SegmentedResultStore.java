@@ -0,0 +1,345 @@
+package kajitiluna.utility.conditionlatch;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * An append-only store of results, whose snapshot is an immutable view created in O(1) without any lock.
+ *
+ * <p>
+ * The elements are kept in segments, which are never moved nor reallocated once allocated.
+ * The size of the first segment is 16, and each next segment doubles the size,
+ * so the directory of segments stays O(log n), and is copied on write when a segment is added.
+ * A writer claims its index by an atomic increment and writes its own slot, never waiting for the other writers.
+ * A snapshot is a pair of the directory and the claimed length, without any copy and any lock.
+ * Its spliterator reads the segments directly, and splits the range evenly for fork-join.
+ * </p>
+ *
+ * <p>
+ * {@link #add} returns after its slot is written, so that the element is visible in the snapshots
+ * taken after {@code add} returns. No reader waits for a writer either.
+ * The length of the written prefix is cached, so that each slot is checked once over all snapshots.
+ * Only if a slot is claimed but not written yet, by a writer in the middle of {@code add}
+ * or by a writer which failed before writing, the snapshot is a copy of the written elements skipping the slot.
+ * </p>
+ *
+ * @author kajitiluna
+ *
+ * @param <TYPE> Object type of the elements
+ */
+class SegmentedResultStore<TYPE> {
+
+    /** Bit width of the size of the first segment. */
+    private static final int FIRST_SEGMENT_BITS = 4;
+
+    /** Marker of {@code null} element, since {@code null} slot means not written yet. */
+    private static final Object NULL_ELEMENT = new Object();
+
+    /** Empty directory. */
+    private static final AtomicReferenceArray<?>[] EMPTY_DIRECTORY = new AtomicReferenceArray<?>[0];
+
+    /** Directory of segments, copied on write. */
+    private final AtomicReference<AtomicReferenceArray<?>[]> directory_;
+
+    /** Number of indexes claimed by the writers. */
+    private final AtomicInteger claimedLength_;
+
+    /** Length of the prefix all of whose slots are written, advanced by the snapshots. */
+    private final AtomicInteger writtenLength_;
+
+    /**
+     * Constructor.
+     */
+    public SegmentedResultStore() {
+        this.directory_ = new AtomicReference<AtomicReferenceArray<?>[]>(EMPTY_DIRECTORY);
+        this.claimedLength_ = new AtomicInteger();
+        this.writtenLength_ = new AtomicInteger();
+    }
+
+    /**
+     * Appends the element, and returns after its slot is written.
+     *
+     * @param element element, may be {@code null}
+     */
+    public void add(TYPE element) {
+        this.write(this.claim(), element);
+    }
+
+    /**
+     * Appends the elements in a row, claiming their indexes at once, and returns after their slots are written.
+     *
+     * @param elements elements, which may contain {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    public void addAll(Collection<? extends TYPE> elements) {
+        // Copied in advance, so that exactly the claimed slots are written even if the collection changes.
+        Object[] array = elements.toArray();
+        int index = this.claimedLength_.getAndAdd(array.length);
+        for (Object element : array) {
+            this.write(index++, (TYPE) element);
+        }
+    }
+
+    /**
+     * Claims the index of the next element.
+     *
+     * @return the index claimed, whose slot must be written by {@link #write}
+     */
+    int claim() {
+        return this.claimedLength_.getAndIncrement();
+    }
+
+    /**
+     * Writes the element to the slot of the index claimed.
+     *
+     * @param index index claimed by {@link #claim}
+     * @param element element, may be {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    void write(int index, TYPE element) {
+        int segmentIndex = segmentIndexOf(index);
+        AtomicReferenceArray<Object> segment = (AtomicReferenceArray<Object>) this.ensureSegment(segmentIndex);
+        segment.set(offsetOf(index, segmentIndex), (element == null) ? NULL_ELEMENT : element);
+    }
+
+    /**
+     * Returns the number of elements added, including the elements whose {@code add} has not returned yet.
+     *
+     * @return the number of elements
+     */
+    public int size() {
+        return this.claimedLength_.get();
+    }
+
+    /**
+     * Returns the immutable view of the elements written, in O(1) without any copy and any lock
+     * unless a slot is claimed but not written yet.
+     * The view doesn't change even if elements are appended later.
+     *
+     * @return the snapshot of the elements
+     */
+    public List<TYPE> snapshot() {
+        int length = this.claimedLength_.get();
+        int writtenLength = this.advanceWritten(length);
+        // The directory read after the slots are checked contains all segments of the written elements.
+        AtomicReferenceArray<?>[] directory = this.directory_.get();
+        if (writtenLength == length) {
+            return new Snapshot<TYPE>(directory, length);
+        }
+
+        return copyWritten(directory, writtenLength, length);
+    }
+
+    private AtomicReferenceArray<?> ensureSegment(int segmentIndex) {
+        while (true) {
+            AtomicReferenceArray<?>[] directory = this.directory_.get();
+            if (segmentIndex < directory.length) {
+                return directory[segmentIndex];
+            }
+
+            AtomicReferenceArray<?>[] nextDirectory = Arrays.copyOf(directory, directory.length + 1);
+            nextDirectory[directory.length] = new AtomicReferenceArray<Object>(1 << (FIRST_SEGMENT_BITS
+                    + directory.length));
+            this.directory_.compareAndSet(directory, nextDirectory);
+        }
+    }
+
+    /**
+     * Advances the length of the written prefix over the written slots, up to the length.
+     *
+     * @param length the number of elements claimed
+     * @return the length of the written prefix, not over {@code length}
+     */
+    private int advanceWritten(int length) {
+        int startLength = this.writtenLength_.get();
+        if (startLength >= length) {
+            return length;
+        }
+
+        int writtenLength = startLength;
+        while ((writtenLength < length) && isWritten(this.directory_.get(), writtenLength)) {
+            writtenLength++;
+        }
+
+        int current;
+        while ((current = this.writtenLength_.get()) < writtenLength) {
+            if (this.writtenLength_.compareAndSet(current, writtenLength)) {
+                break;
+            }
+        }
+        return writtenLength;
+    }
+
+    /**
+     * Copies the written elements, skipping the slots claimed but not written yet.
+     *
+     * @param directory directory of segments
+     * @param writtenLength length of the written prefix
+     * @param length the number of elements claimed
+     * @return immutable list of the written elements
+     */
+    private static <TYPE> List<TYPE> copyWritten(AtomicReferenceArray<?>[] directory, int writtenLength, int length) {
+        final List<TYPE> elements = new ArrayList<TYPE>(length);
+        new SnapshotSpliterator<TYPE>(directory, 0, writtenLength).forEachRemaining(new Consumer<TYPE>() {
+            @Override
+            public void accept(TYPE element) {
+                elements.add(element);
+            }
+        });
+        for (int index = writtenLength; index < length; index++) {
+            if (isWritten(directory, index)) {
+                elements.add(SegmentedResultStore.<TYPE> elementAt(directory, index));
+            }
+        }
+
+        return Collections.unmodifiableList(elements);
+    }
+
+    private static boolean isWritten(AtomicReferenceArray<?>[] directory, int index) {
+        int segmentIndex = segmentIndexOf(index);
+        return (segmentIndex < directory.length) && (directory[segmentIndex].get(offsetOf(index, segmentIndex)) != null);
+    }
+
+    static int segmentIndexOf(int index) {
+        return (31 - Integer.numberOfLeadingZeros(index + (1 << FIRST_SEGMENT_BITS))) - FIRST_SEGMENT_BITS;
+    }
+
+    static int offsetOf(int index, int segmentIndex) {
+        return index + (1 << FIRST_SEGMENT_BITS) - (1 << (FIRST_SEGMENT_BITS + segmentIndex));
+    }
+
+    @SuppressWarnings("unchecked")
+    static <TYPE> TYPE elementAt(AtomicReferenceArray<?>[] directory, int index) {
+        int segmentIndex = segmentIndexOf(index);
+        Object element = directory[segmentIndex].get(offsetOf(index, segmentIndex));
+        return (element == NULL_ELEMENT) ? null : (TYPE) element;
+    }
+
+    /**
+     * Immutable view of the written elements.
+     *
+     * @author kajitiluna
+     *
+     * @param <TYPE> Object type of the elements
+     */
+    private static final class Snapshot<TYPE> extends AbstractList<TYPE> implements RandomAccess {
+
+        /** Directory of segments at the snapshot. */
+        private final AtomicReferenceArray<?>[] directory_;
+
+        /** Number of elements at the snapshot. */
+        private final int length_;
+
+        Snapshot(AtomicReferenceArray<?>[] directory, int length) {
+            this.directory_ = directory;
+            this.length_ = length;
+        }
+
+        @Override
+        public TYPE get(int index) {
+            if ((index < 0) || (index >= this.length_)) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.length_);
+            }
+
+            return elementAt(this.directory_, index);
+        }
+
+        @Override
+        public int size() {
+            return this.length_;
+        }
+
+        @Override
+        public Spliterator<TYPE> spliterator() {
+            return new SnapshotSpliterator<TYPE>(this.directory_, 0, this.length_);
+        }
+    }
+
+    /**
+     * Spliterator reading the segments of a snapshot directly, which splits the range in halves.
+     *
+     * @author kajitiluna
+     *
+     * @param <TYPE> Object type of the elements
+     */
+    static final class SnapshotSpliterator<TYPE> implements Spliterator<TYPE> {
+
+        /** Directory of segments at the snapshot. */
+        private final AtomicReferenceArray<?>[] directory_;
+
+        /** Next index to read. */
+        private int index_;
+
+        /** End index, exclusive. */
+        private final int fence_;
+
+        SnapshotSpliterator(AtomicReferenceArray<?>[] directory, int origin, int fence) {
+            this.directory_ = directory;
+            this.index_ = origin;
+            this.fence_ = fence;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super TYPE> action) {
+            if (this.index_ >= this.fence_) {
+                return false;
+            }
+
+            TYPE element = elementAt(this.directory_, this.index_++);
+            action.accept(element);
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void forEachRemaining(Consumer<? super TYPE> action) {
+            int index = this.index_;
+            this.index_ = this.fence_;
+
+            // Reads each segment in a row, without computing the segment of every index.
+            while (index < this.fence_) {
+                int segmentIndex = segmentIndexOf(index);
+                AtomicReferenceArray<?> segment = this.directory_[segmentIndex];
+                int offset = offsetOf(index, segmentIndex);
+                int end = Math.min(segment.length(), offset + (this.fence_ - index));
+
+                for (; offset < end; offset++, index++) {
+                    Object element = segment.get(offset);
+                    action.accept((element == NULL_ELEMENT) ? null : (TYPE) element);
+                }
+            }
+        }
+
+        @Override
+        public Spliterator<TYPE> trySplit() {
+            int origin = this.index_;
+            int middle = (origin + this.fence_) >>> 1;
+            if (origin >= middle) {
+                return null;
+            }
+
+            this.index_ = middle;
+            return new SnapshotSpliterator<TYPE>(this.directory_, origin, middle);
+        }
+
+        @Override
+        public long estimateSize() {
+            return this.fence_ - this.index_;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.IMMUTABLE;
+        }
+    }
+}
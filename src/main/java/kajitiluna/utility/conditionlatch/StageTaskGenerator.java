@@ -0,0 +1,27 @@
+package kajitiluna.utility.conditionlatch;
+
+import java.util.Collection;
+import java.util.concurrent.Callable;
+
+/**
+ * A generator of the tasks of a stage in {@code LatchPipeline}.
+ *
+ * <p>
+ * The generator is invoked once when all upstream stages have succeeded,
+ * so it can read the results of the upstream stages by {@link LatchPipeline.Stage#getResults}.
+ * </p>
+ *
+ * @author kajitiluna
+ *
+ * @param <SUCCESS_RESULT> Object type returned from succeeded tasks
+ */
+public interface StageTaskGenerator<SUCCESS_RESULT> {
+
+    /**
+     * Generates the tasks of the stage.
+     *
+     * @return the tasks of the stage
+     * @throws Exception if unable to generate the tasks, which fails the stage
+     */
+    Collection<? extends Callable<? extends SUCCESS_RESULT>> generate() throws Exception;
+}
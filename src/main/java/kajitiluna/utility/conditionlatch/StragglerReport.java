@@ -0,0 +1,83 @@
+package kajitiluna.utility.conditionlatch;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A report of the participants which didn't submit to a {@code ConditionLatch} in time.
+ *
+ * @author kajitiluna
+ *
+ */
+public class StragglerReport {
+
+    /** Elapsed time from the start of capture to the report. */
+    private final long elapsedNanos_;
+
+    /** Participants not submitted yet. */
+    private final int[] missingParticipants_;
+
+    /** Participants in descending order of submit latency. */
+    private final int[] slowestParticipants_;
+
+    /** Submit latencies of {@code slowestParticipants_}. */
+    private final long[] slowestLatencies_;
+
+    StragglerReport(long elapsedNanos, int[] missingParticipants, int[] slowestParticipants,
+            long[] slowestLatencies) {
+        this.elapsedNanos_ = elapsedNanos;
+        this.missingParticipants_ = missingParticipants;
+        this.slowestParticipants_ = slowestParticipants;
+        this.slowestLatencies_ = slowestLatencies;
+    }
+
+    /**
+     * Returns the elapsed time from the start of capture to the report.
+     *
+     * @param timeUnit the time unit of the returned value
+     * @return the elapsed time
+     */
+    public long getElapsedTime(TimeUnit timeUnit) {
+        return timeUnit.convert(this.elapsedNanos_, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the participants which didn't submit until the report, in ascending order.
+     *
+     * @return identifiers of the missing participants
+     */
+    public int[] getMissingParticipants() {
+        return this.missingParticipants_.clone();
+    }
+
+    /**
+     * Returns the slowest participants in the submitted ones, in descending order of the submit latency.
+     *
+     * @return identifiers of the slowest participants
+     */
+    public int[] getSlowestParticipants() {
+        return this.slowestParticipants_.clone();
+    }
+
+    /**
+     * Returns the submit latencies of {@link #getSlowestParticipants}.
+     *
+     * @param timeUnit the time unit of the returned values
+     * @return the submit latencies
+     */
+    public long[] getSlowestLatencies(TimeUnit timeUnit) {
+        long[] latencies = new long[this.slowestLatencies_.length];
+        for (int index = 0; index < latencies.length; index++) {
+            latencies[index] = timeUnit.convert(this.slowestLatencies_[index], TimeUnit.NANOSECONDS);
+        }
+
+        return latencies;
+    }
+
+    @Override
+    public String toString() {
+        return "StragglerReport [elapsed=" + TimeUnit.NANOSECONDS.toMillis(this.elapsedNanos_) + "ms, missing="
+                + Arrays.toString(this.missingParticipants_) + ", slowest="
+                + Arrays.toString(this.slowestParticipants_) + "]";
+    }
+}
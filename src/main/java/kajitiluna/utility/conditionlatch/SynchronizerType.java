@@ -0,0 +1,42 @@
+package kajitiluna.utility.conditionlatch;
+
+/**
+ * Types of the synchronization object blocking the threads in {@code ConditionLatch}.
+ * Both types have the same semantics, including the interruption and the timeout of waiting.
+ *
+ * @author kajitiluna
+ *
+ */
+public enum SynchronizerType {
+
+    /**
+     * Synchronizer based on {@code AbstractQueuedSynchronizer}.
+     * It fits for the latch with many waiting threads.
+     */
+    QUEUED {
+        @Override
+        LatchSynchronizer create(int successCount, int failureCount) {
+            return new UnionSynchronizer(successCount, failureCount);
+        }
+    },
+
+    /**
+     * Synchronizer with a lock-free stack of waiting threads, which are unparked directly on released.
+     * It fits for the latch with one or a few waiting threads.
+     */
+    LIGHTWEIGHT {
+        @Override
+        LatchSynchronizer create(int successCount, int failureCount) {
+            return new LightweightSynchronizer(successCount, failureCount);
+        }
+    };
+
+    /**
+     * Creates a synchronizer.
+     *
+     * @param successCount the success count
+     * @param failureCount the failure count
+     * @return synchronizer
+     */
+    abstract LatchSynchronizer create(int successCount, int failureCount);
+}
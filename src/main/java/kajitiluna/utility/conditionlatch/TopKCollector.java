@@ -0,0 +1,181 @@
+package kajitiluna.utility.conditionlatch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A collector keeping only the K best results in the order of a comparator.
+ *
+ * <p>
+ * The best result is the first one in the order of the comparator,
+ * so a comparator of descending scores keeps the K highest scores.
+ * The results are added to one of the stripes chosen by the current thread,
+ * each of which is a bounded heap guarded by its own monitor, so that the submitting threads rarely contend.
+ * When a stripe is full, a result not better than the worst one of the stripe is rejected without any lock.
+ * The stripes are merged at {@link #getResults}, which returns the K best results already sorted.
+ * The memory is O(K) for each stripe, and the number of stripes depends only on the number of processors.
+ * </p>
+ *
+ * @author kajitiluna
+ *
+ * @param <SUCCESS_RESULT> Object type submitted in success procedure
+ */
+public class TopKCollector<SUCCESS_RESULT> {
+
+    /** Maximum number of stripes. */
+    private static final int MAX_STRIPES = 64;
+
+    /** Comparator of the results, the best first. */
+    private final Comparator<? super SUCCESS_RESULT> comparator_;
+
+    /** Number of results kept. */
+    private final int limit_;
+
+    /** Stripes of bounded heaps. */
+    private final Stripe<SUCCESS_RESULT>[] stripes_;
+
+    /** Total number of results added. */
+    private final AtomicLong offeredCount_;
+
+    /**
+     * Constructs a {@code TopKCollector}.
+     *
+     * @param comparator comparator of the results, ordering the best first
+     * @param limit the number of results kept
+     * @throws NullPointerException if {@code comparator} is {@code null}
+     * @throws IllegalArgumentException if {@code limit} is not positive
+     */
+    public TopKCollector(Comparator<? super SUCCESS_RESULT> comparator, int limit) throws NullPointerException,
+            IllegalArgumentException {
+        if (comparator == null) {
+            throw new NullPointerException("comparator is null.");
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit <= 0");
+        }
+
+        this.comparator_ = comparator;
+        this.limit_ = limit;
+        this.offeredCount_ = new AtomicLong();
+
+        int processors = Math.min(Runtime.getRuntime().availableProcessors(), MAX_STRIPES);
+        int stripeCount = (processors <= 1) ? 1 : Integer.highestOneBit(processors - 1) << 1;
+        @SuppressWarnings("unchecked")
+        Stripe<SUCCESS_RESULT>[] stripes = (Stripe<SUCCESS_RESULT>[]) new Stripe<?>[stripeCount];
+        for (int index = 0; index < stripeCount; index++) {
+            stripes[index] = new Stripe<SUCCESS_RESULT>(comparator, limit);
+        }
+        this.stripes_ = stripes;
+    }
+
+    /**
+     * Adds the result, which is kept if it is one of the K best results of its stripe.
+     *
+     * @param result result to add
+     * @return {@code true} if the result is kept for now, {@code false} if rejected
+     * @throws NullPointerException if {@code result} is {@code null}
+     */
+    public boolean add(SUCCESS_RESULT result) throws NullPointerException {
+        if (result == null) {
+            throw new NullPointerException("Result is null.");
+        }
+
+        this.offeredCount_.incrementAndGet();
+        int index = (int) Thread.currentThread().getId() & (this.stripes_.length - 1);
+        return this.stripes_[index].offer(result);
+    }
+
+    /**
+     * Returns the K best results added until now, sorted the best first.
+     *
+     * @return immutable list of the best results, not more than K
+     */
+    public List<SUCCESS_RESULT> getResults() {
+        List<SUCCESS_RESULT> merged = new ArrayList<SUCCESS_RESULT>();
+        for (Stripe<SUCCESS_RESULT> stripe : this.stripes_) {
+            stripe.copyTo(merged);
+        }
+
+        Collections.sort(merged, this.comparator_);
+        if (merged.size() > this.limit_) {
+            merged = new ArrayList<SUCCESS_RESULT>(merged.subList(0, this.limit_));
+        }
+
+        return Collections.unmodifiableList(merged);
+    }
+
+    /**
+     * Returns the number of results kept.
+     *
+     * @return K
+     */
+    public int getLimit() {
+        return this.limit_;
+    }
+
+    /**
+     * Returns the total number of results added, including the rejected results.
+     *
+     * @return the number of results added
+     */
+    public long getOfferedCount() {
+        return this.offeredCount_.get();
+    }
+
+    /**
+     * Bounded heap of a stripe, whose head is the worst result.
+     *
+     * @param <SUCCESS_RESULT> Object type submitted in success procedure
+     */
+    private static final class Stripe<SUCCESS_RESULT> {
+
+        /** Comparator of the results, the best first. */
+        private final Comparator<? super SUCCESS_RESULT> comparator_;
+
+        /** Number of results kept. */
+        private final int limit_;
+
+        /** Heap of the results, the worst first. Guarded by this stripe. */
+        private final PriorityQueue<SUCCESS_RESULT> heap_;
+
+        /** Worst result after the heap is full, or {@code null} until full. */
+        private volatile SUCCESS_RESULT threshold_;
+
+        Stripe(Comparator<? super SUCCESS_RESULT> comparator, int limit) {
+            this.comparator_ = comparator;
+            this.limit_ = limit;
+            this.heap_ = new PriorityQueue<SUCCESS_RESULT>(limit, Collections.reverseOrder(comparator));
+        }
+
+        boolean offer(SUCCESS_RESULT result) {
+            SUCCESS_RESULT threshold = this.threshold_;
+            if ((threshold != null) && (this.comparator_.compare(result, threshold) >= 0)) {
+                return false;
+            }
+
+            synchronized (this) {
+                if (this.heap_.size() < this.limit_) {
+                    this.heap_.add(result);
+                } else if (this.comparator_.compare(result, this.heap_.peek()) < 0) {
+                    this.heap_.poll();
+                    this.heap_.add(result);
+                } else {
+                    return false;
+                }
+
+                if (this.heap_.size() == this.limit_) {
+                    this.threshold_ = this.heap_.peek();
+                }
+                return true;
+            }
+        }
+
+        synchronized void copyTo(List<SUCCESS_RESULT> list) {
+            list.addAll(this.heap_);
+        }
+    }
+}
@@ -8,7 +8,7 @@ import java.util.concurrent.locks.AbstractQueuedSynchronizer;
  * @author kajitiluna
  *
  */
-class UnionSynchronizer extends AbstractQueuedSynchronizer {
+class UnionSynchronizer extends AbstractQueuedSynchronizer implements LatchSynchronizer {
 
     /** serialVersionUID. */
     private static final long serialVersionUID = -1925006638712213997L;
@@ -29,14 +29,14 @@ class UnionSynchronizer extends AbstractQueuedSynchronizer {
      * @param failureCount
      */
     public UnionSynchronizer(int successCount, int failureCount) {
-        this.checkParameter(successCount, "successCount");
-        this.checkParameter(failureCount, "failureCount");
+        checkParameter(successCount, "successCount");
+        checkParameter(failureCount, "failureCount");
 
         int status = this.convertToState(successCount, failureCount);
         this.setState(status);
     }
 
-    private void checkParameter(int param, String name) {
+    static void checkParameter(int param, String name) {
         if (param < 0) {
             throw new IllegalArgumentException(name + " < 0");
         }
@@ -61,7 +61,87 @@ class UnionSynchronizer extends AbstractQueuedSynchronizer {
 
     /**
      * {@inheritDoc}
+     * <p>
+     * Adjusts the success and failure counts in one CAS.
+     * Positive deltas register more parties, negative deltas deregister them.
+     * If the adjustment makes either count reach zero, all waiting threads are released.
+     * </p>
      *
+     * @param successDelta the amount added to the success count
+     * @param failureDelta the amount added to the failure count
+     * @return {@code false} if either count had already reached zero, {@code true} otherwise
+     * @throws IllegalStateException if either adjusted count is negative or over <code>0x0000FFFF</code>
+     */
+    @Override
+    public boolean tryAdjust(int successDelta, int failureDelta) throws IllegalStateException {
+        while (true) {
+            int nowState = this.getState();
+            int successCount = nowState & 0x0000FFFF;
+            int failureCount = (nowState & 0xFFFF0000) >>> 16;
+
+            if ((successCount <= 0) || (failureCount <= 0)) {
+                return false;
+            }
+
+            int nextSuccessCount = successCount + successDelta;
+            int nextFailureCount = failureCount + failureDelta;
+            checkAdjustedCount(nextSuccessCount, "successCount");
+            checkAdjustedCount(nextFailureCount, "failureCount");
+
+            int nextState = this.convertToState(nextSuccessCount, nextFailureCount);
+            if (this.compareAndSetState(nowState, nextState) == false) {
+                continue;
+            }
+
+            if ((nextSuccessCount == 0) || (nextFailureCount == 0)) {
+                // Only wakes up the waiting threads, the state is already released.
+                this.releaseShared(0);
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * Makes the failure count zero, releasing all waiting threads as failed.
+     *
+     * @return {@code true} if this invocation released, {@code false} if either count had already reached zero
+     */
+    @Override
+    public boolean tryCancel() {
+        while (true) {
+            int nowState = this.getState();
+            int successCount = nowState & 0x0000FFFF;
+            int failureCount = (nowState & 0xFFFF0000) >>> 16;
+
+            if ((successCount <= 0) || (failureCount <= 0)) {
+                return false;
+            }
+
+            if (this.compareAndSetState(nowState, successCount)) {
+                this.releaseShared(0);
+                return true;
+            }
+        }
+    }
+
+    static void checkAdjustedCount(int count, String name) {
+        if (count < 0) {
+            throw new IllegalStateException(name + " < 0");
+        }
+
+        if (count > 0x0000FFFF) {
+            throw new IllegalStateException(name + " > " + 0x0000FFFF);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A positive {@code releases} decrements the success count, and a negative one decrements the failure count,
+     * by its magnitude in one CAS. The count saturates at zero.
+     * Zero doesn't change any count, but only reports whether the state is already released.
+     * </p>
      */
     @Override
     protected boolean tryReleaseShared(int releases) {
@@ -70,17 +150,21 @@ class UnionSynchronizer extends AbstractQueuedSynchronizer {
             int successCount = nowState & 0x0000FFFF;
             int failureCount = (nowState & 0xFFFF0000) >>> 16;
 
+            if (releases == 0) {
+                return (successCount == 0) || (failureCount == 0);
+            }
+
             if ((successCount <= 0) || (failureCount <= 0)) {
                 return false;
             }
 
             int nextCount;
             int nextState;
-            if (releases >= 0) {
-                nextCount = successCount - 1;
+            if (releases > 0) {
+                nextCount = Math.max(successCount - releases, 0);
                 nextState = this.convertToState(nextCount, failureCount);
             } else {
-                nextCount = failureCount - 1;
+                nextCount = Math.max(failureCount + releases, 0);
                 nextState = this.convertToState(successCount, nextCount);
             }
 
@@ -110,13 +194,20 @@ class UnionSynchronizer extends AbstractQueuedSynchronizer {
         return result;
     }
 
+    @Override
     public int getSuccessCount() {
         int success = this.getState() & 0x0000FFFF;
         return success;
     }
 
+    @Override
     public int getFailureCount() {
         int failure = (this.getState() & 0xFFFF0000) >>> 16;
         return failure;
     }
+
+    @Override
+    public boolean isReleased() {
+        return this.tryAcquireShared(1) >= 0;
+    }
 }
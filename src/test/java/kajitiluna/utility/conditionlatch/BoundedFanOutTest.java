@@ -0,0 +1,261 @@
+package kajitiluna.utility.conditionlatch;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author kajitiluna
+ *
+ */
+public class BoundedFanOutTest {
+
+    private ExecutorService executorService_;
+
+    @Before
+    public void setUp() {
+        this.executorService_ = Executors.newFixedThreadPool(16);
+    }
+
+    @After
+    public void tearDown() {
+        this.executorService_.shutdownNow();
+    }
+
+    @Test
+    public void testStart_maxTasks() throws Exception {
+        final int taskCount = 0x0000FFFF;
+        final int maxInFlight = 32;
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final AtomicInteger maxQueued = new AtomicInteger();
+        final ThreadPoolExecutor pool = (ThreadPoolExecutor) this.executorService_;
+
+        ConditionLatch<String, Throwable> latch = new ConditionLatch<String, Throwable>(taskCount);
+        BoundedFanOut<String> target = new BoundedFanOut<String>(latch, maxInFlight, this.executorService_);
+
+        long startTime = System.currentTimeMillis();
+        target.start(new TaskSource(taskCount) {
+            @Override
+            String call(int index) {
+                int nowRunning = running.incrementAndGet();
+                updateMax(maxRunning, nowRunning);
+                updateMax(maxQueued, pool.getQueue().size());
+                running.decrementAndGet();
+                return "Result :" + index;
+            }
+        });
+
+        List<String> resultList = latch.await();
+        System.out.println("BoundedFanOut of " + taskCount + " tasks : " + (System.currentTimeMillis() - startTime)
+                + "ms, max queued = " + maxQueued.get());
+
+        assertTrue(resultList.size() == taskCount);
+        assertTrue(target.getIssuedCount() == taskCount);
+        assertTrue(maxRunning.get() <= maxInFlight);
+        assertTrue(maxQueued.get() <= maxInFlight);
+    }
+
+    @Test
+    public void testStart_stopPullingAfterReleased() throws Exception {
+        ConditionLatch<String, Throwable> latch = new ConditionLatch<String, Throwable>(10);
+        BoundedFanOut<String> target = new BoundedFanOut<String>(latch, 4, this.executorService_);
+
+        target.start(new TaskSource(1000) {
+            @Override
+            String call(int index) {
+                return "Result :" + index;
+            }
+        });
+
+        List<String> resultList = latch.await();
+        assertTrue(resultList.size() >= 10);
+
+        Thread.sleep(50);
+        assertTrue("issued = " + target.getIssuedCount(), target.getIssuedCount() <= 10 + 4);
+        assertTrue(target.getInFlightCount() == 0);
+    }
+
+    @Test
+    public void testStart_sourceThrows() throws Exception {
+        ConditionLatch<String, Throwable> latch = new ConditionLatch<String, Throwable>(10);
+        final BoundedFanOut<String> target = new BoundedFanOut<String>(latch, 4, this.executorService_);
+        final AtomicInteger lockedReleases = new AtomicInteger();
+        latch.addReleaseListener(new ReleaseListener<String, Throwable>() {
+            @Override
+            public void released(ConditionLatch<String, Throwable> releasedLatch) {
+                if (Thread.holdsLock(target)) {
+                    lockedReleases.incrementAndGet();
+                }
+            }
+        });
+
+        try {
+            target.start(new TaskSource(10) {
+                @Override
+                String call(int index) {
+                    return "Result :" + index;
+                }
+
+                @Override
+                public Callable<String> next() {
+                    throw new IllegalStateException("Source failed.");
+                }
+            });
+            fail();
+        } catch (IllegalStateException exc) {
+            assertTrue(exc.getMessage().equals("Source failed."));
+        }
+
+        assertTrue(latch.getFailureCount() == 0);
+        assertTrue(lockedReleases.get() == 0);
+        assertTrue(target.getIssuedCount() == 0);
+    }
+
+    @Test
+    public void testStart_failure() throws Exception {
+        ConditionLatch<String, Throwable> latch = new ConditionLatch<String, Throwable>(10, 2);
+        BoundedFanOut<String> target = new BoundedFanOut<String>(latch, 4, this.executorService_);
+
+        target.start(new TaskSource(100) {
+            @Override
+            String call(int index) {
+                if (index % 3 == 0) {
+                    throw new IllegalStateException("Failed :" + index);
+                }
+                return "Result :" + index;
+            }
+        });
+
+        try {
+            latch.await();
+            fail("Unexpected success.");
+        } catch (SubmittedFailureResultException exc) {
+            assertTrue(latch.getFailureList().size() >= 2);
+        }
+    }
+
+    @Test
+    public void testStart_exhaustedBeforeReleased() throws Exception {
+        ConditionLatch<String, Throwable> latch = new ConditionLatch<String, Throwable>(5);
+        BoundedFanOut<String> target = new BoundedFanOut<String>(latch, 2, this.executorService_);
+
+        List<Callable<String>> tasks = Arrays.<Callable<String>> asList(new Callable<String>() {
+            @Override
+            public String call() {
+                return "Result";
+            }
+        });
+        target.start(tasks.iterator());
+
+        try {
+            latch.await(1, TimeUnit.SECONDS);
+            fail("Unexpected success.");
+        } catch (SubmittedFailureResultException exc) {
+            assertTrue(latch.getSuccessList().size() == 1);
+        }
+    }
+
+    @Test
+    public void testStart_rejectedWithoutRecursion() throws Exception {
+        ConditionLatch<String, Throwable> latch = new ConditionLatch<String, Throwable>(1, 60000);
+        BoundedFanOut<String> target = new BoundedFanOut<String>(latch, 1, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException("Rejected.");
+            }
+        });
+
+        target.start(new TaskSource(100000) {
+            @Override
+            String call(int index) {
+                return "Result :" + index;
+            }
+        });
+
+        try {
+            latch.await(1, TimeUnit.SECONDS);
+            fail("Unexpected success.");
+        } catch (SubmittedFailureResultException exc) {
+            assertTrue(latch.getFailureList().size() == 60000);
+        }
+        assertTrue(target.getInFlightCount() == 0);
+        assertTrue(target.getIssuedCount() == 60000);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testStart_twice() {
+        ConditionLatch<String, Throwable> latch = new ConditionLatch<String, Throwable>(1);
+        BoundedFanOut<String> target = new BoundedFanOut<String>(latch, 1, this.executorService_);
+
+        target.start(Arrays.<Callable<String>> asList().iterator());
+        target.start(Arrays.<Callable<String>> asList().iterator());
+    }
+
+    private static void updateMax(AtomicInteger max, int value) {
+        int nowMax;
+        while ((nowMax = max.get()) < value) {
+            if (max.compareAndSet(nowMax, value)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Source creating tasks on demand.
+     */
+    private abstract static class TaskSource implements Iterator<Callable<String>> {
+
+        private final int taskCount_;
+
+        private int index_;
+
+        TaskSource(int taskCount) {
+            this.taskCount_ = taskCount;
+        }
+
+        abstract String call(int index);
+
+        @Override
+        public boolean hasNext() {
+            return this.index_ < this.taskCount_;
+        }
+
+        @Override
+        public Callable<String> next() {
+            if (this.hasNext() == false) {
+                throw new NoSuchElementException();
+            }
+
+            final int index = this.index_++;
+            return new Callable<String>() {
+                @Override
+                public String call() {
+                    return TaskSource.this.call(index);
+                }
+            };
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package kajitiluna.utility.conditionlatch;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author kajitiluna
+ *
+ */
+public class CancellationTokenTest {
+
+    private ExecutorService executorService_;
+
+    @Before
+    public void setUp() {
+        this.executorService_ = Executors.newFixedThreadPool(8);
+    }
+
+    @After
+    public void tearDown() {
+        this.executorService_.shutdownNow();
+    }
+
+    @Test
+    public void testIsDecided_hooksAndLateSubmits() {
+        ConditionLatch<String, String> latch = new ConditionLatch<String, String>(2, 1);
+        CancellationToken token = latch.getCancellationToken();
+        assertSame(token, latch.getCancellationToken());
+
+        final AtomicInteger hookCount = new AtomicInteger();
+        final AtomicReference<Thread> hookThread = new AtomicReference<Thread>();
+        token.addHook(new Runnable() {
+            @Override
+            public void run() {
+                hookCount.incrementAndGet();
+                hookThread.set(Thread.currentThread());
+            }
+        });
+
+        latch.submit("a");
+        assertFalse(token.isDecided());
+        assertTrue(hookCount.get() == 0);
+        token.throwIfDecided();
+
+        latch.submit("b");
+        assertTrue(token.isDecided());
+        assertTrue(hookCount.get() == 1);
+        assertSame(Thread.currentThread(), hookThread.get());
+
+        // Late submits are discarded without being stored.
+        latch.submit("late");
+        latch.submitForFail("late");
+        latch.submitWithWeight("late", 2);
+        assertTrue(latch.getSuccessList().size() == 2);
+        assertTrue(latch.getFailureList().isEmpty());
+        assertTrue(hookCount.get() == 1);
+
+        try {
+            token.throwIfDecided();
+            fail();
+        } catch (CancellationException exc) {
+            // Expected.
+        }
+
+        // The hook added after released runs immediately.
+        token.addHook(new Runnable() {
+            @Override
+            public void run() {
+                hookCount.incrementAndGet();
+            }
+        });
+        assertTrue(hookCount.get() == 2);
+    }
+
+    @Test
+    public void testAddHook_zeroCount() {
+        ConditionLatch<String, String> latch = new ConditionLatch<String, String>(0, 1);
+        assertTrue(latch.getCancellationToken().isDecided());
+
+        final AtomicInteger hookCount = new AtomicInteger();
+        latch.getCancellationToken().addHook(new Runnable() {
+            @Override
+            public void run() {
+                hookCount.incrementAndGet();
+            }
+        });
+        latch.cancel();
+        assertTrue(hookCount.get() == 1);
+    }
+
+    @Test
+    public void testIsDecided_workersStopEarly() throws Exception {
+        final int workerCount = 32;
+        final ConditionLatch<Integer, String> latch = new ConditionLatch<Integer, String>(4, 1);
+        final CancellationToken token = latch.getCancellationToken();
+        final AtomicLong wastedIterations = new AtomicLong();
+        final CountDownLatch finished = new CountDownLatch(workerCount);
+
+        long startTime = System.nanoTime();
+        for (int workerIndex = 0; workerIndex < workerCount; workerIndex++) {
+            final int iterations = (workerIndex + 1) * 20000;
+            this.executorService_.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        long checksum = 0;
+                        for (int index = 0; index < iterations; index++) {
+                            if (token.isDecided()) {
+                                wastedIterations.addAndGet(index);
+                                return;
+                            }
+                            checksum += Integer.toString(index).hashCode();
+                        }
+                        latch.submit(Integer.valueOf((int) checksum));
+                    } finally {
+                        finished.countDown();
+                    }
+                }
+            });
+        }
+
+        latch.await(10, TimeUnit.SECONDS);
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        long elapsedNanos = System.nanoTime() - startTime;
+
+        assertTrue(latch.getSuccessList().size() >= 4);
+        System.out.println("workers = " + workerCount + " : all finished in "
+                + TimeUnit.NANOSECONDS.toMicros(elapsedNanos) + " us, iterations before noticing release = "
+                + wastedIterations.get());
+    }
+}
@@ -0,0 +1,215 @@
+package kajitiluna.utility.conditionlatch;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ *
+ * @author kajitiluna
+ *
+ */
+public class CircuitBreakerTest {
+
+    private ExecutorService executorService_;
+
+    @After
+    public void tearDown() {
+        if (this.executorService_ != null) {
+            this.executorService_.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testTrip_byFailureCount() {
+        CircuitBreaker target = new CircuitBreaker(3, 2.0, 0, 10, 10, TimeUnit.SECONDS);
+
+        for (int count = 0; count < 10; count++) {
+            target.recordSuccess();
+        }
+        target.recordFailure();
+        target.recordFailure();
+        assertTrue(target.getState() == CircuitBreaker.State.CLOSED);
+        assertTrue(target.tryAcquirePermission());
+
+        target.recordFailure();
+        assertTrue(target.getState() == CircuitBreaker.State.OPEN);
+        assertTrue(target.tryAcquirePermission() == false);
+    }
+
+    @Test
+    public void testTrip_byFailureRatio() {
+        CircuitBreaker target = new CircuitBreaker(100, 0.5, 4, 10, 10, TimeUnit.SECONDS);
+
+        target.recordFailure();
+        target.recordFailure();
+        assertTrue(target.getState() == CircuitBreaker.State.CLOSED);
+
+        target.recordSuccess();
+        target.recordFailure();
+        assertTrue(target.getState() == CircuitBreaker.State.OPEN);
+        assertTrue(target.getFailureCount() == 3);
+        assertTrue(target.getSuccessCount() == 1);
+    }
+
+    @Test
+    public void testHalfOpen_expireTrialsWithoutOutcome() throws Exception {
+        CircuitBreaker target = new CircuitBreaker(1, 2.0, 0, 1000, 200, TimeUnit.MILLISECONDS);
+
+        target.recordFailure();
+        Thread.sleep(300);
+
+        // The trial call is dropped without recording its outcome.
+        assertTrue(target.tryAcquirePermission());
+        assertTrue(target.getState() == CircuitBreaker.State.HALF_OPEN);
+        assertTrue(target.tryAcquirePermission() == false);
+
+        Thread.sleep(300);
+        assertTrue(target.tryAcquirePermission() == false);
+        assertTrue(target.getState() == CircuitBreaker.State.OPEN);
+
+        Thread.sleep(300);
+        assertTrue(target.tryAcquirePermission());
+        assertTrue(target.getState() == CircuitBreaker.State.HALF_OPEN);
+        target.recordSuccess();
+        assertTrue(target.getState() == CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void testHalfOpen_closeAfterTrials() throws Exception {
+        CircuitBreaker target = new CircuitBreaker(1, 2.0, 0, 1000, 200, TimeUnit.MILLISECONDS, 2);
+
+        target.recordFailure();
+        assertTrue(target.tryAcquirePermission() == false);
+
+        Thread.sleep(300);
+        assertTrue(target.tryAcquirePermission());
+        assertTrue(target.getState() == CircuitBreaker.State.HALF_OPEN);
+        assertTrue(target.tryAcquirePermission());
+        assertTrue(target.tryAcquirePermission() == false);
+
+        target.recordSuccess();
+        assertTrue(target.getState() == CircuitBreaker.State.HALF_OPEN);
+        target.recordSuccess();
+        assertTrue(target.getState() == CircuitBreaker.State.CLOSED);
+        assertTrue(target.getFailureCount() == 0);
+        assertTrue(target.tryAcquirePermission());
+    }
+
+    @Test
+    public void testHalfOpen_reopenByFailure() throws Exception {
+        CircuitBreaker target = new CircuitBreaker(1, 2.0, 0, 1000, 200, TimeUnit.MILLISECONDS);
+
+        target.recordFailure();
+        Thread.sleep(300);
+        assertTrue(target.tryAcquirePermission());
+
+        target.recordFailure();
+        assertTrue(target.getState() == CircuitBreaker.State.OPEN);
+        assertTrue(target.tryAcquirePermission() == false);
+    }
+
+    @Test
+    public void testWindow_slide() throws Exception {
+        CircuitBreaker target = new CircuitBreaker(2, 2.0, 0, 320, 10, TimeUnit.MILLISECONDS);
+
+        target.recordFailure();
+        assertTrue(target.getFailureCount() == 1);
+
+        Thread.sleep(500);
+        assertTrue(target.getFailureCount() == 0);
+
+        target.recordFailure();
+        assertTrue(target.getState() == CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void testRecord_comparedWithLockedWindow() throws Exception {
+        final int threadCount = 4;
+        final int recordCount = 1000000;
+
+        this.executorService_ = Executors.newFixedThreadPool(threadCount);
+
+        for (int repeat = 0; repeat < 3; repeat++) {
+            final CircuitBreaker breaker = new CircuitBreaker(Integer.MAX_VALUE, 2.0, 0, 10, 10, TimeUnit.SECONDS);
+            long breakerTime = this.measure(threadCount, new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int count = 0; count < recordCount; count++) {
+                        breaker.recordSuccess();
+                    }
+                    return null;
+                }
+            });
+
+            final LockedWindow lockedWindow = new LockedWindow(TimeUnit.SECONDS.toNanos(10));
+            long lockedTime = this.measure(threadCount, new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int count = 0; count < recordCount; count++) {
+                        lockedWindow.record(true);
+                    }
+                    return null;
+                }
+            });
+
+            long totalCount = (long) threadCount * recordCount;
+            System.out.println("CircuitBreaker : " + (breakerTime / totalCount) + " ns/record");
+            System.out.println("Locked window : " + (lockedTime / totalCount) + " ns/record");
+        }
+    }
+
+    private long measure(int threadCount, Callable<Void> task) throws Exception {
+        Future<?>[] futures = new Future<?>[threadCount];
+        long startTime = System.nanoTime();
+        for (int index = 0; index < threadCount; index++) {
+            futures[index] = this.executorService_.submit(task);
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+
+        return System.nanoTime() - startTime;
+    }
+
+    /**
+     * Sliding window with a lock and time stamps, as the baseline of the comparison.
+     */
+    private static final class LockedWindow {
+
+        private final long windowNanos_;
+
+        private final Deque<long[]> records_ = new ArrayDeque<long[]>();
+
+        private int failureCount_;
+
+        LockedWindow(long windowNanos) {
+            this.windowNanos_ = windowNanos;
+        }
+
+        synchronized void record(boolean success) {
+            long now = System.nanoTime();
+            this.records_.addLast(new long[] { now, success ? 0 : 1 });
+            if (success == false) {
+                this.failureCount_++;
+            }
+
+            while (now - this.records_.peekFirst()[0] > this.windowNanos_) {
+                this.failureCount_ -= (int) this.records_.pollFirst()[1];
+            }
+
+            if (this.records_.size() > 0x0000FFFF) {
+                this.failureCount_ -= (int) this.records_.pollFirst()[1];
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package kajitiluna.utility.conditionlatch;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author kajitiluna
+ *
+ */
+public class CompositeLatchTest {
+
+    private ExecutorService executorService_;
+
+    @Before
+    public void setUp() {
+        this.executorService_ = Executors.newFixedThreadPool(8);
+    }
+
+    @After
+    public void tearDown() {
+        this.executorService_.shutdownNow();
+    }
+
+    @Test
+    public void testAttachTo_regionsAndShards() throws Exception {
+        ConditionLatch<ConditionLatch<String, String>, ConditionLatch<String, String>> top =
+                new ConditionLatch<ConditionLatch<String, String>, ConditionLatch<String, String>>(2, 2);
+
+        List<ConditionLatch<String, String>> regions = new ArrayList<ConditionLatch<String, String>>();
+        for (int regionIndex = 0; regionIndex < 3; regionIndex++) {
+            ConditionLatch<String, String> region = new ConditionLatch<String, String>(8, 3);
+            region.attachTo(top);
+            regions.add(region);
+        }
+
+        // Region 0 and 1 succeed, and region 2 has slow shards.
+        for (int regionIndex = 0; regionIndex < 2; regionIndex++) {
+            for (int shardIndex = 0; shardIndex < 10; shardIndex++) {
+                this.executorService_.execute(TestUtil.createSuccessTask(regions.get(regionIndex),
+                        "shard-" + regionIndex + "-" + shardIndex, 0));
+            }
+        }
+        this.executorService_.execute(TestUtil.createSuccessTask(regions.get(2), "shard-2-0", 0));
+
+        List<ConditionLatch<String, String>> succeededRegions = top.await(5, TimeUnit.SECONDS);
+        assertTrue(succeededRegions.size() == 2);
+        assertTrue(succeededRegions.contains(regions.get(0)));
+        assertTrue(succeededRegions.contains(regions.get(1)));
+        assertTrue(regions.get(0).getSuccessList().size() >= 8);
+
+        // Region 2 is cancelled since the top has decided.
+        try {
+            regions.get(2).await(5, TimeUnit.SECONDS);
+            fail("Unexpected success.");
+        } catch (SubmittedFailureResultException exc) {
+            assertTrue(regions.get(2).getFailureCount() == 0);
+        }
+        assertTrue(top.getFailureList().isEmpty());
+    }
+
+    @Test
+    public void testAttachTo_failure() throws Exception {
+        ConditionLatch<ConditionLatch<String, String>, ConditionLatch<String, String>> top =
+                new ConditionLatch<ConditionLatch<String, String>, ConditionLatch<String, String>>(2, 2);
+
+        ConditionLatch<String, String> region0 = new ConditionLatch<String, String>(8, 3);
+        ConditionLatch<String, String> region1 = new ConditionLatch<String, String>(8, 3);
+        ConditionLatch<String, String> region2 = new ConditionLatch<String, String>(8, 3);
+        region0.attachTo(top);
+        region1.attachTo(top);
+        region2.attachTo(top);
+
+        for (int shardIndex = 0; shardIndex < 3; shardIndex++) {
+            region0.submitForFail("failure-0-" + shardIndex);
+            region1.submitForFail("failure-1-" + shardIndex);
+        }
+
+        try {
+            top.await(5, TimeUnit.SECONDS);
+            fail("Unexpected success.");
+        } catch (SubmittedFailureResultException exc) {
+            assertTrue(top.getFailureList().size() == 2);
+            assertTrue(top.getFailureList().get(0).getFailureList().size() == 3);
+        }
+
+        assertTrue(region2.getFailureCount() == 0);
+    }
+
+    @Test
+    public void testCancel_propagatesDown() throws Exception {
+        ConditionLatch<Object, Object> top = new ConditionLatch<Object, Object>(1, 1);
+        ConditionLatch<Object, Object> region = new ConditionLatch<Object, Object>(1, 1);
+        ConditionLatch<String, String> shard = new ConditionLatch<String, String>(10, 1);
+        region.attachTo(top);
+        shard.attachTo(region);
+
+        top.cancel();
+
+        assertTrue(region.getFailureCount() == 0);
+        assertTrue(shard.getFailureCount() == 0);
+        assertTrue(top.getFailureList().isEmpty());
+        assertTrue(region.getFailureList().isEmpty());
+    }
+
+    @Test
+    public void testAttachTo_alreadyReleased() throws Exception {
+        ConditionLatch<Object, Object> top = new ConditionLatch<Object, Object>(1, 1);
+        ConditionLatch<String, String> region = new ConditionLatch<String, String>(1, 1);
+        region.submit("shard");
+
+        region.attachTo(top);
+        assertTrue(top.await(1, TimeUnit.SECONDS).get(0) == region);
+    }
+}
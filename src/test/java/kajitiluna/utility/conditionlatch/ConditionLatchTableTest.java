@@ -0,0 +1,189 @@
+package kajitiluna.utility.conditionlatch;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ *
+ * @author kajitiluna
+ *
+ */
+public class ConditionLatchTableTest {
+
+    private ExecutorService executorService_;
+
+    @After
+    public void tearDown() {
+        if (this.executorService_ != null) {
+            this.executorService_.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSubmit_3Tasks_parallel() {
+        final ConditionLatchTable target = new ConditionLatchTable(16);
+        final long handle = target.allocate(3, 1);
+
+        this.executorService_ = Executors.newFixedThreadPool(4);
+        long[] waitTimes = { 1000, 500, 1000 };
+
+        long startTime = System.currentTimeMillis();
+        for (final long waitTime : waitTimes) {
+            this.executorService_.submit(new Runnable() {
+                @Override
+                public void run() {
+                    sleep(waitTime);
+                    target.submit(handle);
+                }
+            });
+        }
+
+        try {
+            target.await(handle);
+        } catch (SubmittedFailureResultException | InterruptedException exc) {
+            fail(exc.getMessage());
+        }
+
+        long endTime = System.currentTimeMillis();
+
+        long actualtime = endTime - startTime;
+        System.out.println("Wait time : " + actualtime);
+        assertTrue((actualtime >= 1000) && (actualtime <= 2000));
+        assertTrue(target.isReleased(handle));
+    }
+
+    @Test
+    public void testSubmitForFail_1Task() {
+        final ConditionLatchTable target = new ConditionLatchTable(16);
+        final long handle = target.allocate(3, 1);
+
+        this.executorService_ = Executors.newFixedThreadPool(1);
+        this.executorService_.submit(new Runnable() {
+            @Override
+            public void run() {
+                sleep(500);
+                target.submitForFail(handle);
+            }
+        });
+
+        try {
+            target.await(handle, 2, TimeUnit.SECONDS);
+            fail("Unexpected success.");
+        } catch (SubmittedFailureResultException sfrExc) {
+            assertTrue(true);
+        } catch (InterruptedException | TimeoutException exc) {
+            fail("Unexpected exception : " + exc.getMessage());
+        }
+
+        assertTrue(target.getSuccessCount(handle) == 3);
+        assertTrue(target.getFailureCount(handle) == 0);
+    }
+
+    @Test
+    public void testAwait_withTimeOver() {
+        final ConditionLatchTable target = new ConditionLatchTable(16);
+        final long handle = target.allocate(1, 1);
+
+        try {
+            target.await(handle, 500, TimeUnit.MILLISECONDS);
+            fail("Unexpected success.");
+        } catch (SubmittedFailureResultException | InterruptedException exc) {
+            fail(exc.getMessage());
+        } catch (TimeoutException toExc) {
+            assertTrue(true);
+        }
+    }
+
+    @Test
+    public void testSubmitAll() {
+        final ConditionLatchTable target = new ConditionLatchTable(16);
+        final long[] succeededHandles = { target.allocate(1, 1), target.allocate(2, 1), target.allocate(1, 1) };
+        final long[] failedHandles = { target.allocate(1, 1) };
+
+        int releasedCount = target.submitAll(succeededHandles, failedHandles);
+
+        assertTrue(releasedCount == 3);
+        assertTrue(target.isReleased(succeededHandles[0]));
+        assertTrue(target.isReleased(succeededHandles[1]) == false);
+        assertTrue(target.isReleased(failedHandles[0]));
+    }
+
+    @Test
+    public void testFree_reclaimSlot() {
+        final ConditionLatchTable target = new ConditionLatchTable(1);
+        long handle = target.allocate(1, 1);
+
+        try {
+            target.allocate(1, 1);
+            fail("Unexpected success.");
+        } catch (IllegalStateException isExc) {
+            assertTrue(true);
+        }
+
+        target.submit(handle);
+        target.free(handle);
+
+        long nextHandle = target.allocate(1, 1);
+        assertTrue(nextHandle != handle);
+        assertTrue(target.isReleased(nextHandle) == false);
+
+        try {
+            target.submit(handle);
+            fail("Unexpected success.");
+        } catch (IllegalStateException isExc) {
+            assertTrue(true);
+        }
+    }
+
+    @Test
+    public void testFootprint_comparedWithConditionLatch() {
+        final int latchCount = 100000;
+
+        long baseMemory = usedMemory();
+        ConditionLatch<?, ?>[] latches = new ConditionLatch<?, ?>[latchCount];
+        for (int index = 0; index < latchCount; index++) {
+            latches[index] = new ConditionLatch<Object, Object>(3, 1);
+        }
+        long latchMemory = usedMemory() - baseMemory;
+        assertTrue(latches[latchCount - 1] != null);
+        latches = null;
+
+        baseMemory = usedMemory();
+        ConditionLatchTable table = new ConditionLatchTable(latchCount);
+        long[] handles = new long[latchCount];
+        for (int index = 0; index < latchCount; index++) {
+            handles[index] = table.allocate(3, 1);
+        }
+        long tableMemory = usedMemory() - baseMemory;
+        assertTrue(table.getSuccessCount(handles[latchCount - 1]) == 3);
+
+        System.out.println("ConditionLatch x " + latchCount + " : " + latchMemory + " bytes");
+        System.out.println("ConditionLatchTable x " + latchCount + " : " + tableMemory + " bytes (with handles)");
+        assertTrue(tableMemory < latchMemory);
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int count = 0; count < 3; count++) {
+            System.gc();
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void sleep(long waitTime) {
+        try {
+            Thread.sleep(waitTime);
+        } catch (InterruptedException exc) {
+            System.out.println("Interrupted : " + exc.getMessage());
+        }
+    }
+}
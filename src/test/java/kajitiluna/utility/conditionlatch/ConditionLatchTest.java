@@ -7,10 +7,13 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.After;
 import org.junit.Test;
@@ -488,4 +491,389 @@ public class ConditionLatchTest {
             assertThat(failureList, hasItem(failureResults[index]));
         }
     }
+
+    @Test
+    public void testRegister_beforeSubmit() {
+        final ConditionLatch<String, String> target = new ConditionLatch<String, String>(1);
+
+        this.executorService_ = Executors.newFixedThreadPool(4);
+        assertTrue(target.register(2));
+
+        String[] successResults = { "Success Result 1", "Success Result 2", "Success Result 3" };
+        long[] waitTimes = { 500, 1000, 1500 };
+        Runnable[] successTasks = TestUtil.createSuccessTasks(target, successResults, waitTimes);
+
+        long startTime = System.currentTimeMillis();
+        for (Runnable task : successTasks) {
+            this.executorService_.submit(task);
+        }
+
+        List<String> successList = null;
+        try {
+            successList = target.await();
+        } catch (SubmittedFailureResultException | InterruptedException exc) {
+            fail(exc.getMessage());
+        }
+
+        long endTime = System.currentTimeMillis();
+
+        long actualtime = endTime - startTime;
+        System.out.println("Wait time : " + actualtime);
+        assertTrue(actualtime >= 1500);
+
+        assertTrue(successList.size() == 3);
+        assertThat(successList, hasItems(successResults));
+    }
+
+    @Test
+    public void testDeregister_releaseWaitingThread() {
+        final ConditionLatch<Object, Object> target = new ConditionLatch<Object, Object>(3);
+
+        this.executorService_ = Executors.newFixedThreadPool(1);
+        Runnable task = TestUtil.createSuccessTask(target, 500);
+        Runnable deregisterTask = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException exc) {
+                    System.out.println("Interrupted : " + exc.getMessage());
+                }
+
+                target.deregister(2);
+            }
+        };
+
+        long startTime = System.currentTimeMillis();
+        this.executorService_.submit(task);
+        this.executorService_.submit(deregisterTask);
+
+        try {
+            target.await(3, TimeUnit.SECONDS);
+        } catch (SubmittedFailureResultException | InterruptedException | TimeoutException exc) {
+            fail(exc.getMessage());
+        }
+
+        long endTime = System.currentTimeMillis();
+
+        long actualtime = endTime - startTime;
+        System.out.println("Wait time : " + actualtime);
+        assertTrue((actualtime >= 1000) && (actualtime <= 3000));
+    }
+
+    @Test
+    public void testDeregisterForFail_releaseAsFailure() {
+        final ConditionLatch<Object, Object> target = new ConditionLatch<Object, Object>(2, 2);
+
+        target.submitForFail(null);
+        assertTrue(target.deregisterForFail(1));
+
+        try {
+            target.await();
+            fail("Unexpected success.");
+        } catch (SubmittedFailureResultException sfrExc) {
+            assertTrue(true);
+        } catch (InterruptedException iExc) {
+            fail("Unexpected exception : " + iExc.getMessage());
+        }
+    }
+
+    @Test
+    public void testRegister_afterReleased() {
+        final ConditionLatch<Object, Object> target = new ConditionLatch<Object, Object>(1);
+
+        target.submit(null);
+
+        assertTrue(target.register(1) == false);
+        assertTrue(target.deregister(1) == false);
+        assertTrue(target.registerForFail(1) == false);
+    }
+
+    @Test
+    public void testRegister_illegalCount() {
+        final ConditionLatch<Object, Object> target = new ConditionLatch<Object, Object>(0xFFFE, 2);
+
+        try {
+            target.register(2);
+            fail("Unexpected success.");
+        } catch (IllegalStateException isExc) {
+            assertTrue(true);
+        }
+
+        try {
+            target.deregisterForFail(3);
+            fail("Unexpected success.");
+        } catch (IllegalStateException isExc) {
+            assertTrue(true);
+        }
+
+        try {
+            target.register(-1);
+            fail("Unexpected success.");
+        } catch (IllegalArgumentException iaExc) {
+            assertTrue(true);
+        }
+
+        assertTrue(target.register(1));
+    }
+
+    @Test
+    public void testAddReleaseListener() {
+        final ConditionLatch<String, String> target = new ConditionLatch<String, String>(2);
+        final List<String> releasedList = new CopyOnWriteArrayList<String>();
+
+        ReleaseListener<String, String> listener = new ReleaseListener<String, String>() {
+            @Override
+            public void released(ConditionLatch<String, String> latch) {
+                releasedList.add(Thread.currentThread().getName() + ":" + latch.getSuccessList().size());
+            }
+        };
+
+        target.addReleaseListener(listener);
+        target.submit("Success Result 1");
+        assertTrue(releasedList.isEmpty());
+
+        target.submit("Success Result 2");
+        assertTrue(releasedList.size() == 1);
+        assertTrue(releasedList.get(0).endsWith(":2"));
+
+        target.submit("Success Result 3");
+        assertTrue(releasedList.size() == 1);
+
+        target.addReleaseListener(listener);
+        assertTrue(releasedList.size() == 2);
+    }
+
+    @Test
+    public void testAddReleaseListener_zeroCount() {
+        final AtomicInteger releasedCount = new AtomicInteger();
+        ReleaseListener<String, String> listener = new ReleaseListener<String, String>() {
+            @Override
+            public void released(ConditionLatch<String, String> latch) {
+                releasedCount.incrementAndGet();
+            }
+        };
+
+        ConditionLatch<String, String> successTarget = new ConditionLatch<String, String>(0, 1);
+        successTarget.addReleaseListener(listener);
+        assertTrue(releasedCount.get() == 1);
+
+        ConditionLatch<String, String> failureTarget = new ConditionLatch<String, String>(1, 0);
+        failureTarget.addReleaseListener(listener);
+        assertTrue(releasedCount.get() == 2);
+
+        // Submitting to the released latch doesn't fire the listeners again.
+        successTarget.submit("Success Result 1");
+        successTarget.cancel();
+        assertTrue(releasedCount.get() == 2);
+
+        // The entry of zero count is evicted on creation.
+        KeyedConditionLatchRegistry<String, String, String> registry =
+                new KeyedConditionLatchRegistry<String, String, String>(0, 1, 1);
+        assertTrue(registry.join("key").isLeader());
+        assertTrue(registry.size() == 0);
+
+        // The child of zero count is submitted to the parent on attached.
+        ConditionLatch<ConditionLatch<String, String>, ConditionLatch<String, String>> parent =
+                new ConditionLatch<ConditionLatch<String, String>, ConditionLatch<String, String>>(1, 1);
+        successTarget.attachTo(parent);
+        assertTrue(parent.getSuccessCount() == 0);
+    }
+
+    @Test
+    public void testSubmit_withParticipantRetry() {
+        final ConditionLatch<String, String> target = new ConditionLatch<String, String>(2, 2);
+
+        assertTrue(target.submit(1, "Success Result 1"));
+        assertTrue(target.submit(1, "Success Result 1") == false);
+        assertTrue(target.submitForFail(1, "Failure Result 1") == false);
+        assertTrue(target.submitForFail("participant", "Failure Result 2"));
+        assertTrue(target.submitForFail("participant", "Failure Result 2") == false);
+
+        assertTrue(target.getSuccessList().size() == 1);
+        assertTrue(target.getFailureList().size() == 1);
+
+        assertTrue(target.submit(2, "Success Result 2"));
+
+        List<String> successList = null;
+        try {
+            successList = target.await();
+        } catch (SubmittedFailureResultException | InterruptedException exc) {
+            fail(exc.getMessage());
+        }
+
+        assertTrue(successList.size() == 2);
+    }
+
+    @Test
+    public void testAddProgressListener() {
+        final ConditionLatch<Object, Object> target = new ConditionLatch<Object, Object>(8, 4);
+        final List<String> progressList = new CopyOnWriteArrayList<String>();
+
+        target.addProgressListener(new ProgressListener<Object, Object>() {
+            @Override
+            public void progressed(ConditionLatch<Object, Object> latch, double fraction) {
+                progressList.add("success:" + fraction + ":" + latch.getSuccessCount());
+            }
+        }, 0.75, 0.25, 0.5);
+        target.addFailureProgressListener(new ProgressListener<Object, Object>() {
+            @Override
+            public void progressed(ConditionLatch<Object, Object> latch, double fraction) {
+                progressList.add("failure:" + fraction + ":" + latch.getFailureCount());
+            }
+        }, 0.5);
+
+        target.submit(null);
+        assertTrue(progressList.isEmpty());
+        target.submit(null);
+        assertTrue(progressList.size() == 1);
+        assertTrue(progressList.get(0).equals("success:0.25:6"));
+
+        target.submitForFail(null);
+        target.submitForFail(null);
+        assertTrue(progressList.size() == 2);
+        assertTrue(progressList.get(1).equals("failure:0.5:2"));
+
+        target.deregister(4);
+        assertTrue(progressList.size() == 3);
+        assertTrue(progressList.get(2).equals("success:0.5:2"));
+
+        target.submit(null);
+        assertTrue(progressList.size() == 4);
+        assertTrue(progressList.get(3).equals("success:0.75:1"));
+
+        assertTrue(target.getSuccessCount() == 1);
+        assertTrue(target.getFailureCount() == 2);
+    }
+
+    @Test
+    public void testProgressListenerWithConcurrentRegistration() throws InterruptedException {
+        final ConditionLatch<Object, Object> target = new ConditionLatch<Object, Object>(1, 1);
+        final List<String> progressList = new CopyOnWriteArrayList<String>();
+        target.addProgressListener(new ProgressListener<Object, Object>() {
+            @Override
+            public void progressed(ConditionLatch<Object, Object> latch, double fraction) {
+                progressList.add("success:" + fraction + ":" + latch.getSuccessCount());
+            }
+        }, 0.01);
+
+        Thread[] threads = new Thread[4];
+        for (int index = 0; index < threads.length; index++) {
+            threads[index] = new Thread() {
+                @Override
+                public void run() {
+                    for (int count = 0; count < 10000; count++) {
+                        target.register(1);
+                        target.deregister(1);
+                    }
+                }
+            };
+            threads[index].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Nothing was submitted, so no fraction was crossed.
+        assertTrue(progressList.isEmpty());
+        assertTrue(target.getSuccessCount() == 1);
+
+        target.submit(null);
+        assertTrue(progressList.size() == 1);
+        assertTrue(progressList.get(0).equals("success:0.01:0"));
+    }
+
+    @Test
+    public void testCancel() {
+        final ConditionLatch<Object, Object> target = new ConditionLatch<Object, Object>(2, 2);
+
+        target.submit(null);
+        assertTrue(target.cancel());
+        assertTrue(target.cancel() == false);
+        assertTrue(target.getSuccessCount() == 1);
+
+        try {
+            target.await();
+            fail("Unexpected success.");
+        } catch (SubmittedFailureResultException sfrExc) {
+            assertTrue(true);
+        } catch (InterruptedException iExc) {
+            fail("Unexpected exception : " + iExc.getMessage());
+        }
+    }
+
+    @Test
+    public void testSubmitWithWeight() {
+        for (SynchronizerType type : SynchronizerType.values()) {
+            ConditionLatch<String, String> target = new ConditionLatch<String, String>(5, 4, type);
+
+            target.submitWithWeight("replica-0", 3);
+            assertTrue(target.getSuccessCount() == 2);
+            target.submitForFailWithWeight("replica-1", 3);
+            assertTrue(target.getFailureCount() == 1);
+
+            // Saturates at zero.
+            target.submitWithWeight("replica-2", 3);
+            assertTrue(target.getSuccessCount() == 0);
+            assertTrue(target.getFailureCount() == 1);
+
+            try {
+                List<String> resultList = target.await();
+                assertTrue(resultList.size() == 2);
+            } catch (SubmittedFailureResultException | InterruptedException exc) {
+                fail("Unexpected exception : " + exc.getMessage());
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSubmitWithWeight_illegalWeight() {
+        new ConditionLatch<String, String>(5, 4).submitWithWeight("replica", 0);
+    }
+
+    @Test
+    public void testSubmitWithWeight_parallel() throws InterruptedException {
+        for (SynchronizerType type : SynchronizerType.values()) {
+            final int totalWeight = 0x0000FFFF;
+            final ConditionLatch<Integer, Integer> target = new ConditionLatch<Integer, Integer>(totalWeight, 1, type);
+            final AtomicInteger releaseCount = new AtomicInteger();
+            target.addReleaseListener(new ReleaseListener<Integer, Integer>() {
+                @Override
+                public void released(ConditionLatch<Integer, Integer> latch) {
+                    releaseCount.incrementAndGet();
+                }
+            });
+
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            final AtomicInteger remainingWeight = new AtomicInteger(totalWeight);
+            for (int index = 0; index < 8; index++) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        Random random = new Random();
+                        while (true) {
+                            int weight = 1 + random.nextInt(7);
+                            int remaining = remainingWeight.addAndGet(-weight);
+                            if (remaining + weight <= 0) {
+                                return;
+                            }
+                            target.submitWithWeight(weight, weight);
+                        }
+                    }
+                });
+            }
+
+            try {
+                target.await(5, TimeUnit.SECONDS);
+            } catch (SubmittedFailureResultException | TimeoutException exc) {
+                fail("Unexpected exception : " + exc.getMessage());
+            } finally {
+                executor.shutdownNow();
+            }
+
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+            assertTrue(target.getSuccessCount() == 0);
+            assertTrue(releaseCount.get() == 1);
+        }
+    }
 }
@@ -0,0 +1,251 @@
+package kajitiluna.utility.conditionlatch;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author kajitiluna
+ *
+ */
+public class DistributedLatchTest {
+
+    private LoopbackLatchTransport transport_;
+
+    private ExecutorService executorService_;
+
+    @Before
+    public void setUp() {
+        this.transport_ = new LoopbackLatchTransport();
+        this.executorService_ = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() {
+        this.executorService_.shutdownNow();
+        this.transport_.close();
+    }
+
+    @Test
+    public void testSubmit_batched() throws Exception {
+        final int workerCount = 4;
+        final int resultsPerWorker = 250;
+        LatchCoordinator<Integer, String> coordinator = new LatchCoordinator<Integer, String>("coordinator",
+                this.transport_);
+        ConditionLatch<Integer, String> latch = coordinator.create(1L, workerCount * resultsPerWorker, 10);
+
+        List<Future<Long>> awaiters = new ArrayList<Future<Long>>();
+        for (int workerIndex = 0; workerIndex < workerCount; workerIndex++) {
+            final RemoteLatchClient<Integer, String> client = new RemoteLatchClient<Integer, String>(
+                    "worker-" + workerIndex, "coordinator", this.transport_, 32, 0, TimeUnit.MILLISECONDS);
+            final int base = workerIndex * resultsPerWorker;
+            awaiters.add(this.executorService_.submit(new Callable<Long>() {
+                @Override
+                public Long call() throws Exception {
+                    for (int index = 0; index < resultsPerWorker; index++) {
+                        client.submit(1L, base + index);
+                    }
+                    long startTime = System.nanoTime();
+                    client.await(1L, 5, TimeUnit.SECONDS);
+                    return System.nanoTime() - startTime;
+                }
+            }));
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS).size() == workerCount * resultsPerWorker);
+        for (Future<Long> awaiter : awaiters) {
+            awaiter.get(5, TimeUnit.SECONDS);
+        }
+
+        // 8 full batches and 1 flushed batch per worker, and subscriptions and releases.
+        assertTrue(this.transport_.getResultCount() == workerCount * resultsPerWorker);
+        assertTrue("frames = " + this.transport_.getFrameCount(),
+                this.transport_.getFrameCount() <= workerCount * (8 + 1 + 1 + 1));
+    }
+
+    @Test
+    public void testSubmitForFail_broadcast() throws Exception {
+        LatchCoordinator<Integer, String> coordinator = new LatchCoordinator<Integer, String>("coordinator",
+                this.transport_);
+        ConditionLatch<Integer, String> latch = coordinator.create(2L, 10, 1);
+
+        RemoteLatchClient<Integer, String> failingClient = new RemoteLatchClient<Integer, String>("worker-0",
+                "coordinator", this.transport_, 100, 0, TimeUnit.MILLISECONDS);
+        final RemoteLatchClient<Integer, String> awaitingClient = new RemoteLatchClient<Integer, String>(
+                "worker-1", "coordinator", this.transport_, 100, 0, TimeUnit.MILLISECONDS);
+
+        Future<Boolean> awaiter = this.executorService_.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                try {
+                    awaitingClient.await(2L, 5, TimeUnit.SECONDS);
+                    return true;
+                } catch (SubmittedFailureResultException exc) {
+                    return false;
+                }
+            }
+        });
+
+        failingClient.submit(2L, 1);
+        failingClient.submitForFail(2L, "failure");
+        failingClient.flush();
+
+        assertTrue(awaiter.get(5, TimeUnit.SECONDS) == false);
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+            fail("Unexpected success.");
+        } catch (SubmittedFailureResultException exc) {
+            assertTrue(latch.getFailureList().get(0).equals("failure"));
+            assertTrue(latch.getSuccessList().size() == 1);
+        }
+
+        // Subscription after the release is answered immediately.
+        try {
+            failingClient.await(2L, 5, TimeUnit.SECONDS);
+            fail("Unexpected success.");
+        } catch (SubmittedFailureResultException exc) {
+            assertTrue(true);
+        }
+    }
+
+    @Test
+    public void testSubmit_linger() throws Exception {
+        LatchCoordinator<Integer, String> coordinator = new LatchCoordinator<Integer, String>("coordinator",
+                this.transport_);
+        ConditionLatch<Integer, String> latch = coordinator.create(3L, 5, 1);
+
+        RemoteLatchClient<Integer, String> client = new RemoteLatchClient<Integer, String>("worker-0",
+                "coordinator", this.transport_, 1000, 30, TimeUnit.MILLISECONDS);
+        for (int index = 0; index < 5; index++) {
+            client.submit(3L, index);
+        }
+
+        try {
+            latch.await(5, TimeUnit.MILLISECONDS);
+            fail("Unexpected release before the linger.");
+        } catch (TimeoutException exc) {
+            assertTrue(this.transport_.getFrameCount() == 0);
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS).size() == 5);
+        assertTrue(this.transport_.getFrameCount() == 1);
+    }
+
+    @Test
+    public void testReceived_frameAppliedInBulk() throws Exception {
+        LatchCoordinator<Integer, String> coordinator = new LatchCoordinator<Integer, String>("coordinator",
+                this.transport_);
+        ConditionLatch<Integer, String> latch = coordinator.create(5L, 4, 3);
+
+        coordinator.received("worker-0", LatchFrame.submit(5L, Arrays.<Object> asList(1, 2, "a", 3, "b"),
+                new int[] { 2, 1, 1, 1 }));
+        assertTrue(latch.getSuccessCount() == 1);
+        assertTrue(latch.getFailureCount() == 1);
+        assertTrue(latch.getSuccessList().equals(Arrays.asList(1, 2, 3)));
+        assertTrue(latch.getFailureList().equals(Arrays.asList("a", "b")));
+
+        coordinator.received("worker-0", LatchFrame.submit(5L, Arrays.asList(4, 5), new int[] { 2 }));
+        assertTrue(latch.await(5, TimeUnit.SECONDS).size() == 5);
+    }
+
+    @Test
+    public void testSubmit_mixedBatchInOrder() throws Exception {
+        LatchCoordinator<Integer, String> coordinator = new LatchCoordinator<Integer, String>("coordinator",
+                this.transport_);
+        ConditionLatch<Integer, String> latch = coordinator.create(7L, 2, 1);
+
+        RemoteLatchClient<Integer, String> client = new RemoteLatchClient<Integer, String>("worker-0",
+                "coordinator", this.transport_, 100, 0, TimeUnit.MILLISECONDS);
+        client.submitForFail(7L, "failure");
+        client.submit(7L, 1);
+        client.submit(7L, 2);
+        client.flush();
+
+        // The failure count reached zero first, as in a local latch.
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+            fail("Unexpected success.");
+        } catch (SubmittedFailureResultException exc) {
+            assertTrue(latch.getFailureList().equals(Arrays.asList("failure")));
+            assertTrue(latch.getSuccessList().isEmpty());
+        }
+        assertTrue(this.transport_.getFrameCount() == 1);
+    }
+
+    @Test
+    public void testRemove_concurrentSubmits() throws Exception {
+        final int workerCount = 4;
+        final int resultsPerWorker = 10000;
+        LatchCoordinator<Integer, String> coordinator = new LatchCoordinator<Integer, String>("coordinator",
+                this.transport_);
+        ConditionLatch<Integer, String> latch = coordinator.create(6L, workerCount * resultsPerWorker, 1);
+        final RemoteLatchClient<Integer, String> client = new RemoteLatchClient<Integer, String>("worker-0",
+                "coordinator", this.transport_, 64, 0, TimeUnit.MILLISECONDS);
+
+        List<Future<?>> workers = new ArrayList<Future<?>>();
+        for (int workerIndex = 0; workerIndex < workerCount; workerIndex++) {
+            final int base = workerIndex * resultsPerWorker;
+            workers.add(this.executorService_.submit(new Runnable() {
+                @Override
+                public void run() {
+                    for (int index = 0; index < resultsPerWorker; index++) {
+                        client.submit(6L, base + index);
+                    }
+                }
+            }));
+        }
+
+        // Each result added to a batch just before removed is still sent.
+        for (Future<?> worker : workers) {
+            while (worker.isDone() == false) {
+                client.remove(6L);
+            }
+            worker.get();
+        }
+        client.remove(6L);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS).size() == workerCount * resultsPerWorker);
+    }
+
+    @Test
+    public void testThroughput() throws Exception {
+        for (int batchSize : new int[] { 1, 16, 256 }) {
+            LoopbackLatchTransport transport = new LoopbackLatchTransport();
+            try {
+                final int resultCount = 0x0000FFFF;
+                LatchCoordinator<Integer, String> coordinator = new LatchCoordinator<Integer, String>("coordinator",
+                        transport);
+                ConditionLatch<Integer, String> latch = coordinator.create(4L, resultCount, 1);
+                RemoteLatchClient<Integer, String> client = new RemoteLatchClient<Integer, String>("worker-0",
+                        "coordinator", transport, batchSize, 0, TimeUnit.MILLISECONDS);
+
+                long startTime = System.nanoTime();
+                for (int index = 0; index < resultCount; index++) {
+                    client.submit(4L, index);
+                }
+                client.flush();
+                latch.await(10, TimeUnit.SECONDS);
+                long elapsed = System.nanoTime() - startTime;
+
+                System.out.println("distributed submit with batch " + batchSize + " : " + (elapsed / resultCount)
+                        + " ns/submit, " + transport.getFrameCount() + " frames");
+            } finally {
+                transport.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package kajitiluna.utility.conditionlatch;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author kajitiluna
+ *
+ */
+public class FailureAggregatorTest {
+
+    @Test
+    public void testAdd_groupedByCause() {
+        FailureAggregator<Throwable> target = new FailureAggregator<Throwable>(10, 2);
+        for (int index = 0; index < 100; index++) {
+            target.add(new IllegalStateException("Connection refused"));
+        }
+        for (int index = 0; index < 10; index++) {
+            target.add(new IllegalArgumentException("Bad request"));
+        }
+        target.add(null);
+
+        List<FailureAggregator.FailureGroup<Throwable>> groups = target.getGroups();
+        assertTrue(groups.size() == 3);
+        assertTrue(groups.get(0).getCount() == 100);
+        assertTrue(groups.get(0).getKey().equals("java.lang.IllegalStateException: Connection refused"));
+        assertTrue(groups.get(0).getExemplars().size() == 2);
+        assertTrue(groups.get(1).getCount() == 10);
+        assertTrue(groups.get(2).getExemplars().get(0) == null);
+        assertTrue(target.getTotalCount() == 111);
+        assertTrue(target.getExemplars().size() == 5);
+    }
+
+    @Test
+    public void testAdd_classifierAndOverflow() {
+        FailureAggregator<String> target = new FailureAggregator<String>(new FailureClassifier<String>() {
+            @Override
+            public Object classify(String failure) {
+                return failure.substring(0, failure.indexOf(':'));
+            }
+        }, 2, 1);
+
+        target.add("timeout:shard-1");
+        target.add("timeout:shard-2");
+        target.add("refused:shard-3");
+        target.add("reset:shard-4");
+        target.add("closed:shard-5");
+        target.add("eof:shard-6");
+
+        List<FailureAggregator.FailureGroup<String>> groups = target.getGroups();
+        assertTrue(groups.size() == 3);
+        assertTrue(groups.get(0).isOther());
+        assertTrue(groups.get(0).getCount() == 3);
+        assertTrue(groups.get(1).getKey().equals("timeout"));
+        assertTrue(groups.get(1).getExemplars().get(0).equals("timeout:shard-1"));
+        assertTrue(groups.get(1).isOther() == false);
+    }
+
+    @Test
+    public void testAdd_keysLikeSentinels() {
+        FailureAggregator<String> target = new FailureAggregator<String>(2, 1);
+
+        target.add("(other)");
+        target.add("(null)");
+        target.add(null);
+
+        List<FailureAggregator.FailureGroup<String>> groups = target.getGroups();
+        assertTrue(groups.size() == 3);
+        int otherCount = 0;
+        for (FailureAggregator.FailureGroup<String> group : groups) {
+            assertTrue(group.getCount() == 1);
+            otherCount += group.isOther() ? 1 : 0;
+        }
+        assertTrue(otherCount == 1);
+    }
+
+    @Test
+    public void testEnableFailureAggregation_storm() throws Exception {
+        final int failureCount = 0x0000FFFF;
+        final ConditionLatch<String, Throwable> latch = new ConditionLatch<String, Throwable>(1, failureCount);
+        FailureAggregator<Throwable> aggregator = new FailureAggregator<Throwable>(16, 4);
+        latch.enableFailureAggregation(aggregator);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        long startTime = System.nanoTime();
+        for (int threadIndex = 0; threadIndex < 8; threadIndex++) {
+            final int kind = threadIndex % 2;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    while (latch.getFailureCount() > 0) {
+                        latch.submitForFail((kind == 0) ? new IllegalStateException("Downstream is unavailable.")
+                                : new TimeoutException("Timed out."));
+                    }
+                }
+            });
+        }
+
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+            fail("Unexpected success.");
+        } catch (SubmittedFailureResultException exc) {
+            assertTrue(true);
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        long elapsed = System.nanoTime() - startTime;
+
+        assertTrue(aggregator.getGroups().size() == 2);
+        assertTrue(aggregator.getTotalCount() >= failureCount);
+        assertTrue(latch.getFailureList().size() == 8);
+        System.out.println("aggregated " + aggregator.getTotalCount() + " failures : "
+                + (elapsed / aggregator.getTotalCount()) + " ns/failure, groups = " + aggregator.getGroups());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testEnableFailureAggregation_afterFailure() {
+        ConditionLatch<String, String> latch = new ConditionLatch<String, String>(1, 2);
+        latch.submitForFail("failure");
+        latch.enableFailureAggregation(new FailureAggregator<String>(1, 1));
+    }
+}
@@ -0,0 +1,191 @@
+package kajitiluna.utility.conditionlatch;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ *
+ * @author kajitiluna
+ *
+ */
+public class HashedTimerWheelTest {
+
+    private HashedTimerWheel target_;
+
+    @After
+    public void tearDown() {
+        if (this.target_ != null) {
+            this.target_.stop();
+        }
+    }
+
+    @Test
+    public void testSchedule_expire() throws Exception {
+        this.target_ = new HashedTimerWheel(10, TimeUnit.MILLISECONDS, 8);
+        final CountDownLatch expiredLatch = new CountDownLatch(2);
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                expiredLatch.countDown();
+            }
+        };
+
+        long startTime = System.currentTimeMillis();
+        HashedTimerWheel.Timeout shortTimeout = this.target_.schedule(task, 50, TimeUnit.MILLISECONDS);
+        // Over some rounds of the wheel.
+        HashedTimerWheel.Timeout longTimeout = this.target_.schedule(task, 500, TimeUnit.MILLISECONDS);
+
+        assertTrue(expiredLatch.await(2, TimeUnit.SECONDS));
+
+        long actualtime = System.currentTimeMillis() - startTime;
+        System.out.println("Wait time : " + actualtime);
+        assertTrue((actualtime >= 500) && (actualtime <= 1000));
+        assertTrue(shortTimeout.isExpired());
+        assertTrue(longTimeout.isExpired());
+        assertTrue(longTimeout.cancel() == false);
+    }
+
+    @Test
+    public void testStop_shared() throws Exception {
+        HashedTimerWheel shared = HashedTimerWheel.getShared();
+        try {
+            shared.stop();
+            fail();
+        } catch (IllegalStateException exc) {
+            // Expected.
+        }
+
+        final CountDownLatch expiredLatch = new CountDownLatch(1);
+        shared.schedule(new Runnable() {
+            @Override
+            public void run() {
+                expiredLatch.countDown();
+            }
+        }, 10, TimeUnit.MILLISECONDS);
+        assertTrue(expiredLatch.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testSchedule_survivesError() throws Exception {
+        this.target_ = new HashedTimerWheel(10, TimeUnit.MILLISECONDS, 8);
+        final CountDownLatch expiredLatch = new CountDownLatch(1);
+
+        this.target_.schedule(new Runnable() {
+            @Override
+            public void run() {
+                throw new AssertionError("Error in a timeout task.");
+            }
+        }, 10, TimeUnit.MILLISECONDS);
+        this.target_.schedule(new Runnable() {
+            @Override
+            public void run() {
+                expiredLatch.countDown();
+            }
+        }, 50, TimeUnit.MILLISECONDS);
+
+        assertTrue(expiredLatch.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        this.target_ = new HashedTimerWheel(10, TimeUnit.MILLISECONDS, 8);
+        final AtomicInteger expiredCount = new AtomicInteger();
+
+        HashedTimerWheel.Timeout timeout = this.target_.schedule(new Runnable() {
+            @Override
+            public void run() {
+                expiredCount.incrementAndGet();
+            }
+        }, 100, TimeUnit.MILLISECONDS);
+
+        assertTrue(timeout.cancel());
+        Thread.sleep(300);
+
+        assertTrue(expiredCount.get() == 0);
+        assertTrue(timeout.isCancelled());
+        assertTrue(timeout.isExpired() == false);
+    }
+
+    @Test
+    public void testCancelAfter_latch() {
+        final ConditionLatch<Object, Object> target = new ConditionLatch<Object, Object>(2);
+        final ConditionLatch<Object, Object> releasedLatch = new ConditionLatch<Object, Object>(1);
+
+        target.cancelAfter(500, TimeUnit.MILLISECONDS);
+        releasedLatch.cancelAfter(500, TimeUnit.MILLISECONDS);
+        releasedLatch.submit(null);
+
+        long startTime = System.currentTimeMillis();
+        try {
+            target.await();
+            fail("Unexpected success.");
+        } catch (SubmittedFailureResultException sfrExc) {
+            assertTrue(true);
+        } catch (InterruptedException iExc) {
+            fail("Unexpected exception : " + iExc.getMessage());
+        }
+
+        long actualtime = System.currentTimeMillis() - startTime;
+        System.out.println("Wait time : " + actualtime);
+        assertTrue((actualtime >= 450) && (actualtime <= 1000));
+
+        try {
+            releasedLatch.await();
+        } catch (SubmittedFailureResultException | InterruptedException exc) {
+            fail(exc.getMessage());
+        }
+    }
+
+    @Test
+    public void testScheduleAndCancel_comparedWithScheduledExecutor() throws Exception {
+        final int timeoutCount = 100000;
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                // Do nothing.
+            }
+        };
+
+        this.target_ = new HashedTimerWheel(10, TimeUnit.MILLISECONDS, 512);
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+        executor.setRemoveOnCancelPolicy(true);
+        try {
+            for (int repeat = 0; repeat < 3; repeat++) {
+                HashedTimerWheel.Timeout[] timeouts = new HashedTimerWheel.Timeout[timeoutCount];
+                long startTime = System.nanoTime();
+                for (int index = 0; index < timeoutCount; index++) {
+                    timeouts[index] = this.target_.schedule(task, 30 + (index % 1000), TimeUnit.SECONDS);
+                }
+                for (HashedTimerWheel.Timeout timeout : timeouts) {
+                    timeout.cancel();
+                }
+                long wheelTime = System.nanoTime() - startTime;
+
+                ScheduledFuture<?>[] futures = new ScheduledFuture<?>[timeoutCount];
+                startTime = System.nanoTime();
+                for (int index = 0; index < timeoutCount; index++) {
+                    futures[index] = executor.schedule(task, 30 + (index % 1000), TimeUnit.SECONDS);
+                }
+                for (ScheduledFuture<?> future : futures) {
+                    future.cancel(false);
+                }
+                long executorTime = System.nanoTime() - startTime;
+
+                System.out.println("HashedTimerWheel : " + (wheelTime / timeoutCount) + " ns/schedule+cancel");
+                System.out.println("ScheduledThreadPoolExecutor : " + (executorTime / timeoutCount)
+                        + " ns/schedule+cancel");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package kajitiluna.utility.conditionlatch;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ *
+ * @author kajitiluna
+ *
+ */
+public class KeyedConditionLatchRegistryTest {
+
+    private ExecutorService executorService_;
+
+    @After
+    public void tearDown() {
+        if (this.executorService_ != null) {
+            this.executorService_.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testJoin_coalescing() throws Exception {
+        final KeyedConditionLatchRegistry<String, String, String> target =
+                new KeyedConditionLatchRegistry<String, String, String>();
+        final AtomicInteger fetchCount = new AtomicInteger();
+
+        this.executorService_ = Executors.newFixedThreadPool(8);
+        Callable<String> task = new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                KeyedConditionLatchRegistry.Participation<String, String> participation = target.join("key");
+                if (participation.isLeader()) {
+                    fetchCount.incrementAndGet();
+                    Thread.sleep(1000);
+                    participation.getLatch().submit("fetched");
+                }
+
+                List<String> resultList = participation.getLatch().await();
+                return resultList.get(0);
+            }
+        };
+
+        Future<?>[] futures = new Future<?>[8];
+        for (int index = 0; index < futures.length; index++) {
+            futures[index] = this.executorService_.submit(task);
+        }
+
+        for (Future<?> future : futures) {
+            assertTrue("fetched".equals(future.get()));
+        }
+
+        assertTrue(fetchCount.get() == 1);
+        assertTrue(target.size() == 0);
+        assertTrue(target.get("key") == null);
+    }
+
+    @Test
+    public void testJoin_evictOnFailure() {
+        final KeyedConditionLatchRegistry<String, String, String> target =
+                new KeyedConditionLatchRegistry<String, String, String>();
+
+        KeyedConditionLatchRegistry.Participation<String, String> leader = target.join("key");
+        KeyedConditionLatchRegistry.Participation<String, String> follower = target.join("key");
+        assertTrue(leader.isLeader());
+        assertTrue(follower.isLeader() == false);
+        assertTrue(leader.getLatch() == follower.getLatch());
+        assertTrue(target.size() == 1);
+
+        leader.getLatch().submitForFail("not found");
+        assertTrue(target.size() == 0);
+
+        try {
+            follower.getLatch().await();
+            fail("Unexpected success.");
+        } catch (SubmittedFailureResultException sfrExc) {
+            assertTrue(true);
+        } catch (InterruptedException iExc) {
+            fail("Unexpected exception : " + iExc.getMessage());
+        }
+
+        KeyedConditionLatchRegistry.Participation<String, String> nextLeader = target.join("key");
+        assertTrue(nextLeader.isLeader());
+        assertTrue(nextLeader.getLatch() != leader.getLatch());
+    }
+
+    @Test
+    public void testJoin_zipfThroughput() throws Exception {
+        final int keyCount = 1024;
+        final int threadCount = 8;
+        final int operationCount = 200000;
+
+        final double[] cumulative = new double[keyCount];
+        double sum = 0;
+        for (int index = 0; index < keyCount; index++) {
+            sum += 1.0 / Math.pow(index + 1, 1.1);
+            cumulative[index] = sum;
+        }
+        for (int index = 0; index < keyCount; index++) {
+            cumulative[index] /= sum;
+        }
+
+        final KeyedConditionLatchRegistry<Integer, Integer, Integer> target =
+                new KeyedConditionLatchRegistry<Integer, Integer, Integer>();
+        final AtomicInteger leaderCount = new AtomicInteger();
+
+        this.executorService_ = Executors.newFixedThreadPool(threadCount);
+        Future<?>[] futures = new Future<?>[threadCount];
+
+        long startTime = System.currentTimeMillis();
+        for (int threadIndex = 0; threadIndex < threadCount; threadIndex++) {
+            final long seed = threadIndex;
+            futures[threadIndex] = this.executorService_.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    Random random = new Random(seed);
+                    for (int count = 0; count < operationCount / threadCount; count++) {
+                        Integer key = Integer.valueOf(zipfIndex(cumulative, random.nextDouble()));
+                        KeyedConditionLatchRegistry.Participation<Integer, Integer> participation = target.join(key);
+                        if (participation.isLeader()) {
+                            leaderCount.incrementAndGet();
+                            participation.getLatch().submit(key);
+                        }
+                        participation.getLatch().await();
+                    }
+                    return null;
+                }
+            });
+        }
+
+        for (Future<?> future : futures) {
+            future.get();
+        }
+
+        long endTime = System.currentTimeMillis();
+
+        long actualtime = Math.max(endTime - startTime, 1);
+        System.out.println("Zipf join : " + operationCount + " operations in " + actualtime + " ms, "
+                + (operationCount * 1000L / actualtime) + " ops/s, " + leaderCount.get() + " leaders");
+        assertTrue(target.size() == 0);
+    }
+
+    private static int zipfIndex(double[] cumulative, double value) {
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (cumulative[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+}
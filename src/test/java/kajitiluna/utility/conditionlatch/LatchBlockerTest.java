@@ -0,0 +1,109 @@
+package kajitiluna.utility.conditionlatch;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author kajitiluna
+ *
+ */
+public class LatchBlockerTest {
+
+    @Test
+    public void testAwait_saturatedCommonPool() throws Exception {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        long elapsedNanos = this.awaitInPool(pool, pool.getParallelism() + 4);
+
+        System.out.println("common pool of parallelism " + pool.getParallelism() + " : all awaiters done in "
+                + TimeUnit.NANOSECONDS.toMicros(elapsedNanos) + " us");
+    }
+
+    @Test
+    public void testAwait_saturatedDedicatedPool() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            long elapsedNanos = this.awaitInPool(pool, 16);
+
+            System.out.println("dedicated pool of parallelism 2 : all awaiters done in "
+                    + TimeUnit.NANOSECONDS.toMicros(elapsedNanos) + " us");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testAwait_timeoutInPool() throws Exception {
+        final ConditionLatch<String, String> latch = new ConditionLatch<String, String>(1, 1);
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            ForkJoinTask<Boolean> task = pool.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    try {
+                        latch.await(50, TimeUnit.MILLISECONDS);
+                        return Boolean.FALSE;
+                    } catch (TimeoutException exc) {
+                        return Boolean.TRUE;
+                    }
+                }
+            });
+            assertTrue(task.get(5, TimeUnit.SECONDS).booleanValue());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Fills the pool with the tasks awaiting the latch, and then submits the tasks releasing the latch to the same pool.
+     * Without the compensation of the pool, the releasing tasks never run and the awaiters stall until timed out.
+     */
+    private long awaitInPool(ForkJoinPool pool, int awaiterCount) throws Exception {
+        final int submitterCount = 4;
+        final ConditionLatch<Integer, String> latch = new ConditionLatch<Integer, String>(submitterCount, 1);
+
+        long startTime = System.nanoTime();
+        List<ForkJoinTask<?>> awaiters = new ArrayList<ForkJoinTask<?>>();
+        for (int index = 0; index < awaiterCount; index++) {
+            awaiters.add(pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        assertTrue(latch.await(10, TimeUnit.SECONDS).size() == submitterCount);
+                    } catch (Exception exc) {
+                        throw new IllegalStateException(exc);
+                    }
+                }
+            }));
+        }
+
+        for (int index = 0; index < submitterCount; index++) {
+            final int value = index;
+            pool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    latch.submit(Integer.valueOf(value));
+                }
+            });
+        }
+
+        for (ForkJoinTask<?> awaiter : awaiters) {
+            try {
+                awaiter.get(10, TimeUnit.SECONDS);
+            } catch (TimeoutException exc) {
+                fail("Pool is stalled.");
+            }
+        }
+        return System.nanoTime() - startTime;
+    }
+}
@@ -0,0 +1,437 @@
+package kajitiluna.utility.conditionlatch;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A load generator and soak-test harness of {@code ConditionLatch}, modeling the production traffic.
+ *
+ * <p>
+ * The generator creates latches at a fixed rate. The tasks of each latch are created by {@link TestUtil}
+ * and run in the submitter pool, and each latch is awaited by the awaiters in the awaiter pool with a timeout.
+ * Every interval, it reports the throughput, the allocation rate, the GC activity,
+ * and the percentiles of the latency from the release of a latch to the wake-up of its awaiter,
+ * and the latency from the creation of a latch to the wake-up.
+ * </p>
+ *
+ * <p>
+ * Run it after {@code mvn test-compile} with the parameters as {@code key=value}, for example:
+ * </p>
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes kajitiluna.utility.conditionlatch.LatchLoadGenerator \
+ *     durationSeconds=600 latchesPerSecond=5000 successCount=8 synchronizerType=LIGHTWEIGHT
+ * </pre>
+ *
+ * @author kajitiluna
+ *
+ */
+public class LatchLoadGenerator {
+
+    /** Configuration. */
+    private final Config config_;
+
+    /** Histogram of the latency from release to wake-up of awaiter. */
+    private final LatencyHistogram wakeUpHistogram_;
+
+    /** Histogram of the latency from creation to wake-up of awaiter. */
+    private final LatencyHistogram completionHistogram_;
+
+    /** Number of latches created. */
+    private final AtomicLong createdCount_;
+
+    /** Number of awaits returned with success. */
+    private final AtomicLong succeededCount_;
+
+    /** Number of awaits thrown failure. */
+    private final AtomicLong failedCount_;
+
+    /** Number of awaits timed out. */
+    private final AtomicLong timedOutCount_;
+
+    /** Number of latches skipped since too many latches were in flight. */
+    private final AtomicLong skippedCount_;
+
+    /** Number of latches in flight. */
+    private final AtomicInteger inFlightCount_;
+
+    LatchLoadGenerator(Config config) {
+        this.config_ = config;
+        this.wakeUpHistogram_ = new LatencyHistogram();
+        this.completionHistogram_ = new LatencyHistogram();
+        this.createdCount_ = new AtomicLong();
+        this.succeededCount_ = new AtomicLong();
+        this.failedCount_ = new AtomicLong();
+        this.timedOutCount_ = new AtomicLong();
+        this.skippedCount_ = new AtomicLong();
+        this.inFlightCount_ = new AtomicInteger();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Config config = Config.parse(args);
+        System.out.println(config);
+        new LatchLoadGenerator(config).run();
+    }
+
+    /**
+     * Runs the load for the configured duration, reporting every interval.
+     *
+     * @return the total number of awaits returned, thrown or timed out
+     * @throws InterruptedException if interrupted
+     */
+    long run() throws InterruptedException {
+        ExecutorService submitters = Executors.newFixedThreadPool(this.config_.submitterThreads_);
+        ExecutorService awaiters = Executors.newFixedThreadPool(this.config_.awaiterThreads_);
+
+        Reporter reporter = new Reporter();
+        long startTime = System.nanoTime();
+        long endTime = startTime + TimeUnit.SECONDS.toNanos(this.config_.durationSeconds_);
+        long intervalNanos = TimeUnit.SECONDS.toNanos(this.config_.intervalSeconds_);
+        long periodNanos = TimeUnit.SECONDS.toNanos(1) / this.config_.latchesPerSecond_;
+
+        try {
+            long nextReport = startTime + intervalNanos;
+            long issuedCount = 0;
+            long now;
+            while ((now = System.nanoTime()) < endTime) {
+                long dueCount = (now - startTime) / periodNanos;
+                for (; issuedCount < dueCount; issuedCount++) {
+                    this.issueLatch(submitters, awaiters);
+                }
+
+                if (now >= nextReport) {
+                    reporter.report(now - startTime);
+                    nextReport += intervalNanos;
+                }
+
+                LockSupport.parkNanos(Math.min(periodNanos, TimeUnit.MILLISECONDS.toNanos(1)));
+            }
+        } finally {
+            submitters.shutdown();
+            awaiters.shutdown();
+            awaiters.awaitTermination(this.config_.timeoutMillis_ * 2, TimeUnit.MILLISECONDS);
+            submitters.shutdownNow();
+            awaiters.shutdownNow();
+        }
+
+        reporter.report(System.nanoTime() - startTime);
+        return this.succeededCount_.get() + this.failedCount_.get() + this.timedOutCount_.get();
+    }
+
+    long getTimedOutCount() {
+        return this.timedOutCount_.get();
+    }
+
+    private void issueLatch(ExecutorService submitters, ExecutorService awaiters) {
+        if (this.inFlightCount_.get() >= this.config_.maxInFlight_) {
+            this.skippedCount_.incrementAndGet();
+            return;
+        }
+        this.inFlightCount_.incrementAndGet();
+        this.createdCount_.incrementAndGet();
+
+        final long createdTime = System.nanoTime();
+        final ConditionLatch<String, String> latch = new ConditionLatch<String, String>(this.config_.successCount_,
+                this.config_.failureCount_, this.config_.synchronizerType_);
+        final AtomicLong releasedTime = new AtomicLong();
+        final AtomicInteger remainingAwaiters = new AtomicInteger(this.config_.awaitersPerLatch_);
+
+        for (int index = 0; index < this.config_.awaitersPerLatch_; index++) {
+            awaiters.execute(new Runnable() {
+                @Override
+                public void run() {
+                    LatchLoadGenerator.this.await(latch, createdTime, releasedTime);
+                    if (remainingAwaiters.decrementAndGet() == 0) {
+                        LatchLoadGenerator.this.inFlightCount_.decrementAndGet();
+                    }
+                }
+            });
+        }
+
+        // Enough tasks to decide the latch either way.
+        int taskCount = this.config_.successCount_ + this.config_.failureCount_ - 1;
+        Random random = ThreadLocalRandom.current();
+        for (int index = 0; index < taskCount; index++) {
+            if (random.nextDouble() < this.config_.failureProbability_) {
+                submitters.execute(this.recordRelease(latch, TestUtil.createFailureTask(latch, "failure", 0),
+                        releasedTime));
+            } else {
+                submitters.execute(this.recordRelease(latch, TestUtil.createSuccessTask(latch, "success", 0),
+                        releasedTime));
+            }
+        }
+    }
+
+    /**
+     * Wraps the submitting task, so that the time just before the releasing submit is recorded as the release time.
+     * A release listener runs after the awaiters are signalled, and so its time is later than the wake-up.
+     * The earliest time is kept, since a submit started before the release may also return after the release.
+     */
+    private Runnable recordRelease(final ConditionLatch<String, String> latch, final Runnable submitTask,
+            final AtomicLong releasedTime) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                long submitTime = System.nanoTime();
+                submitTask.run();
+                if (latch.isReleased() == false) {
+                    return;
+                }
+
+                while (true) {
+                    long current = releasedTime.get();
+                    if ((current != 0) && (current - submitTime <= 0)) {
+                        return;
+                    }
+                    if (releasedTime.compareAndSet(current, submitTime)) {
+                        return;
+                    }
+                }
+            }
+        };
+    }
+
+    private void await(ConditionLatch<String, String> latch, long createdTime, AtomicLong releasedTime) {
+        try {
+            latch.await(this.config_.timeoutMillis_, TimeUnit.MILLISECONDS);
+            this.succeededCount_.incrementAndGet();
+        } catch (SubmittedFailureResultException exc) {
+            this.failedCount_.incrementAndGet();
+        } catch (TimeoutException exc) {
+            this.timedOutCount_.incrementAndGet();
+            return;
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        long now = System.nanoTime();
+        this.completionHistogram_.record(now - createdTime);
+        // The releasing task records the release time after its submit returns, which may be after the wake-up.
+        long released;
+        while ((released = releasedTime.get()) == 0) {
+            Thread.yield();
+        }
+        this.wakeUpHistogram_.record(Math.max(now - released, 0));
+    }
+
+    /**
+     * Reporter of the statistics in each interval.
+     */
+    private final class Reporter {
+
+        private final ThreadMXBean threadBean_ = ManagementFactory.getThreadMXBean();
+
+        private long lastTime_;
+
+        private long lastCreatedCount_;
+
+        private long lastCompletedCount_;
+
+        private long lastAllocatedBytes_;
+
+        private long lastGcCount_;
+
+        private long lastGcMillis_;
+
+        Reporter() {
+            this.lastAllocatedBytes_ = this.allocatedBytes();
+            this.lastGcCount_ = this.gcCount();
+            this.lastGcMillis_ = this.gcMillis();
+        }
+
+        void report(long elapsedNanos) {
+            LatchLoadGenerator generator = LatchLoadGenerator.this;
+            double seconds = Math.max(elapsedNanos - this.lastTime_, 1) / 1e9;
+
+            long createdCount = generator.createdCount_.get();
+            long completedCount = generator.succeededCount_.get() + generator.failedCount_.get()
+                    + generator.timedOutCount_.get();
+            long allocatedBytes = this.allocatedBytes();
+            long gcCount = this.gcCount();
+            long gcMillis = this.gcMillis();
+
+            String allocationRate = (allocatedBytes < 0) ? "n/a"
+                    : String.format("%.1f MB/s", (allocatedBytes - this.lastAllocatedBytes_) / seconds / 1e6);
+            System.out.println(String.format("[%4ds] created %.0f/s, awaited %.0f/s (success %d, failure %d,"
+                    + " timeout %d, skipped %d), alloc %s, gc %d (%d ms)", TimeUnit.NANOSECONDS.toSeconds(elapsedNanos),
+                    (createdCount - this.lastCreatedCount_) / seconds, (completedCount - this.lastCompletedCount_)
+                            / seconds, generator.succeededCount_.get(), generator.failedCount_.get(),
+                    generator.timedOutCount_.get(), generator.skippedCount_.get(), allocationRate,
+                    gcCount - this.lastGcCount_, gcMillis - this.lastGcMillis_));
+            System.out.println("       wake-up    " + this.percentiles(generator.wakeUpHistogram_));
+            System.out.println("       completion " + this.percentiles(generator.completionHistogram_));
+
+            generator.wakeUpHistogram_.reset();
+            generator.completionHistogram_.reset();
+            this.lastTime_ = elapsedNanos;
+            this.lastCreatedCount_ = createdCount;
+            this.lastCompletedCount_ = completedCount;
+            this.lastAllocatedBytes_ = allocatedBytes;
+            this.lastGcCount_ = gcCount;
+            this.lastGcMillis_ = gcMillis;
+        }
+
+        private String percentiles(LatencyHistogram histogram) {
+            TimeUnit unit = TimeUnit.MICROSECONDS;
+            return String.format("p50 %d us, p99 %d us, p99.9 %d us, max %d us (n=%d)",
+                    histogram.getValueAtPercentile(50, unit), histogram.getValueAtPercentile(99, unit),
+                    histogram.getValueAtPercentile(99.9, unit), histogram.getMax(unit), histogram.getTotalCount());
+        }
+
+        private long allocatedBytes() {
+            if ((this.threadBean_ instanceof com.sun.management.ThreadMXBean) == false) {
+                return -1;
+            }
+
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) this.threadBean_;
+            if (bean.isThreadAllocatedMemorySupported() == false) {
+                return -1;
+            }
+
+            long total = 0;
+            for (long allocated : bean.getThreadAllocatedBytes(bean.getAllThreadIds())) {
+                if (allocated > 0) {
+                    total += allocated;
+                }
+            }
+            return total;
+        }
+
+        private long gcCount() {
+            long total = 0;
+            for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+                total += Math.max(bean.getCollectionCount(), 0);
+            }
+            return total;
+        }
+
+        private long gcMillis() {
+            long total = 0;
+            for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+                total += Math.max(bean.getCollectionTime(), 0);
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Configuration of the load, parsed from {@code key=value} arguments.
+     */
+    static final class Config {
+
+        int durationSeconds_ = 60;
+
+        int intervalSeconds_ = 5;
+
+        int latchesPerSecond_ = 1000;
+
+        int successCount_ = 8;
+
+        int failureCount_ = 2;
+
+        double failureProbability_ = 0.05;
+
+        int submitterThreads_ = 8;
+
+        int awaiterThreads_ = 64;
+
+        int awaitersPerLatch_ = 1;
+
+        long timeoutMillis_ = 1000;
+
+        int maxInFlight_ = 10000;
+
+        SynchronizerType synchronizerType_ = SynchronizerType.QUEUED;
+
+        static Config parse(String[] args) {
+            Config config = new Config();
+            for (String arg : args) {
+                int separator = arg.indexOf('=');
+                if (separator < 0) {
+                    throw new IllegalArgumentException("Argument is not key=value : " + arg);
+                }
+
+                config.set(arg.substring(0, separator), arg.substring(separator + 1));
+            }
+
+            config.validate();
+            return config;
+        }
+
+        private void validate() {
+            checkRange("durationSeconds", this.durationSeconds_, 1, Integer.MAX_VALUE);
+            checkRange("intervalSeconds", this.intervalSeconds_, 1, Integer.MAX_VALUE);
+            // The period of creating latches must be at least 1 nanosecond.
+            checkRange("latchesPerSecond", this.latchesPerSecond_, 1, TimeUnit.SECONDS.toNanos(1));
+            checkRange("successCount", this.successCount_, 1, 0x0000FFFF);
+            checkRange("failureCount", this.failureCount_, 1, 0x0000FFFF);
+            if (((this.failureProbability_ >= 0) && (this.failureProbability_ <= 1)) == false) {
+                throw new IllegalArgumentException("failureProbability is out of [0, 1] : "
+                        + this.failureProbability_);
+            }
+            checkRange("submitterThreads", this.submitterThreads_, 1, Integer.MAX_VALUE);
+            checkRange("awaiterThreads", this.awaiterThreads_, 1, Integer.MAX_VALUE);
+            // The latch in flight is finished by its last awaiter.
+            checkRange("awaitersPerLatch", this.awaitersPerLatch_, 1, Integer.MAX_VALUE);
+            checkRange("timeoutMillis", this.timeoutMillis_, 1, Long.MAX_VALUE);
+            checkRange("maxInFlight", this.maxInFlight_, 1, Integer.MAX_VALUE);
+        }
+
+        private static void checkRange(String key, long value, long min, long max) {
+            if ((value < min) || (value > max)) {
+                throw new IllegalArgumentException(key + " is out of [" + min + ", " + max + "] : " + value);
+            }
+        }
+
+        private void set(String key, String value) {
+            if ("durationSeconds".equals(key)) {
+                this.durationSeconds_ = Integer.parseInt(value);
+            } else if ("intervalSeconds".equals(key)) {
+                this.intervalSeconds_ = Integer.parseInt(value);
+            } else if ("latchesPerSecond".equals(key)) {
+                this.latchesPerSecond_ = Integer.parseInt(value);
+            } else if ("successCount".equals(key)) {
+                this.successCount_ = Integer.parseInt(value);
+            } else if ("failureCount".equals(key)) {
+                this.failureCount_ = Integer.parseInt(value);
+            } else if ("failureProbability".equals(key)) {
+                this.failureProbability_ = Double.parseDouble(value);
+            } else if ("submitterThreads".equals(key)) {
+                this.submitterThreads_ = Integer.parseInt(value);
+            } else if ("awaiterThreads".equals(key)) {
+                this.awaiterThreads_ = Integer.parseInt(value);
+            } else if ("awaitersPerLatch".equals(key)) {
+                this.awaitersPerLatch_ = Integer.parseInt(value);
+            } else if ("timeoutMillis".equals(key)) {
+                this.timeoutMillis_ = Long.parseLong(value);
+            } else if ("maxInFlight".equals(key)) {
+                this.maxInFlight_ = Integer.parseInt(value);
+            } else if ("synchronizerType".equals(key)) {
+                this.synchronizerType_ = SynchronizerType.valueOf(value);
+            } else {
+                throw new IllegalArgumentException("Unknown key : " + key);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Config [durationSeconds=" + this.durationSeconds_ + ", intervalSeconds=" + this.intervalSeconds_
+                    + ", latchesPerSecond=" + this.latchesPerSecond_ + ", successCount=" + this.successCount_
+                    + ", failureCount=" + this.failureCount_ + ", failureProbability=" + this.failureProbability_
+                    + ", submitterThreads=" + this.submitterThreads_ + ", awaiterThreads=" + this.awaiterThreads_
+                    + ", awaitersPerLatch=" + this.awaitersPerLatch_ + ", timeoutMillis=" + this.timeoutMillis_
+                    + ", maxInFlight=" + this.maxInFlight_ + ", synchronizerType=" + this.synchronizerType_ + "]";
+        }
+    }
+}
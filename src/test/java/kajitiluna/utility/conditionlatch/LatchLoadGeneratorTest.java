@@ -0,0 +1,52 @@
+package kajitiluna.utility.conditionlatch;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author kajitiluna
+ *
+ */
+public class LatchLoadGeneratorTest {
+
+    @Test
+    public void testRun_queued() throws Exception {
+        this.runShortLoad("synchronizerType=QUEUED");
+    }
+
+    @Test
+    public void testRun_lightweight() throws Exception {
+        this.runShortLoad("synchronizerType=LIGHTWEIGHT");
+    }
+
+    @Test
+    public void testParse_invalid() {
+        String[][] invalidArgs = { { "latchesPerSecond=2000000000" }, { "latchesPerSecond=0" },
+                { "awaitersPerLatch=0" }, { "failureCount=0" }, { "failureProbability=1.5" },
+                { "failureProbability=NaN" }, { "timeoutMillis=-1" } };
+        for (String[] args : invalidArgs) {
+            try {
+                LatchLoadGenerator.Config.parse(args);
+                fail("Unexpected success : " + args[0]);
+            } catch (IllegalArgumentException exc) {
+                System.out.println(exc.getMessage());
+            }
+        }
+    }
+
+    private void runShortLoad(String synchronizerType) throws Exception {
+        LatchLoadGenerator.Config config = LatchLoadGenerator.Config.parse(new String[] { "durationSeconds=2",
+                "intervalSeconds=1", "latchesPerSecond=2000", "awaitersPerLatch=2", "timeoutMillis=5000",
+                synchronizerType });
+        System.out.println(config);
+
+        LatchLoadGenerator target = new LatchLoadGenerator(config);
+        long awaitedCount = target.run();
+
+        assertTrue("awaited = " + awaitedCount, awaitedCount > 1000);
+        assertTrue(target.getTimedOutCount() == 0);
+    }
+}
@@ -0,0 +1,306 @@
+package kajitiluna.utility.conditionlatch;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author kajitiluna
+ *
+ */
+public class LatchPipelineTest {
+
+    private ExecutorService executorService_;
+
+    @Before
+    public void setUp() {
+        this.executorService_ = Executors.newFixedThreadPool(8);
+    }
+
+    @After
+    public void tearDown() {
+        this.executorService_.shutdownNow();
+    }
+
+    @Test
+    public void testStart_diamond() throws Exception {
+        LatchPipeline target = new LatchPipeline(this.executorService_, 4);
+
+        final LatchPipeline.Stage<Integer> fetch = target.addStage("fetch", 0, 1, new StageTaskGenerator<Integer>() {
+            @Override
+            public Collection<Callable<Integer>> generate() {
+                List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+                for (int shard = 1; shard <= 10; shard++) {
+                    tasks.add(createTask(shard, 5));
+                }
+                return tasks;
+            }
+        });
+        final LatchPipeline.Stage<Integer> mergeOdd = target.addStage("mergeOdd", 0, 1,
+                this.createMergeGenerator(fetch, 1), fetch);
+        final LatchPipeline.Stage<Integer> mergeEven = target.addStage("mergeEven", 0, 1,
+                this.createMergeGenerator(fetch, 0), fetch);
+        final LatchPipeline.Stage<Integer> publish = target.addStage("publish", 0, 1,
+                new StageTaskGenerator<Integer>() {
+                    @Override
+                    public Collection<Callable<Integer>> generate() {
+                        int total = mergeOdd.getResults().get(0) + mergeEven.getResults().get(0);
+                        List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+                        tasks.add(createTask(total, 0));
+                        return tasks;
+                    }
+                }, mergeOdd, mergeEven);
+
+        target.start();
+        List<LatchPipeline.Stage<?>> finishedStages = target.await(5, TimeUnit.SECONDS);
+
+        assertTrue(finishedStages.size() == 4);
+        assertTrue(finishedStages.get(0) == fetch);
+        assertTrue(finishedStages.get(3) == publish);
+        assertTrue(mergeOdd.getResults().get(0) == 25);
+        assertTrue(mergeEven.getResults().get(0) == 30);
+        assertTrue(publish.getResults().get(0) == 55);
+        assertTrue(publish.getState() == LatchPipeline.StageState.SUCCEEDED);
+    }
+
+    @Test
+    public void testStart_quorum() throws Exception {
+        LatchPipeline target = new LatchPipeline(this.executorService_, 10);
+
+        final LatchPipeline.Stage<Integer> fetch = target.addStage("fetch", 3, 1, new StageTaskGenerator<Integer>() {
+            @Override
+            public Collection<Callable<Integer>> generate() {
+                List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+                for (int shard = 0; shard < 10; shard++) {
+                    tasks.add(createTask(shard, (shard < 3) ? 0 : 10000));
+                }
+                return tasks;
+            }
+        });
+        LatchPipeline.Stage<Integer> merge = target.addStage("merge", 0, 1, this.createMergeGenerator(fetch, -1),
+                fetch);
+
+        long startTime = System.currentTimeMillis();
+        target.start();
+        target.await(5, TimeUnit.SECONDS);
+
+        assertTrue(System.currentTimeMillis() - startTime < 5000);
+        assertTrue(merge.getResults().get(0) == 0 + 1 + 2);
+    }
+
+    @Test
+    public void testStart_failureAbortsDownstream() throws Exception {
+        LatchPipeline target = new LatchPipeline(this.executorService_, 4);
+
+        LatchPipeline.Stage<Integer> fetch = target.addStage("fetch", 0, 2, new StageTaskGenerator<Integer>() {
+            @Override
+            public Collection<Callable<Integer>> generate() {
+                List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+                for (int shard = 0; shard < 10; shard++) {
+                    tasks.add(createFailureTask(shard));
+                }
+                return tasks;
+            }
+        });
+        LatchPipeline.Stage<Integer> merge = target.addStage("merge", 0, 1, this.createMergeGenerator(fetch, -1),
+                fetch);
+        LatchPipeline.Stage<Integer> publish = target.addStage("publish", 0, 1,
+                this.createMergeGenerator(merge, -1), merge);
+
+        target.start();
+        try {
+            target.await(5, TimeUnit.SECONDS);
+            fail("Unexpected success.");
+        } catch (SubmittedFailureResultException exc) {
+            assertTrue(true);
+        }
+
+        Thread.sleep(50);
+        assertTrue(fetch.getState() == LatchPipeline.StageState.FAILED);
+        assertTrue(merge.getState() == LatchPipeline.StageState.ABORTED);
+        assertTrue(publish.getState() == LatchPipeline.StageState.ABORTED);
+        assertTrue(merge.getLatch() == null);
+        assertTrue(target.getFailedStages().size() == 3);
+    }
+
+    @Test
+    public void testStart_generatorFailure() throws Exception {
+        LatchPipeline target = new LatchPipeline(this.executorService_, 4);
+
+        LatchPipeline.Stage<Integer> fetch = target.addStage("fetch", 0, 1, new StageTaskGenerator<Integer>() {
+            @Override
+            public Collection<Callable<Integer>> generate() throws Exception {
+                throw new IllegalStateException("Unable to list shards.");
+            }
+        });
+
+        target.start();
+        try {
+            target.await(5, TimeUnit.SECONDS);
+            fail("Unexpected success.");
+        } catch (SubmittedFailureResultException exc) {
+            assertTrue(fetch.getState() == LatchPipeline.StageState.FAILED);
+            assertTrue(fetch.getLatch().getFailureList().get(0) instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void testStart_generatorFailureOverFailureCount() throws Exception {
+        LatchPipeline target = new LatchPipeline(this.executorService_, 4);
+
+        LatchPipeline.Stage<Integer> fetch = target.addStage("fetch", 0, 3, new StageTaskGenerator<Integer>() {
+            @Override
+            public Collection<Callable<Integer>> generate() throws Exception {
+                throw new IllegalStateException("Unable to list shards.");
+            }
+        });
+        LatchPipeline.Stage<Integer> merge = target.addStage("merge", 0, 1, this.createMergeGenerator(fetch, -1),
+                fetch);
+
+        target.start();
+        try {
+            target.await(5, TimeUnit.SECONDS);
+            fail("Unexpected success.");
+        } catch (SubmittedFailureResultException exc) {
+            assertTrue(fetch.getState() == LatchPipeline.StageState.FAILED);
+            assertTrue(merge.getState() == LatchPipeline.StageState.ABORTED);
+        }
+
+        try {
+            fetch.getLatch().await(1, TimeUnit.SECONDS);
+            fail("Unexpected success.");
+        } catch (SubmittedFailureResultException exc) {
+            assertTrue(fetch.getLatch().getFailureList().get(0) instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void testStart_generatorReturnsNullOrThrowsError() throws Exception {
+        this.assertGeneratorFailure(new StageTaskGenerator<Integer>() {
+            @Override
+            public Collection<Callable<Integer>> generate() {
+                return null;
+            }
+        }, NullPointerException.class);
+
+        this.assertGeneratorFailure(new StageTaskGenerator<Integer>() {
+            @Override
+            public Collection<Callable<Integer>> generate() {
+                throw new AssertionError("Broken generator.");
+            }
+        }, AssertionError.class);
+    }
+
+    private void assertGeneratorFailure(StageTaskGenerator<Integer> generator, Class<?> failureType)
+            throws Exception {
+        LatchPipeline target = new LatchPipeline(this.executorService_, 4);
+        LatchPipeline.Stage<Integer> fetch = target.addStage("fetch", 0, 2, generator);
+
+        target.start();
+        try {
+            target.await(5, TimeUnit.SECONDS);
+            fail("Unexpected success.");
+        } catch (SubmittedFailureResultException exc) {
+            assertTrue(fetch.getState() == LatchPipeline.StageState.FAILED);
+            assertTrue(fetch.getLatch().isReleased());
+            assertTrue(failureType.isInstance(fetch.getLatch().getFailureList().get(0)));
+        }
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        LatchPipeline target = new LatchPipeline(this.executorService_, 4);
+
+        final LatchPipeline.Stage<Integer> fetch = target.addStage("fetch", 0, 1, new StageTaskGenerator<Integer>() {
+            @Override
+            public Collection<Callable<Integer>> generate() {
+                List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+                tasks.add(createTask(1, 10000));
+                return tasks;
+            }
+        });
+        LatchPipeline.Stage<Integer> merge = target.addStage("merge", 0, 1, this.createMergeGenerator(fetch, -1),
+                fetch);
+
+        target.start();
+        Thread.sleep(50);
+        target.cancel();
+
+        try {
+            target.await(5, TimeUnit.SECONDS);
+            fail("Unexpected success.");
+        } catch (SubmittedFailureResultException exc) {
+            assertTrue(fetch.getState() == LatchPipeline.StageState.FAILED);
+            assertTrue(merge.getState() == LatchPipeline.StageState.ABORTED);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAddStage_afterStarted() {
+        LatchPipeline target = new LatchPipeline(this.executorService_, 4);
+        target.addStage("fetch", 0, 1, this.createEmptyGenerator());
+        target.start();
+        target.addStage("merge", 0, 1, this.createEmptyGenerator());
+    }
+
+    private StageTaskGenerator<Integer> createMergeGenerator(final LatchPipeline.Stage<Integer> upstream,
+            final int parity) {
+        return new StageTaskGenerator<Integer>() {
+            @Override
+            public Collection<Callable<Integer>> generate() {
+                int sum = 0;
+                for (Integer value : upstream.getResults()) {
+                    if ((parity < 0) || (value % 2 == parity)) {
+                        sum += value;
+                    }
+                }
+
+                List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+                tasks.add(createTask(sum, 0));
+                return tasks;
+            }
+        };
+    }
+
+    private StageTaskGenerator<Integer> createEmptyGenerator() {
+        return new StageTaskGenerator<Integer>() {
+            @Override
+            public Collection<Callable<Integer>> generate() {
+                return new ArrayList<Callable<Integer>>();
+            }
+        };
+    }
+
+    private static Callable<Integer> createTask(final int value, final long waitTime) {
+        return new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                if (waitTime > 0) {
+                    Thread.sleep(waitTime);
+                }
+                return value;
+            }
+        };
+    }
+
+    private static Callable<Integer> createFailureTask(final int value) {
+        return new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                throw new IllegalStateException("Failed :" + value);
+            }
+        };
+    }
+}
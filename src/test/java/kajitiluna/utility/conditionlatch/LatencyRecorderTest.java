@@ -0,0 +1,126 @@
+package kajitiluna.utility.conditionlatch;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author kajitiluna
+ *
+ */
+public class LatencyRecorderTest {
+
+    @Test
+    public void testHistogram_percentile() {
+        LatencyHistogram target = new LatencyHistogram();
+        for (int value = 1; value <= 1000; value++) {
+            target.record(TimeUnit.MICROSECONDS.toNanos(value));
+        }
+
+        assertTrue(target.getTotalCount() == 1000);
+        assertTrue(target.getMax(TimeUnit.MICROSECONDS) == 1000);
+
+        long median = target.getValueAtPercentile(50, TimeUnit.MICROSECONDS);
+        long p99 = target.getValueAtPercentile(99, TimeUnit.MICROSECONDS);
+        assertTrue("median = " + median, (median >= 500) && (median <= 500 * 9 / 8 + 1));
+        assertTrue("p99 = " + p99, (p99 >= 990) && (p99 <= 1000));
+        assertTrue(target.getValueAtPercentile(100, TimeUnit.MICROSECONDS) == 1000);
+
+        target.reset();
+        assertTrue(target.getTotalCount() == 0);
+        assertTrue(target.getValueAtPercentile(50, TimeUnit.MICROSECONDS) == 0);
+    }
+
+    @Test
+    public void testReleaseReport() throws Exception {
+        ConditionLatch<String, String> latch = new ConditionLatch<String, String>(3, 1);
+        LatencyRecorder recorder = latch.enableLatencyCapture(4);
+
+        latch.submit(0, "0");
+        Thread.sleep(20);
+        latch.submit(2, "2");
+        assertNull(recorder.getReleaseReport());
+
+        Thread.sleep(20);
+        latch.submit(3, "3");
+
+        StragglerReport report = recorder.getReleaseReport();
+        assertArrayEquals(new int[] { 1 }, report.getMissingParticipants());
+        assertArrayEquals(new int[] { 3, 2, 0 }, report.getSlowestParticipants());
+        assertTrue(report.getSlowestLatencies(TimeUnit.MILLISECONDS)[0] >= 40);
+        assertTrue(recorder.getSuccessHistogram().getTotalCount() == 3);
+        assertTrue(recorder.getFailureHistogram().getTotalCount() == 0);
+        System.out.println(report);
+    }
+
+    @Test
+    public void testStragglerReport_afterTimeout() throws Exception {
+        ConditionLatch<String, String> latch = new ConditionLatch<String, String>(5, 2);
+        LatencyRecorder recorder = latch.enableLatencyCapture(5);
+
+        latch.submit(1, "1");
+        latch.submitForFail(4, "4");
+        latch.submit(1, "1");
+
+        try {
+            latch.await(10, TimeUnit.MILLISECONDS);
+            assertTrue(false);
+        } catch (TimeoutException exc) {
+            StragglerReport report = recorder.createStragglerReport();
+            assertArrayEquals(new int[] { 0, 2, 3 }, report.getMissingParticipants());
+            assertTrue(report.getElapsedTime(TimeUnit.MILLISECONDS) >= 10);
+        }
+        assertTrue(recorder.getSuccessHistogram().getTotalCount() == 1);
+        assertTrue(recorder.getFailureHistogram().getTotalCount() == 1);
+    }
+
+    @Test
+    public void testReleaseReport_objectParticipants() throws Exception {
+        ConditionLatch<String, String> latch = new ConditionLatch<String, String>(2, 2);
+        LatencyRecorder recorder = latch.enableLatencyCapture(3);
+
+        latch.submitForFail((Object) Integer.valueOf(1), "1");
+        latch.submit("unknown", "unknown");
+        latch.submit((Object) Integer.valueOf(2), "2");
+
+        StragglerReport report = recorder.getReleaseReport();
+        assertArrayEquals(new int[] { 0 }, report.getMissingParticipants());
+        assertTrue(recorder.getSuccessHistogram().getTotalCount() == 1);
+        assertTrue(recorder.getFailureHistogram().getTotalCount() == 1);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testEnableLatencyCapture_twice() {
+        ConditionLatch<String, String> latch = new ConditionLatch<String, String>(1);
+        latch.enableLatencyCapture(1);
+        latch.enableLatencyCapture(1);
+    }
+
+    @Test
+    public void testSubmitCost() {
+        final int participantCount = 50000;
+        long plainTime = this.measureSubmits(new ConditionLatch<String, String>(participantCount), participantCount);
+
+        ConditionLatch<String, String> capturedLatch = new ConditionLatch<String, String>(participantCount);
+        capturedLatch.enableLatencyCapture(participantCount);
+        long capturedTime = this.measureSubmits(capturedLatch, participantCount);
+
+        System.out.println("submit of " + participantCount + " participants : plain = "
+                + TimeUnit.NANOSECONDS.toMicros(plainTime) + "us, captured = "
+                + TimeUnit.NANOSECONDS.toMicros(capturedTime) + "us");
+    }
+
+    private long measureSubmits(ConditionLatch<String, String> latch, int participantCount) {
+        long start = System.nanoTime();
+        for (int participantId = 0; participantId < participantCount; participantId++) {
+            latch.submit(participantId, null);
+        }
+        return System.nanoTime() - start;
+    }
+}
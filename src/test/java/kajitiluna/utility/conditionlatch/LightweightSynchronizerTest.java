@@ -0,0 +1,270 @@
+package kajitiluna.utility.conditionlatch;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ *
+ * @author kajitiluna
+ *
+ */
+public class LightweightSynchronizerTest {
+
+    private ExecutorService executorService_;
+
+    @After
+    public void tearDown() {
+        if (this.executorService_ != null) {
+            this.executorService_.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSubmit_3Tasks_parallel() {
+        final ConditionLatch<Object, Object> target =
+                new ConditionLatch<Object, Object>(3, 1, SynchronizerType.LIGHTWEIGHT);
+
+        this.executorService_ = Executors.newFixedThreadPool(4);
+        Runnable[] successTasks = TestUtil.createSuccessTasks(target, new long[] { 1000, 500, 1000 });
+        Runnable failureTask = TestUtil.createFailureTask(target, 3000);
+
+        long startTime = System.currentTimeMillis();
+        this.executorService_.submit(failureTask);
+        for (Runnable task : successTasks) {
+            this.executorService_.submit(task);
+        }
+
+        try {
+            target.await();
+        } catch (SubmittedFailureResultException | InterruptedException exc) {
+            fail(exc.getMessage());
+        }
+
+        long endTime = System.currentTimeMillis();
+
+        long actualtime = endTime - startTime;
+        System.out.println("Wait time : " + actualtime);
+        assertTrue((actualtime >= 1000) && (actualtime <= 2000));
+    }
+
+    @Test
+    public void testSubmitForFail_1task() {
+        final ConditionLatch<Object, Object> target =
+                new ConditionLatch<Object, Object>(1, 1, SynchronizerType.LIGHTWEIGHT);
+
+        this.executorService_ = Executors.newFixedThreadPool(1);
+        this.executorService_.submit(TestUtil.createFailureTask(target, 500));
+
+        try {
+            target.await(2, TimeUnit.SECONDS);
+            fail("Unexpected success.");
+        } catch (SubmittedFailureResultException sfrExc) {
+            assertTrue(true);
+        } catch (InterruptedException | TimeoutException exc) {
+            fail("Unexpected exception : " + exc.getMessage());
+        }
+    }
+
+    @Test
+    public void testAwait_withTimeOver() {
+        final ConditionLatch<Object, Object> target =
+                new ConditionLatch<Object, Object>(1, 1, SynchronizerType.LIGHTWEIGHT);
+
+        long startTime = System.currentTimeMillis();
+        try {
+            target.await(500, TimeUnit.MILLISECONDS);
+            fail("Unexpected success.");
+        } catch (SubmittedFailureResultException | InterruptedException exc) {
+            fail(exc.getMessage());
+        } catch (TimeoutException toExc) {
+            assertTrue(true);
+        }
+
+        long actualtime = System.currentTimeMillis() - startTime;
+        assertTrue(actualtime >= 500);
+
+        target.submit(null);
+        try {
+            target.await(0, TimeUnit.MILLISECONDS);
+        } catch (SubmittedFailureResultException | InterruptedException | TimeoutException exc) {
+            fail(exc.getMessage());
+        }
+    }
+
+    @Test
+    public void testInterrupt() {
+        final ConditionLatch<Object, Object> target =
+                new ConditionLatch<Object, Object>(1, 1, SynchronizerType.LIGHTWEIGHT);
+
+        this.executorService_ = Executors.newFixedThreadPool(1);
+        final Thread testThread = Thread.currentThread();
+        this.executorService_.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException exc) {
+                    System.out.println("Interrupted : " + exc.getMessage());
+                }
+
+                testThread.interrupt();
+            }
+        });
+
+        try {
+            target.await();
+            fail("Unexpected success.");
+        } catch (SubmittedFailureResultException sfrExc) {
+            fail("Unexpected exception : " + sfrExc.getMessage());
+        } catch (InterruptedException iExc) {
+            assertTrue(true);
+        }
+
+        target.submit(null);
+        assertTrue(target.getSuccessCount() == 0);
+    }
+
+    @Test
+    public void testAwait_pollingKeepsStackBounded() throws Exception {
+        final int pollerCount = 4;
+        final int pollCount = 5000;
+        final LightweightSynchronizer synchronizer = new LightweightSynchronizer(1, 1);
+
+        // A long-lived waiter stays in the stack under the polling waiters.
+        Thread blockedWaiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    synchronizer.acquireSharedInterruptibly(1);
+                } catch (InterruptedException exc) {
+                    return;
+                }
+            }
+        });
+        blockedWaiter.setDaemon(true);
+        blockedWaiter.start();
+
+        this.executorService_ = Executors.newFixedThreadPool(pollerCount);
+        List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+        for (int pollerIndex = 0; pollerIndex < pollerCount; pollerIndex++) {
+            futures.add(this.executorService_.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    int timedOutCount = 0;
+                    for (int index = 0; index < pollCount; index++) {
+                        if (synchronizer.tryAcquireSharedNanos(1, 1000) == false) {
+                            timedOutCount++;
+                        }
+                    }
+                    return Integer.valueOf(timedOutCount);
+                }
+            }));
+        }
+
+        for (Future<Integer> future : futures) {
+            assertTrue(future.get(30, TimeUnit.SECONDS).intValue() == pollCount);
+        }
+
+        int nodeCount = synchronizer.getWaiterNodeCount();
+        System.out.println("nodes in stack after " + (pollerCount * pollCount) + " timed out polls : " + nodeCount);
+        assertTrue(nodeCount <= 1);
+
+        assertTrue(synchronizer.releaseShared(1));
+        blockedWaiter.join(5000);
+        assertTrue(blockedWaiter.isAlive() == false);
+    }
+
+    @Test
+    public void testDeregisterAndCancel() {
+        final ConditionLatch<Object, Object> target =
+                new ConditionLatch<Object, Object>(2, 2, SynchronizerType.LIGHTWEIGHT);
+
+        assertTrue(target.register(1));
+        assertTrue(target.deregister(2));
+        assertTrue(target.getSuccessCount() == 1);
+        assertTrue(target.cancel());
+        assertTrue(target.register(1) == false);
+
+        try {
+            target.await();
+            fail("Unexpected success.");
+        } catch (SubmittedFailureResultException sfrExc) {
+            assertTrue(true);
+        } catch (InterruptedException iExc) {
+            fail("Unexpected exception : " + iExc.getMessage());
+        }
+    }
+
+    @Test
+    public void testRelease_comparedWithQueued() throws Exception {
+        int[] awaiterCounts = { 1, 4, 64 };
+        int[] roundCounts = { 5000, 2000, 200 };
+
+        for (int index = 0; index < awaiterCounts.length; index++) {
+            for (SynchronizerType type : new SynchronizerType[] { SynchronizerType.QUEUED,
+                    SynchronizerType.LIGHTWEIGHT, SynchronizerType.QUEUED, SynchronizerType.LIGHTWEIGHT }) {
+                long actualtime = this.measureRelease(type, awaiterCounts[index], roundCounts[index]);
+                System.out.println(type + " with " + awaiterCounts[index] + " awaiters : "
+                        + (actualtime / roundCounts[index]) + " ns/round");
+            }
+        }
+    }
+
+    /**
+     * Measures the rounds, each of them releases a latch waited by awaiters,
+     * and waits until all awaiters acknowledge the release.
+     */
+    private long measureRelease(SynchronizerType type, final int awaiterCount, final int roundCount)
+            throws Exception {
+        final ConditionLatch<?, ?>[] latches = new ConditionLatch<?, ?>[roundCount];
+        final ConditionLatch<?, ?>[] acknowledges = new ConditionLatch<?, ?>[roundCount];
+        for (int round = 0; round < roundCount; round++) {
+            latches[round] = new ConditionLatch<Object, Object>(1, 1, type);
+            acknowledges[round] = new ConditionLatch<Object, Object>(awaiterCount, 1, type);
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(awaiterCount);
+        try {
+            Future<?>[] futures = new Future<?>[awaiterCount];
+            for (int index = 0; index < awaiterCount; index++) {
+                futures[index] = executorService.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (int round = 0; round < roundCount; round++) {
+                            latches[round].await();
+                            acknowledges[round].submit();
+                        }
+                        return null;
+                    }
+                });
+            }
+
+            long startTime = System.nanoTime();
+            for (int round = 0; round < roundCount; round++) {
+                latches[round].submit();
+                acknowledges[round].await();
+            }
+            long actualtime = System.nanoTime() - startTime;
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+
+            return actualtime;
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+}
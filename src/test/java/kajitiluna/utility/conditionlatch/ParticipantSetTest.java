@@ -0,0 +1,124 @@
+package kajitiluna.utility.conditionlatch;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ *
+ * @author kajitiluna
+ *
+ */
+public class ParticipantSetTest {
+
+    private ExecutorService executorService_;
+
+    @After
+    public void tearDown() {
+        if (this.executorService_ != null) {
+            this.executorService_.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testAdd_denseAndSparse() {
+        ParticipantSet target = new ParticipantSet();
+
+        assertTrue(target.add(0));
+        assertTrue(target.add(63));
+        assertTrue(target.add(64));
+        assertTrue(target.add(0x000FFFFF));
+        assertTrue(target.add(0x00100000));
+        assertTrue(target.add(-1));
+        assertTrue(target.add("participant"));
+
+        assertTrue(target.add(0) == false);
+        assertTrue(target.add(Integer.valueOf(63)) == false);
+        assertTrue(target.add(0x000FFFFF) == false);
+        assertTrue(target.add(0x00100000) == false);
+        assertTrue(target.add(-1) == false);
+        assertTrue(target.add("participant") == false);
+
+        assertTrue(target.contains(64));
+        assertTrue(target.contains(65) == false);
+        assertTrue(target.contains(-1));
+    }
+
+    @Test
+    public void testAdd_concurrently() throws Exception {
+        final ParticipantSet target = new ParticipantSet();
+        final AtomicInteger addedCount = new AtomicInteger();
+        final int participantCount = 0xFFFF;
+
+        this.executorService_ = Executors.newFixedThreadPool(8);
+        Future<?>[] futures = new Future<?>[8];
+        for (int index = 0; index < futures.length; index++) {
+            futures[index] = this.executorService_.submit(new Runnable() {
+                @Override
+                public void run() {
+                    for (int id = 0; id < participantCount; id++) {
+                        if (target.add(id)) {
+                            addedCount.incrementAndGet();
+                        }
+                    }
+                }
+            });
+        }
+
+        for (Future<?> future : futures) {
+            future.get();
+        }
+
+        assertTrue(addedCount.get() == participantCount);
+    }
+
+    @Test
+    public void testSubmitCost_comparedWithPlainSubmit() {
+        final int submitCount = 0xFFFF;
+        final int repeatCount = 20;
+
+        Object[] sparseIds = new Object[submitCount];
+        for (int id = 0; id < submitCount; id++) {
+            sparseIds[id] = "id" + id;
+        }
+
+        long plainTime = 0;
+        long denseTime = 0;
+        long sparseTime = 0;
+        for (int repeat = 0; repeat < repeatCount; repeat++) {
+            ConditionLatch<Object, Object> plainLatch = new ConditionLatch<Object, Object>(submitCount);
+            long startTime = System.nanoTime();
+            for (int id = 0; id < submitCount; id++) {
+                plainLatch.submit(null);
+            }
+            plainTime += System.nanoTime() - startTime;
+
+            ConditionLatch<Object, Object> denseLatch = new ConditionLatch<Object, Object>(submitCount);
+            startTime = System.nanoTime();
+            for (int id = 0; id < submitCount; id++) {
+                denseLatch.submit(id, null);
+            }
+            denseTime += System.nanoTime() - startTime;
+
+            ConditionLatch<Object, Object> sparseLatch = new ConditionLatch<Object, Object>(submitCount);
+            startTime = System.nanoTime();
+            for (int id = 0; id < submitCount; id++) {
+                sparseLatch.submit(sparseIds[id], null);
+            }
+            sparseTime += System.nanoTime() - startTime;
+
+            assertTrue(denseLatch.submit(0, null) == false);
+        }
+
+        long totalCount = (long) submitCount * repeatCount;
+        System.out.println("submit(result) : " + (plainTime / totalCount) + " ns/submit");
+        System.out.println("submit(int, result) : " + (denseTime / totalCount) + " ns/submit");
+        System.out.println("submit(Object, result) : " + (sparseTime / totalCount) + " ns/submit");
+    }
+}
@@ -0,0 +1,179 @@
+package kajitiluna.utility.conditionlatch;
+
+import static org.hamcrest.CoreMatchers.hasItems;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ *
+ * @author kajitiluna
+ *
+ */
+public class QuorumTaskScopeTest {
+
+    private ExecutorService executorService_;
+
+    @After
+    public void tearDown() {
+        if (this.executorService_ != null) {
+            this.executorService_.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testJoin_quorumWithInterruptingLosers() throws Exception {
+        this.executorService_ = Executors.newFixedThreadPool(4);
+        final CountDownLatch interruptedLatch = new CountDownLatch(1);
+
+        List<String> resultList = null;
+        long startTime = System.currentTimeMillis();
+        try (QuorumTaskScope<String> target = new QuorumTaskScope<String>(2, 2, this.executorService_)) {
+            target.fork(createTask("Success Result 1", 500));
+            target.fork(createTask("Success Result 2", 1000));
+            target.fork(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    try {
+                        Thread.sleep(5000);
+                    } catch (InterruptedException exc) {
+                        interruptedLatch.countDown();
+                        throw exc;
+                    }
+                    return "Success Result 3";
+                }
+            });
+
+            resultList = target.join();
+        }
+
+        long endTime = System.currentTimeMillis();
+
+        long actualtime = endTime - startTime;
+        System.out.println("Wait time : " + actualtime);
+        assertTrue((actualtime >= 1000) && (actualtime <= 2000));
+        assertTrue(resultList.size() == 2);
+        assertThat(resultList, hasItems("Success Result 1", "Success Result 2"));
+        assertTrue(interruptedLatch.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testJoin_failureThreshold() throws Exception {
+        try (QuorumTaskScope<String> target = new QuorumTaskScope<String>(2, 1)) {
+            target.fork(createTask("Success Result 1", 2000));
+            target.fork(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    throw new IllegalStateException("Failure Result 1");
+                }
+            });
+
+            target.join();
+            fail("Unexpected success.");
+        } catch (SubmittedFailureResultException sfrExc) {
+            assertTrue(sfrExc.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void testJoin_quorumUnreachable() throws Exception {
+        try (QuorumTaskScope<String> target = new QuorumTaskScope<String>(3, 3)) {
+            target.fork(createTask("Success Result 1", 100));
+            target.fork(createTask("Success Result 2", 100));
+
+            target.join(2, TimeUnit.SECONDS);
+            fail("Unexpected success.");
+        } catch (SubmittedFailureResultException sfrExc) {
+            assertTrue(true);
+        }
+    }
+
+    @Test
+    public void testFork_rejected() throws Exception {
+        Executor rejectingExecutor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException("Executor is shut down.");
+            }
+        };
+
+        try (QuorumTaskScope<String> target = new QuorumTaskScope<String>(1, 1, rejectingExecutor)) {
+            try {
+                target.fork(createTask("Success Result 1", 0));
+                fail("Unexpected success.");
+            } catch (RejectedExecutionException reExc) {
+                assertTrue(true);
+            }
+
+            // The rejected subtask is not counted as unfinished, so join doesn't wait for it.
+            target.join(2, TimeUnit.SECONDS);
+            fail("Unexpected success.");
+        } catch (SubmittedFailureResultException sfrExc) {
+            assertTrue(true);
+        }
+    }
+
+    @Test
+    public void testFork_afterJoined() throws Exception {
+        try (QuorumTaskScope<String> target = new QuorumTaskScope<String>(1, 1)) {
+            target.fork(createTask("Success Result 1", 0));
+            target.join();
+
+            target.fork(createTask("Success Result 2", 0));
+            fail("Unexpected success.");
+        } catch (IllegalStateException isExc) {
+            assertTrue(true);
+        }
+    }
+
+    @Test
+    public void testForkJoin_overheadPerSubtask() throws Exception {
+        final int subtaskCount = 0xFFFF;
+        this.executorService_ = Executors.newFixedThreadPool(8);
+
+        for (int repeat = 0; repeat < 5; repeat++) {
+            long startTime = System.nanoTime();
+            try (QuorumTaskScope<Integer> target = new QuorumTaskScope<Integer>(subtaskCount, 1,
+                    this.executorService_)) {
+                for (int index = 0; index < subtaskCount; index++) {
+                    final Integer result = Integer.valueOf(index);
+                    target.fork(new Callable<Integer>() {
+                        @Override
+                        public Integer call() {
+                            return result;
+                        }
+                    });
+                }
+
+                assertTrue(target.join().size() == subtaskCount);
+            }
+            long actualtime = System.nanoTime() - startTime;
+
+            System.out.println("Fork/join : " + (actualtime / subtaskCount) + " ns/subtask");
+        }
+    }
+
+    private static Callable<String> createTask(final String result, final long waitTime) {
+        return new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                if (waitTime > 0) {
+                    Thread.sleep(waitTime);
+                }
+                return result;
+            }
+        };
+    }
+}
@@ -0,0 +1,214 @@
+package kajitiluna.utility.conditionlatch;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author kajitiluna
+ *
+ */
+public class ReleaseDispatcherTest {
+
+    private ExecutorService executorService_;
+
+    @Before
+    public void setUp() {
+        this.executorService_ = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        this.executorService_.shutdownNow();
+    }
+
+    @Test
+    public void testRegister_sharedSuccessList() throws Exception {
+        ConditionLatch<String, String> latch = new ConditionLatch<String, String>(3, 1);
+        ReleaseDispatcher<String, String> dispatcher =
+                new ReleaseDispatcher<String, String>(latch, this.executorService_, 16);
+
+        final CountDownLatch resumed = new CountDownLatch(100);
+        final AtomicReference<List<String>> firstList = new AtomicReference<List<String>>();
+        final AtomicInteger sameCount = new AtomicInteger();
+        for (int index = 0; index < 100; index++) {
+            dispatcher.register(new ReleaseContinuation<String, String>() {
+                @Override
+                public void succeeded(List<String> successList) {
+                    firstList.compareAndSet(null, successList);
+                    if (firstList.get() == successList) {
+                        sameCount.incrementAndGet();
+                    }
+                    resumed.countDown();
+                }
+
+                @Override
+                public void failed(List<String> failureList) {
+                    resumed.countDown();
+                }
+            });
+        }
+
+        latch.submit("a");
+        latch.submit("b");
+        assertTrue(resumed.getCount() == 100);
+        latch.submit("c");
+
+        assertTrue(resumed.await(5, TimeUnit.SECONDS));
+        assertTrue(sameCount.get() == 100);
+        assertTrue(firstList.get().size() == 3);
+
+        // The blocking awaiters share the same snapshot as well.
+        assertSame(firstList.get(), latch.await());
+        assertSame(latch.await(), latch.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testRegister_failed() throws Exception {
+        ConditionLatch<String, String> latch = new ConditionLatch<String, String>(3, 2);
+        ReleaseDispatcher<String, String> dispatcher =
+                new ReleaseDispatcher<String, String>(latch, this.executorService_, 4);
+
+        final CountDownLatch resumed = new CountDownLatch(10);
+        final AtomicInteger failedCount = new AtomicInteger();
+        for (int index = 0; index < 10; index++) {
+            dispatcher.register(new ReleaseContinuation<String, String>() {
+                @Override
+                public void succeeded(List<String> successList) {
+                    resumed.countDown();
+                }
+
+                @Override
+                public void failed(List<String> failureList) {
+                    if (failureList.size() == 2) {
+                        failedCount.incrementAndGet();
+                    }
+                    resumed.countDown();
+                }
+            });
+        }
+
+        latch.submit("a");
+        latch.submitForFail("x");
+        latch.submitForFail("y");
+
+        assertTrue(resumed.await(5, TimeUnit.SECONDS));
+        assertTrue(failedCount.get() == 10);
+    }
+
+    @Test
+    public void testRegister_afterReleased() throws Exception {
+        ConditionLatch<String, String> latch = new ConditionLatch<String, String>(1, 1);
+        ReleaseDispatcher<String, String> dispatcher =
+                new ReleaseDispatcher<String, String>(latch, this.executorService_, 4);
+        latch.submit("a");
+
+        ConditionLatch<String, String> zeroLatch = new ConditionLatch<String, String>(0, 1);
+        ReleaseDispatcher<String, String> zeroDispatcher =
+                new ReleaseDispatcher<String, String>(zeroLatch, this.executorService_, 4);
+
+        final CountDownLatch resumed = new CountDownLatch(2);
+        ReleaseContinuation<String, String> continuation = new ReleaseContinuation<String, String>() {
+            @Override
+            public void succeeded(List<String> successList) {
+                resumed.countDown();
+            }
+
+            @Override
+            public void failed(List<String> failureList) {
+                // Do nothing.
+            }
+        };
+        dispatcher.register(continuation);
+        zeroDispatcher.register(continuation);
+
+        assertTrue(resumed.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testTimeToAllAwaitersDone() throws Exception {
+        int[] awaiterCounts = {10, 100, 1000};
+        for (int awaiterCount : awaiterCounts) {
+            long blockingNanos = this.measureBlockingAwaiters(awaiterCount);
+            long dispatchedNanos = this.measureDispatchedContinuations(awaiterCount);
+
+            System.out.println("awaiters = " + awaiterCount + " : blocking await = "
+                    + TimeUnit.NANOSECONDS.toMicros(blockingNanos) + " us, dispatched continuations = "
+                    + TimeUnit.NANOSECONDS.toMicros(dispatchedNanos) + " us");
+        }
+    }
+
+    private long measureBlockingAwaiters(int awaiterCount) throws Exception {
+        final ConditionLatch<String, String> latch = new ConditionLatch<String, String>(1, 1);
+        final CountDownLatch started = new CountDownLatch(awaiterCount);
+        final CountDownLatch done = new CountDownLatch(awaiterCount);
+
+        Thread[] threads = new Thread[awaiterCount];
+        for (int index = 0; index < awaiterCount; index++) {
+            threads[index] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        latch.await();
+                    } catch (Exception exc) {
+                        return;
+                    }
+                    done.countDown();
+                }
+            });
+            threads[index].setDaemon(true);
+            threads[index].start();
+        }
+        started.await();
+        Thread.sleep(100);
+
+        long startTime = System.nanoTime();
+        latch.submit("released");
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        long elapsedNanos = System.nanoTime() - startTime;
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return elapsedNanos;
+    }
+
+    private long measureDispatchedContinuations(int awaiterCount) throws Exception {
+        ConditionLatch<String, String> latch = new ConditionLatch<String, String>(1, 1);
+        ReleaseDispatcher<String, String> dispatcher =
+                new ReleaseDispatcher<String, String>(latch, this.executorService_, 64);
+        final CountDownLatch done = new CountDownLatch(awaiterCount);
+
+        for (int index = 0; index < awaiterCount; index++) {
+            dispatcher.register(new ReleaseContinuation<String, String>() {
+                @Override
+                public void succeeded(List<String> successList) {
+                    done.countDown();
+                }
+
+                @Override
+                public void failed(List<String> failureList) {
+                    // Do nothing.
+                }
+            });
+        }
+
+        long startTime = System.nanoTime();
+        latch.submit("released");
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        return System.nanoTime() - startTime;
+    }
+}
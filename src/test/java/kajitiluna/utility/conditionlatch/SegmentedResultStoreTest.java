@@ -0,0 +1,398 @@
+package kajitiluna.utility.conditionlatch;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author kajitiluna
+ *
+ */
+public class SegmentedResultStoreTest {
+
+    @Test
+    public void testSegmentIndex() {
+        int expectedSegment = 0;
+        int expectedOffset = 0;
+        for (int index = 0; index < 100000; index++) {
+            int segmentIndex = SegmentedResultStore.segmentIndexOf(index);
+            if (segmentIndex != expectedSegment) {
+                assertTrue(expectedOffset == (16 << expectedSegment));
+                expectedSegment++;
+                expectedOffset = 0;
+            }
+
+            assertTrue(segmentIndex == expectedSegment);
+            assertTrue(SegmentedResultStore.offsetOf(index, segmentIndex) == expectedOffset);
+            expectedOffset++;
+        }
+    }
+
+    @Test
+    public void testSnapshot_immutable() {
+        SegmentedResultStore<String> target = new SegmentedResultStore<String>();
+        for (int index = 0; index < 100; index++) {
+            target.add("Result :" + index);
+        }
+        target.add(null);
+
+        List<String> snapshot = target.snapshot();
+        target.add("Later");
+
+        assertTrue(snapshot.size() == 101);
+        assertTrue(snapshot.get(50).equals("Result :50"));
+        assertNull(snapshot.get(100));
+        assertTrue(target.snapshot().size() == 102);
+        try {
+            snapshot.add("Illegal");
+            assertTrue(false);
+        } catch (UnsupportedOperationException exc) {
+            assertTrue(true);
+        }
+    }
+
+    @Test
+    public void testSpliterator_split() {
+        SegmentedResultStore<Integer> target = new SegmentedResultStore<Integer>();
+        for (int index = 0; index < 1000; index++) {
+            target.add(index);
+        }
+
+        Spliterator<Integer> first = target.snapshot().spliterator();
+        assertTrue(first.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.IMMUTABLE));
+
+        Spliterator<Integer> prefix = first.trySplit();
+        assertTrue(prefix.estimateSize() == 500);
+        assertTrue(first.estimateSize() == 500);
+
+        final List<Integer> elements = new ArrayList<Integer>();
+        Consumer<Integer> collector = new Consumer<Integer>() {
+            @Override
+            public void accept(Integer element) {
+                elements.add(element);
+            }
+        };
+        assertTrue(prefix.tryAdvance(collector));
+        prefix.forEachRemaining(collector);
+        first.forEachRemaining(collector);
+        assertTrue(first.tryAdvance(collector) == false);
+
+        assertTrue(elements.size() == 1000);
+        for (int index = 0; index < 1000; index++) {
+            assertTrue(elements.get(index) == index);
+        }
+    }
+
+    @Test
+    public void testAwaitStream() throws Exception {
+        ConditionLatch<Integer, String> latch = new ConditionLatch<Integer, String>(100);
+        for (int index = 0; index < 100; index++) {
+            latch.submit(index);
+        }
+
+        List<Integer> collected = latch.awaitStream().collect(Collectors.<Integer> toList());
+        assertTrue(collected.equals(latch.await()));
+        assertTrue(latch.awaitStream(1, TimeUnit.SECONDS).isParallel());
+
+        ConditionLatch<Integer, String> failedLatch = new ConditionLatch<Integer, String>(1, 1);
+        failedLatch.submitForFail("failure");
+        try {
+            failedLatch.awaitStream();
+            assertTrue(false);
+        } catch (SubmittedFailureResultException exc) {
+            assertTrue(true);
+        }
+    }
+
+    @Test
+    public void testStreamCost() throws Exception {
+        final int size = 0x0000FFFF;
+        ConditionLatch<Long, String> latch = new ConditionLatch<Long, String>(size);
+        LockedList<Long> lockedList = new LockedList<Long>();
+        for (long index = 0; index < size; index++) {
+            latch.submit(index);
+            lockedList.add(index);
+        }
+
+        ToLongFunction<Long> work = new ToLongFunction<Long>() {
+            @Override
+            public long applyAsLong(Long value) {
+                return Long.bitCount(value * 0x9E3779B97F4A7C15L);
+            }
+        };
+
+        for (int round = 0; round < 3; round++) {
+            long startTime = System.nanoTime();
+            long copiedSum = 0;
+            for (int count = 0; count < 50; count++) {
+                copiedSum += lockedList.copy().parallelStream().mapToLong(work).sum();
+            }
+            long copiedTime = (System.nanoTime() - startTime) / 50;
+
+            startTime = System.nanoTime();
+            long streamedSum = 0;
+            for (int count = 0; count < 50; count++) {
+                streamedSum += latch.awaitStream().mapToLong(work).sum();
+            }
+            long streamedTime = (System.nanoTime() - startTime) / 50;
+
+            assertTrue(copiedSum == streamedSum);
+            System.out.println("parallel stream of " + size + " : copy then stream = "
+                    + (copiedTime / 1000) + " us, awaitStream = " + (streamedTime / 1000) + " us");
+        }
+    }
+
+    @Test
+    public void testAdd_concurrent() throws Exception {
+        final int threadCount = 8;
+        final int addCount = 20000;
+        final SegmentedResultStore<Integer> target = new SegmentedResultStore<Integer>();
+        final CountDownLatch startLatch = new CountDownLatch(1);
+
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int threadIndex = 0; threadIndex < threadCount; threadIndex++) {
+            final int base = threadIndex * addCount;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        startLatch.await();
+                    } catch (InterruptedException exc) {
+                        return;
+                    }
+                    for (int count = 0; count < addCount; count++) {
+                        target.add(base + count);
+                        // Each element is visible once add returns.
+                        if (target.size() <= count) {
+                            throw new IllegalStateException("Not published.");
+                        }
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        startLatch.countDown();
+        int lastSize = 0;
+        while (target.size() < threadCount * addCount) {
+            List<Integer> snapshot = target.snapshot();
+            assertTrue(snapshot.size() >= lastSize);
+            for (Integer element : snapshot) {
+                assertTrue(element != null);
+            }
+            lastSize = snapshot.size();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Set<Integer> elements = new HashSet<Integer>(target.snapshot());
+        assertTrue(elements.size() == threadCount * addCount);
+    }
+
+    @Test
+    public void testAdd_stalledWriter() throws Exception {
+        final SegmentedResultStore<String> target = new SegmentedResultStore<String>();
+        target.add("first");
+        int stalledIndex = target.claim();
+
+        // The writers claimed later never wait for the stalled writer.
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int index = 0; index < 100; index++) {
+                    target.add("Result :" + index);
+                }
+            }
+        });
+        writer.start();
+        writer.join(5000);
+        assertTrue(writer.isAlive() == false);
+        assertTrue(target.size() == 102);
+
+        // Nor the readers, which skip the slot not written yet.
+        List<String> skipped = target.snapshot();
+        assertTrue(skipped.size() == 101);
+        assertTrue(skipped.get(0).equals("first"));
+        assertTrue(skipped.get(1).equals("Result :0"));
+        assertTrue(skipped.get(100).equals("Result :99"));
+
+        target.write(stalledIndex, "stalled");
+        List<String> snapshot = target.snapshot();
+        assertTrue(snapshot.size() == 102);
+        assertTrue(snapshot.get(1).equals("stalled"));
+        assertTrue(snapshot.get(101).equals("Result :99"));
+        assertTrue(skipped.size() == 101);
+    }
+
+    @Test
+    public void testAdd_failedWriter() {
+        SegmentedResultStore<String> target = new SegmentedResultStore<String>();
+        // A writer which failed before writing leaves the slot claimed forever.
+        target.claim();
+        for (int index = 0; index < 1000; index++) {
+            target.add("Result :" + index);
+        }
+
+        for (int count = 0; count < 100; count++) {
+            assertTrue(target.snapshot().size() == 1000);
+        }
+        assertTrue(target.snapshot().get(999).equals("Result :999"));
+    }
+
+    @Test
+    public void testAddAll_collectionChanged() {
+        SegmentedResultStore<Integer> target = new SegmentedResultStore<Integer>();
+        List<Integer> elements = new ArrayList<Integer>(Arrays.asList(1, 2, 3)) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public int size() {
+                // Reports a size different from the elements iterated.
+                return super.size() + 1;
+            }
+        };
+
+        target.addAll(elements);
+        target.add(4);
+        assertTrue(target.size() == 4);
+        assertTrue(target.snapshot().equals(Arrays.asList(1, 2, 3, 4)));
+    }
+
+    @Test
+    public void testSnapshotCost() {
+        for (int size : new int[] { 1000, 16000, 0x0000FFFF }) {
+            SegmentedResultStore<String> store = new SegmentedResultStore<String>();
+            LockedList<String> lockedList = new LockedList<String>();
+            for (int index = 0; index < size; index++) {
+                store.add("Result");
+                lockedList.add("Result");
+            }
+
+            final int pollCount = 2000;
+            long checksum = 0;
+            long startTime = System.nanoTime();
+            for (int count = 0; count < pollCount; count++) {
+                checksum += store.snapshot().size();
+            }
+            long storeTime = (System.nanoTime() - startTime) / pollCount;
+
+            startTime = System.nanoTime();
+            for (int count = 0; count < pollCount; count++) {
+                checksum += lockedList.copy().size();
+            }
+            long copyTime = (System.nanoTime() - startTime) / pollCount;
+
+            assertTrue(checksum == 2L * pollCount * size);
+            System.out.println("snapshot of " + size + " : store = " + storeTime + " ns, locked copy = " + copyTime
+                    + " ns");
+        }
+    }
+
+    @Test
+    public void testAppendCost() throws Exception {
+        final int threadCount = 4;
+        final int addCount = 0x0000FFFF / threadCount;
+
+        for (int round = 0; round < 3; round++) {
+            final SegmentedResultStore<String> store = new SegmentedResultStore<String>();
+            long storeTime = this.measureAppends(threadCount, addCount, new Runnable() {
+                @Override
+                public void run() {
+                    store.add("Result");
+                }
+            });
+
+            final LockedList<String> lockedList = new LockedList<String>();
+            long lockedTime = this.measureAppends(threadCount, addCount, new Runnable() {
+                @Override
+                public void run() {
+                    lockedList.add("Result");
+                }
+            });
+
+            assertTrue(store.size() == threadCount * addCount);
+            System.out.println("append of " + (threadCount * addCount) + " in " + threadCount + " threads : store = "
+                    + (storeTime / (threadCount * addCount)) + " ns/add, locked list = "
+                    + (lockedTime / (threadCount * addCount)) + " ns/add");
+        }
+    }
+
+    private long measureAppends(int threadCount, final int addCount, final Runnable append) throws Exception {
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int threadIndex = 0; threadIndex < threadCount; threadIndex++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        startLatch.await();
+                    } catch (InterruptedException exc) {
+                        return;
+                    }
+                    for (int count = 0; count < addCount; count++) {
+                        append.run();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        long startTime = System.nanoTime();
+        startLatch.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return System.nanoTime() - startTime;
+    }
+
+    /**
+     * Locked list as {@code ConditionLatch} kept the results before.
+     */
+    private static final class LockedList<TYPE> {
+
+        private final ReadWriteLock lock_ = new ReentrantReadWriteLock();
+
+        private final List<TYPE> list_ = new ArrayList<TYPE>();
+
+        void add(TYPE element) {
+            Lock lock = this.lock_.writeLock();
+            lock.lock();
+            try {
+                this.list_.add(element);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        List<TYPE> copy() {
+            Lock lock = this.lock_.readLock();
+            lock.lock();
+            try {
+                return Collections.unmodifiableList(new ArrayList<TYPE>(this.list_));
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package kajitiluna.utility.conditionlatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author kajitiluna
+ *
+ */
+public class TopKCollectorTest {
+
+    private static final Comparator<Integer> DESCENDING = new Comparator<Integer>() {
+        @Override
+        public int compare(Integer left, Integer right) {
+            return right.compareTo(left);
+        }
+    };
+
+    private ExecutorService executorService_;
+
+    @Before
+    public void setUp() {
+        this.executorService_ = Executors.newFixedThreadPool(8);
+    }
+
+    @After
+    public void tearDown() {
+        this.executorService_.shutdownNow();
+    }
+
+    @Test
+    public void testAdd_keepsBestResults() {
+        TopKCollector<Integer> collector = new TopKCollector<Integer>(DESCENDING, 5);
+        int[] scores = {7, 3, 9, 1, 12, 5, 8, 12, 2};
+        for (int score : scores) {
+            collector.add(Integer.valueOf(score));
+        }
+
+        List<Integer> results = collector.getResults();
+        assertEquals(5, results.size());
+        assertEquals(Integer.valueOf(12), results.get(0));
+        assertEquals(Integer.valueOf(12), results.get(1));
+        assertEquals(Integer.valueOf(9), results.get(2));
+        assertEquals(Integer.valueOf(8), results.get(3));
+        assertEquals(Integer.valueOf(7), results.get(4));
+        assertTrue(collector.getOfferedCount() == scores.length);
+
+        try {
+            collector.add(null);
+            fail();
+        } catch (NullPointerException exc) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void testEnableTopK_afterSubmitted() {
+        ConditionLatch<Integer, String> latch = new ConditionLatch<Integer, String>(2, 1);
+        latch.submit(Integer.valueOf(1));
+
+        try {
+            latch.enableTopK(new TopKCollector<Integer>(DESCENDING, 5));
+            fail();
+        } catch (IllegalStateException exc) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void testEnableTopK_concurrentWithSubmit() throws Exception {
+        int enabledCount = 0;
+        for (int round = 0; round < 2000; round++) {
+            final ConditionLatch<Integer, String> latch = new ConditionLatch<Integer, String>(1, 1);
+            final CountDownLatch startGate = new CountDownLatch(1);
+            this.executorService_.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        startGate.await();
+                    } catch (InterruptedException exc) {
+                        return;
+                    }
+                    latch.submit(Integer.valueOf(7));
+                }
+            });
+
+            boolean enabled = true;
+            startGate.countDown();
+            try {
+                latch.enableTopK(new TopKCollector<Integer>(DESCENDING, 5));
+            } catch (IllegalStateException exc) {
+                enabled = false;
+            }
+
+            // Either the result is seen by enableTopK, or it reaches the collector.
+            List<Integer> results = latch.await(10, TimeUnit.SECONDS);
+            assertEquals(Collections.singletonList(Integer.valueOf(7)), results);
+            if (enabled) {
+                enabledCount++;
+            }
+        }
+
+        System.out.println("enableTopK concurrent with submit : enabled in " + enabledCount + " of 2000 rounds");
+    }
+
+    @Test
+    public void testAwait_topKOfShards() throws Exception {
+        final int shardCount = 60000;
+        final int limit = 20;
+
+        Random random = new Random(46);
+        final int[] scores = new int[shardCount];
+        for (int index = 0; index < shardCount; index++) {
+            scores[index] = random.nextInt(1000000);
+        }
+
+        // Collects every result and sorts after await.
+        final ConditionLatch<Integer, String> fullLatch = new ConditionLatch<Integer, String>(shardCount, 1);
+        long startTime = System.nanoTime();
+        this.submitAll(fullLatch, scores);
+        List<Integer> sorted = new ArrayList<Integer>(fullLatch.await(10, TimeUnit.SECONDS));
+        Collections.sort(sorted, DESCENDING);
+        List<Integer> expected = sorted.subList(0, limit);
+        long fullNanos = System.nanoTime() - startTime;
+
+        // Keeps only the K best results.
+        final ConditionLatch<Integer, String> topKLatch = new ConditionLatch<Integer, String>(shardCount, 1);
+        TopKCollector<Integer> collector = new TopKCollector<Integer>(DESCENDING, limit);
+        topKLatch.enableTopK(collector);
+        startTime = System.nanoTime();
+        this.submitAll(topKLatch, scores);
+        List<Integer> results = topKLatch.await(10, TimeUnit.SECONDS);
+        long topKNanos = System.nanoTime() - startTime;
+
+        assertEquals(expected, results);
+        assertEquals(expected, topKLatch.getSuccessList());
+        assertTrue(collector.getOfferedCount() == shardCount);
+
+        System.out.println("top " + limit + " of " + shardCount + " : keep all and sort = "
+                + TimeUnit.NANOSECONDS.toMicros(fullNanos) + " us, top-K collector = "
+                + TimeUnit.NANOSECONDS.toMicros(topKNanos) + " us");
+    }
+
+    private void submitAll(final ConditionLatch<Integer, String> latch, final int[] scores) {
+        final int taskCount = 8;
+        for (int taskIndex = 0; taskIndex < taskCount; taskIndex++) {
+            final int offset = taskIndex;
+            this.executorService_.execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (int index = offset; index < scores.length; index += taskCount) {
+                        latch.submit(Integer.valueOf(scores[index]));
+                    }
+                }
+            });
+        }
+    }
+}